@@ -4,6 +4,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import lombok.AllArgsConstructor;
+import org.alfresco.repo.domain.node.Node;
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.domain.qname.QNameDAO;
 import org.alfresco.repo.search.SearchTrackingComponent;
 import org.alfresco.repo.solr.NodeParameters;
 
@@ -11,6 +14,8 @@ import org.alfresco.repo.solr.NodeParameters;
 public class Alfresco7TrackingComponent implements TrackingComponent {
 
     private final SearchTrackingComponent trackingComponent;
+    private final NodeDAO nodeDAO;
+    private final QNameDAO qnameDAO;
 
     @Override
     public long getMaxTxnId() {
@@ -26,10 +31,39 @@ public class Alfresco7TrackingComponent implements TrackingComponent {
         NodeParameters parameters = toNodeParameters(txnIds);
         trackingComponent.getNodes(parameters, node -> {
             // TODO filter out deleted nodes?
-            ret.add(new NodeInfo(node.getTransaction().getId(), node.getId(), node.getNodeRef()));
+            ret.add(toNodeInfo(node));
             return true;
         });
 
         return ret;
     }
+
+    @Override
+    public void getNodesForTxnRange(long fromTxnIdInclusive, long toTxnIdExclusive, NodeInfoSink sink) {
+        if (fromTxnIdInclusive >= toTxnIdExclusive) {
+            return;
+        }
+        trackingComponent.getNodes(toNodeParameters(fromTxnIdInclusive, toTxnIdExclusive),
+                node -> sink.accept(toNodeInfo(node)));
+    }
+
+    @Override
+    public long getMaxNodeId() {
+        Long maxNodeId = nodeDAO.getMaxNodeId();
+        return maxNodeId == null ? 0L : maxNodeId;
+    }
+
+    @Override
+    public void getNodesForNodeIdRange(long fromNodeIdInclusive, long toNodeIdExclusive, NodeInfoSink sink) {
+        if (fromNodeIdInclusive >= toNodeIdExclusive) {
+            return;
+        }
+        trackingComponent.getNodes(toNodeIdRangeParameters(fromNodeIdInclusive, toNodeIdExclusive),
+                node -> sink.accept(toNodeInfo(node)));
+    }
+
+    private NodeInfo toNodeInfo(Node node) {
+        return new NodeInfo(node.getTransaction().getId(), node.getId(), node.getNodeRef(),
+                Boolean.TRUE.equals(node.getDeleted(qnameDAO)));
+    }
 }
@@ -0,0 +1,78 @@
+package eu.xenit.alfresco.healthprocessor.indexing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps track of the batches that an {@link IndexingStrategy} handed out, so the strategy never persists progress
+ * beyond the oldest batch that has not been processed yet. Every batch is handed out with the point from which the
+ * strategy resumes when that batch is the oldest one in progress, e.g. the first transaction ID of the batch.
+ * <p>
+ * Without batch acknowledgement, requesting a new batch implies that the previous batch has been processed, so the
+ * resume point of a batch is persisted as soon as it is handed out.
+ *
+ * @param <P> type of the resume point
+ * @see IndexingStrategy#enableBatchAcknowledgement()
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BatchProgressTracker<P> {
+
+    private final Consumer<P> progressWriter;
+    // Resume points of the batches that have been handed out but not yet acknowledged, by sequence ID, oldest first
+    private final Map<Long, P> batchesInProgress = new LinkedHashMap<>();
+    private boolean acknowledgement = false;
+
+    public void enableAcknowledgement() {
+        acknowledgement = true;
+    }
+
+    public void onBatchHandedOut(@Nonnull NodeBatch batch, P resumePoint) {
+        if (!acknowledgement) {
+            progressWriter.accept(resumePoint);
+            return;
+        }
+        batchesInProgress.put(batch.getSequenceId(), resumePoint);
+        if (batchesInProgress.size() == 1) {
+            progressWriter.accept(resumePoint);
+        }
+    }
+
+    public void onBatchProcessed(@Nonnull NodeBatch batch) {
+        Iterator<Long> oldestBatch = batchesInProgress.keySet().iterator();
+        boolean wasOldestBatch = oldestBatch.hasNext() && oldestBatch.next() == batch.getSequenceId();
+        if (batchesInProgress.remove(batch.getSequenceId()) == null) {
+            log.warn("Acknowledged a batch of #{} nodes that is not in progress", batch.getNodeRefs().size());
+            return;
+        }
+        if (wasOldestBatch && !batchesInProgress.isEmpty()) {
+            // Everything before the (new) oldest batch in progress has been processed
+            progressWriter.accept(batchesInProgress.values().iterator().next());
+        }
+    }
+
+    public int size() {
+        return batchesInProgress.size();
+    }
+
+    /**
+     * Forgets the batches in progress, e.g. when a new cycle starts.
+     */
+    public void clear() {
+        batchesInProgress.clear();
+    }
+
+    /**
+     * Forgets the batches in progress and disables batch acknowledgement, which has to be enabled again for every
+     * cycle.
+     */
+    public void reset() {
+        clear();
+        acknowledgement = false;
+    }
+}
@@ -26,10 +26,78 @@ public interface IndexingStrategy {
     @Nonnull
     Set<NodeRef> getNextNodeIds(final int amount);
 
+    /**
+     * Variant of {@link #getNextNodeIds(int)} that also returns the status of the nodes, as far as the strategy already
+     * knows it from fetching the nodes. Plugins can then use it instead of looking up the status of every node again.
+     * Implementations that override this method should implement {@link #getNextNodeIds(int)} with it.
+     */
+    @Nonnull
+    default NodeBatch getNextNodeBatch(final int amount) {
+        return new NodeBatch(getNextNodeIds(amount));
+    }
+
+    /**
+     * Loads nodes ahead of time, so a subsequent {@link #getNextNodeIds(int)} call can be served without waiting for
+     * the database. Implementations should buffer at most {@code amount} nodes and must not alter the order in which
+     * nodes are handed out, nor persist any progress: that remains the responsibility of
+     * {@link #getNextNodeIds(int)}.
+     * <p>
+     * When prefetching is enabled, this method is invoked from a background thread in its own transaction, while the
+     * previous batch is being processed. It is never invoked concurrently with {@link #getNextNodeIds(int)}.
+     *
+     * @param amount the number of nodes that should be available once prefetching is done
+     */
+    default void prefetch(final int amount) {
+
+    }
+
+    /**
+     * Announces that batches handed out by {@link #getNextNodeIds(int)} are processed concurrently during the next
+     * cycle. Invoked before {@link #onStart()}.
+     * <p>
+     * By default, requesting a new batch implies that all previously handed out batches have been processed. Once
+     * batch acknowledgement is enabled, this no longer holds: batches can complete in any order and each of them is
+     * acknowledged with {@link #onBatchProcessed(NodeBatch)}. Strategies that persist their progress must then not
+     * advance it beyond the oldest batch that has not been acknowledged yet, see {@link BatchProgressTracker}.
+     */
+    default void enableBatchAcknowledgement() {
+
+    }
+
+    /**
+     * Acknowledges that a batch, as returned by {@link #getNextNodeBatch(int)}, has been processed completely. Only
+     * invoked when batch acknowledgement has been enabled for the current cycle.
+     *
+     * @param batch the batch that was returned by {@link #getNextNodeBatch(int)}
+     * @see #enableBatchAcknowledgement()
+     */
+    default void onBatchProcessed(@Nonnull NodeBatch batch) {
+
+    }
+
     default void onStop() {
 
     }
 
+    /**
+     * Invoked instead of {@link #onStop()} when processing is aborted by an exception. Persisted progress should be
+     * kept, so the next cycle can pick up where this one failed, but resources held for this run should be released.
+     *
+     * @param e the exception that aborted processing
+     */
+    default void onException(@Nonnull Exception e) {
+
+    }
+
+    /**
+     * Whether the cycle is complete once {@link #getNextNodeIds(int)} returned an empty set. Strategies that share a
+     * cycle with other Alfresco nodes return {@code false} while other nodes are still processing their part of it, so
+     * only the node that completes the cycle finishes it.
+     */
+    default boolean isCycleDone() {
+        return true;
+    }
+
     @Nonnull
     default Map<String, String> getState() {
         return new HashMap<>();
@@ -42,7 +110,11 @@ public interface IndexingStrategy {
 
     enum IndexingStrategyKey {
         TXNID("txn-id"),
-        LAST_TXNS("last-txns");
+        LAST_TXNS("last-txns"),
+        DISTRIBUTED_TXNID("distributed-txn-id"),
+        NODE_ID("node-id"),
+        INCREMENTAL_TXNID("incremental-txn-id"),
+        CONTENT_STORE("content-store");
 
         @Getter
         private final String key;
@@ -1,11 +1,21 @@
 package eu.xenit.alfresco.healthprocessor.indexing;
 
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.distributed.DistributedTxnIdIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.distributed.DistributedTxnIdIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.incremental.IncrementalTxnIdIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.incremental.IncrementalTxnIdIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.indexing.lasttxns.LastTxnsBasedIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.indexing.lasttxns.LastTxnsIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.nodeid.NodeIdBasedIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.nodeid.NodeIdIndexingConfiguration;
 import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdBasedIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdIndexingConfiguration;
 import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.TransactionHelper;
 import lombok.AllArgsConstructor;
+import org.alfresco.repo.lock.JobLockService;
 import org.springframework.beans.factory.config.AbstractFactoryBean;
 
 @AllArgsConstructor
@@ -14,6 +24,8 @@ public final class IndexingStrategyFactoryBean extends AbstractFactoryBean<Index
     private final IndexingConfiguration configuration;
     private final TrackingComponent trackingComponent;
     private final AttributeStore attributeStore;
+    private final JobLockService jobLockService;
+    private final TransactionHelper transactionHelper;
 
     @Override
     public Class<?> getObjectType() {
@@ -31,6 +43,18 @@ public final class IndexingStrategyFactoryBean extends AbstractFactoryBean<Index
                 return new TxnIdBasedIndexingStrategy((TxnIdIndexingConfiguration) configuration, trackingComponent, attributeStore);
             case LAST_TXNS:
                 return new LastTxnsBasedIndexingStrategy((LastTxnsIndexingConfiguration) configuration, trackingComponent);
+            case DISTRIBUTED_TXNID:
+                return new DistributedTxnIdIndexingStrategy((DistributedTxnIdIndexingConfiguration) configuration,
+                        trackingComponent, attributeStore, jobLockService, transactionHelper);
+            case INCREMENTAL_TXNID:
+                return new IncrementalTxnIdIndexingStrategy((IncrementalTxnIdIndexingConfiguration) configuration,
+                        trackingComponent, attributeStore);
+            case NODE_ID:
+                return new NodeIdBasedIndexingStrategy((NodeIdIndexingConfiguration) configuration, trackingComponent,
+                        attributeStore);
+            case CONTENT_STORE:
+                return new ContentStoreIndexingStrategy((ContentStoreIndexingConfiguration) configuration,
+                        attributeStore);
             default:
                 throw new IllegalArgumentException("Unknown indexing strategy: "+ indexingStrategy);
         }
@@ -0,0 +1,41 @@
+package eu.xenit.alfresco.healthprocessor.indexing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import lombok.Value;
+import org.alfresco.service.cmr.repository.NodeRef;
+
+/**
+ * Batch of nodes handed out by an {@link IndexingStrategy}, together with the status of (some of) those nodes.
+ */
+@Value
+public class NodeBatch {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    // Identifies the batch when it is acknowledged, unique within this JVM and increasing in the order batches are
+    // created
+    long sequenceId;
+    @Nonnull
+    Set<NodeRef> nodeRefs;
+    // Status of the nodes that the indexing strategy knows, by NodeRef
+    @Nonnull
+    Map<NodeRef, NodeRef.Status> nodeStatuses;
+
+    public NodeBatch(@Nonnull Set<NodeRef> nodeRefs) {
+        this(nodeRefs, Collections.emptyMap());
+    }
+
+    public NodeBatch(@Nonnull Set<NodeRef> nodeRefs, @Nonnull Map<NodeRef, NodeRef.Status> nodeStatuses) {
+        this.sequenceId = SEQUENCE.incrementAndGet();
+        this.nodeRefs = nodeRefs;
+        this.nodeStatuses = nodeStatuses;
+    }
+
+    public boolean isEmpty() {
+        return nodeRefs.isEmpty();
+    }
+}
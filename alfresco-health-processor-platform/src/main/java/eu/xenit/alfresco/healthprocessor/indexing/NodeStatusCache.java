@@ -0,0 +1,39 @@
+package eu.xenit.alfresco.healthprocessor.indexing;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.alfresco.service.cmr.repository.NodeRef;
+
+/**
+ * Side-channel from the indexing strategy to the plugins: holds the status of the nodes of the batches that are being
+ * processed, as the indexing strategy fetched them. Plugins that need the status of a node can look it up here before
+ * they fall back to the {@link org.alfresco.service.cmr.repository.NodeService}.
+ */
+public class NodeStatusCache {
+
+    private final Map<NodeRef, NodeRef.Status> statuses = new ConcurrentHashMap<>();
+
+    public void putAll(@Nonnull NodeBatch batch) {
+        statuses.putAll(batch.getNodeStatuses());
+    }
+
+    @Nullable
+    public NodeRef.Status get(@Nonnull NodeRef nodeRef) {
+        return statuses.get(nodeRef);
+    }
+
+    public void removeAll(@Nonnull Collection<NodeRef> nodeRefs) {
+        nodeRefs.forEach(statuses::remove);
+    }
+
+    public void clear() {
+        statuses.clear();
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+}
@@ -2,6 +2,7 @@ package eu.xenit.alfresco.healthprocessor.indexing;
 
 import java.util.List;
 import java.util.Set;
+import lombok.AllArgsConstructor;
 import lombok.Value;
 import org.alfresco.repo.solr.NodeParameters;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -12,6 +13,27 @@ public interface TrackingComponent {
 
     Set<NodeInfo> getNodesForTxnIds(List<Long> txnIds);
 
+    /**
+     * Streams the nodes of all transactions in the range {@code [fromTxnIdInclusive, toTxnIdExclusive)} to a sink.
+     * Unlike {@link #getNodesForTxnIds(List)}, the range is queried by its bounds instead of by every transaction ID it
+     * contains, and the nodes are not collected before they are handed over. The nodes are not guaranteed to arrive in
+     * order of transaction ID.
+     * <p>
+     * The query stops as soon as the sink rejects a node.
+     */
+    void getNodesForTxnRange(long fromTxnIdInclusive, long toTxnIdExclusive, NodeInfoSink sink);
+
+    /**
+     * @return the highest database ID of all nodes, or 0 when there are no nodes
+     */
+    long getMaxNodeId();
+
+    /**
+     * Streams the nodes with a database ID in the range {@code [fromNodeIdInclusive, toNodeIdExclusive)} to a sink. The
+     * query stops as soon as the sink rejects a node.
+     */
+    void getNodesForNodeIdRange(long fromNodeIdInclusive, long toNodeIdExclusive, NodeInfoSink sink);
+
     default NodeParameters toNodeParameters(List<Long> txnIds) {
         final NodeParameters ret = new NodeParameters();
         ret.setTransactionIds(txnIds);
@@ -19,12 +41,53 @@ public interface TrackingComponent {
         return ret;
     }
 
+    default NodeParameters toNodeParameters(long fromTxnIdInclusive, long toTxnIdExclusive) {
+        final NodeParameters ret = new NodeParameters();
+        ret.setFromTxnId(fromTxnIdInclusive);
+        // Both bounds of the query are inclusive
+        ret.setToTxnId(toTxnIdExclusive - 1);
+        return ret;
+    }
+
+    default NodeParameters toNodeIdRangeParameters(long fromNodeIdInclusive, long toNodeIdExclusive) {
+        final NodeParameters ret = new NodeParameters();
+        // The query also needs a bound on the transactions, which is satisfied by all of them
+        ret.setFromTxnId(0L);
+        ret.setFromNodeId(fromNodeIdInclusive);
+        // Both bounds of the query are inclusive
+        ret.setToNodeId(toNodeIdExclusive - 1);
+        return ret;
+    }
+
+    @FunctionalInterface
+    interface NodeInfoSink {
+
+        /**
+         * @return {@code false} if the node is not accepted, to stop the query and apply back-pressure
+         */
+        boolean accept(NodeInfo nodeInfo);
+    }
+
     @Value
+    @AllArgsConstructor
     class NodeInfo {
 
         long txnId;
         long nodeId;
         NodeRef nodeRef;
+        boolean deleted;
+
+        public NodeInfo(long txnId, long nodeId, NodeRef nodeRef) {
+            this(txnId, nodeId, nodeRef, false);
+        }
+
+        /**
+         * @return the status of the node, without the change transaction ID, which is not known by the tracking
+         * component
+         */
+        public NodeRef.Status toStatus() {
+            return new NodeRef.Status(nodeId, nodeRef, null, txnId, deleted);
+        }
     }
 
 }
@@ -0,0 +1,55 @@
+package eu.xenit.alfresco.healthprocessor.indexing.contentstore;
+
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy.IndexingStrategyKey;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import lombok.Value;
+
+@Value
+public class ContentStoreIndexingConfiguration implements IndexingConfiguration {
+    /**
+     * Root directory of the file content store
+     */
+    String rootDirectory;
+    /**
+     * Protocol of the content URLs of the file content store
+     */
+    String protocol;
+    /**
+     * Files that were modified more recently are skipped, their content URL could still be on its way to the database
+     */
+    long minFileAgeMs;
+
+    public ContentStoreIndexingConfiguration(String rootDirectory, String protocol, long minFileAgeMs) {
+        if (rootDirectory == null || rootDirectory.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid configuration, rootDirectory is empty");
+        }
+        if (protocol == null || protocol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid configuration, protocol is empty");
+        }
+        if (minFileAgeMs < 0) {
+            throw new IllegalArgumentException("Invalid configuration, minFileAgeMs (" + minFileAgeMs + ") < 0");
+        }
+        this.rootDirectory = rootDirectory.trim();
+        this.protocol = protocol.trim();
+        this.minFileAgeMs = minFileAgeMs;
+    }
+
+    @Nonnull
+    @Override
+    public IndexingStrategyKey getIndexingStrategy() {
+        return IndexingStrategyKey.CONTENT_STORE;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getConfiguration() {
+        Map<String, String> ret = new HashMap<>();
+        ret.put("root-directory", getRootDirectory());
+        ret.put("protocol", getProtocol());
+        ret.put("min-file-age-ms", Long.toString(getMinFileAgeMs()));
+        return ret;
+    }
+}
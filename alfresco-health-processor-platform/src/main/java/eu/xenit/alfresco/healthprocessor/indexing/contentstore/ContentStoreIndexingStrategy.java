@@ -0,0 +1,280 @@
+package eu.xenit.alfresco.healthprocessor.indexing.contentstore;
+
+import eu.xenit.alfresco.healthprocessor.indexing.BatchProgressTracker;
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.service.cmr.repository.NodeRef;
+
+/**
+ * Walks the directory tree of a file content store, and hands out its files as nodes of the
+ * {@link ContentStoreNodeRefs} protocol, so they can be matched against the content URLs in the database.
+ * <p>
+ * Directories are visited depth-first, in the order of their (numeric) name. The file content store puts content in
+ * directories by the time it was written ({@code year/month/day/hour/minute}), so the walk is chronological. The
+ * directory of the oldest batch that is not processed yet is persisted, a walk that is interrupted resumes from that
+ * directory.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ContentStoreIndexingStrategy implements IndexingStrategy {
+
+    static final String ATTR_KEY_LAST_PROCESSED_DIRECTORY = "last-processed-content-store-directory";
+
+    private static final String PATH_SEPARATOR = "/";
+    // Numeric names in numeric order, followed by all other names in alphabetical order
+    private static final Comparator<String> NAME_ORDER = Comparator
+            .comparing((String name) -> !isNumeric(name))
+            .thenComparing((first, second) -> isNumeric(first) && isNumeric(second) ?
+                    compareNumeric(first, second) : first.compareTo(second));
+
+    private final ContentStoreIndexingConfiguration configuration;
+    private final AttributeStore attributeStore;
+
+    // Directories that still have to be visited, the next one on top
+    private final Deque<Path> directoryStack = new ArrayDeque<>();
+    private final Queue<ContentStoreFile> fileQueue = new ArrayDeque<>();
+    private Path rootDirectory;
+    // Directory to resume from, null once the walk has passed it
+    @Nullable
+    private List<String> resumeDirectory;
+    private long maxLastModifiedMs;
+    @Nullable
+    private String currentDirectory;
+    private long discoveredFiles;
+    private boolean done = false;
+    // Resume points are the directory of the first file of a batch
+    private final BatchProgressTracker<String> batchesInProgress = new BatchProgressTracker<>(
+            directory -> this.attributeStore.setAttribute(directory, ATTR_KEY_LAST_PROCESSED_DIRECTORY));
+
+    @Override
+    public void onStart() {
+        directoryStack.clear();
+        fileQueue.clear();
+        batchesInProgress.clear();
+        currentDirectory = null;
+        discoveredFiles = 0;
+        rootDirectory = Paths.get(configuration.getRootDirectory());
+        String lastProcessedDirectory = attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_DIRECTORY);
+        resumeDirectory = lastProcessedDirectory == null ? null : split(lastProcessedDirectory);
+        maxLastModifiedMs = System.currentTimeMillis() - configuration.getMinFileAgeMs();
+
+        done = !Files.isDirectory(rootDirectory);
+        if (done) {
+            log.warn("Content store directory '{}' does not exist", rootDirectory);
+        } else {
+            directoryStack.push(rootDirectory);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        attributeStore.removeAttributes(ATTR_KEY_LAST_PROCESSED_DIRECTORY);
+        directoryStack.clear();
+        fileQueue.clear();
+        batchesInProgress.reset();
+    }
+
+    @Nonnull
+    @Override
+    public Set<NodeRef> getNextNodeIds(int amount) {
+        return getNextNodeBatch(amount).getNodeRefs();
+    }
+
+    @Nonnull
+    @Override
+    public NodeBatch getNextNodeBatch(int amount) {
+        Set<NodeRef> nodeRefs = new HashSet<>();
+        fillQueue(amount);
+
+        String firstDirectory = fileQueue.isEmpty() ? null : fileQueue.peek().getDirectory();
+        for (int i = 0; i < amount && !fileQueue.isEmpty(); i++) {
+            nodeRefs.add(fileQueue.poll().getNodeRef());
+        }
+
+        NodeBatch ret = new NodeBatch(nodeRefs);
+        if (!ret.isEmpty()) {
+            batchesInProgress.onBatchHandedOut(ret, firstDirectory);
+        }
+        return ret;
+    }
+
+    @Override
+    public void prefetch(int amount) {
+        fillQueue(amount);
+    }
+
+    @Override
+    public void enableBatchAcknowledgement() {
+        batchesInProgress.enableAcknowledgement();
+    }
+
+    @Override
+    public void onBatchProcessed(@Nonnull NodeBatch batch) {
+        batchesInProgress.onBatchProcessed(batch);
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getState() {
+        Map<String, String> ret = new HashMap<>();
+        ret.put("current-directory", String.valueOf(currentDirectory));
+        ret.put("directories-to-visit", Integer.toString(directoryStack.size()));
+        ret.put("files-in-queue", Integer.toString(fileQueue.size()));
+        ret.put("discovered-files", Long.toString(discoveredFiles));
+        ret.put("walking-done", Boolean.toString(done));
+        ret.put("batches-in-progress", Integer.toString(batchesInProgress.size()));
+        return ret;
+    }
+
+    private void fillQueue(int amount) {
+        while (!done && fileQueue.size() < amount) {
+            visitNextDirectory();
+        }
+    }
+
+    private void visitNextDirectory() {
+        Path directory = directoryStack.poll();
+        if (directory == null) {
+            log.debug("All directories of '{}' have been visited -> DONE!", rootDirectory);
+            done = true;
+            return;
+        }
+        List<String> relativeDirectory = relativize(directory);
+        String relativeDirectoryName = String.join(PATH_SEPARATOR, relativeDirectory);
+        currentDirectory = relativeDirectoryName;
+
+        // Of the directories before the one to resume from, only its parents are visited, for their subdirectories.
+        // Their own files were already processed.
+        boolean skipFiles = isParentOfResumeDirectory(relativeDirectory);
+        if (!skipFiles) {
+            // The directory to resume from, or the first one after it when it no longer exists
+            resumeDirectory = null;
+        }
+
+        List<String> subdirectories = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                String name = entry.getFileName().toString();
+                if (attributes.isDirectory()) {
+                    subdirectories.add(name);
+                } else if (!skipFiles && attributes.isRegularFile()
+                        && attributes.lastModifiedTime().toMillis() <= maxLastModifiedMs) {
+                    files.add(name);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list content store directory '{}', skipping it", directory, e);
+            return;
+        }
+
+        files.sort(NAME_ORDER);
+        for (String file : files) {
+            String path = relativeDirectory.isEmpty() ? file : relativeDirectoryName + PATH_SEPARATOR + file;
+            fileQueue.add(new ContentStoreFile(
+                    ContentStoreNodeRefs.toNodeRef(configuration.getProtocol() + "://" + path),
+                    relativeDirectoryName));
+        }
+        discoveredFiles += files.size();
+
+        subdirectories.sort(NAME_ORDER.reversed());
+        for (String subdirectory : subdirectories) {
+            List<String> relativeSubdirectory = new ArrayList<>(relativeDirectory);
+            relativeSubdirectory.add(subdirectory);
+            if (!isBeforeResumeDirectory(relativeSubdirectory)) {
+                directoryStack.push(directory.resolve(subdirectory));
+            }
+        }
+    }
+
+    /**
+     * @return true if the directory and all directories below it are visited before the directory to resume from
+     */
+    private boolean isBeforeResumeDirectory(List<String> relativeDirectory) {
+        if (resumeDirectory == null) {
+            return false;
+        }
+        for (int i = 0; i < relativeDirectory.size() && i < resumeDirectory.size(); i++) {
+            int order = NAME_ORDER.compare(relativeDirectory.get(i), resumeDirectory.get(i));
+            if (order != 0) {
+                return order < 0;
+            }
+        }
+        // A parent of the directory to resume from, the directory itself, or a directory below it
+        return false;
+    }
+
+    private boolean isParentOfResumeDirectory(List<String> relativeDirectory) {
+        if (resumeDirectory == null || relativeDirectory.size() >= resumeDirectory.size()) {
+            return false;
+        }
+        for (int i = 0; i < relativeDirectory.size(); i++) {
+            if (NAME_ORDER.compare(relativeDirectory.get(i), resumeDirectory.get(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> relativize(Path directory) {
+        List<String> ret = new ArrayList<>();
+        rootDirectory.relativize(directory).forEach(name -> {
+            if (!name.toString().isEmpty()) {
+                ret.add(name.toString());
+            }
+        });
+        return ret;
+    }
+
+    private static List<String> split(String relativeDirectory) {
+        List<String> ret = new ArrayList<>(Arrays.asList(relativeDirectory.split(PATH_SEPARATOR)));
+        ret.removeIf(String::isEmpty);
+        return ret;
+    }
+
+    private static boolean isNumeric(String name) {
+        return !name.isEmpty() && name.chars().allMatch(c -> c >= '0' && c <= '9');
+    }
+
+    private static int compareNumeric(String first, String second) {
+        // Without leading zeroes, a longer number is a larger number
+        String firstNumber = first.replaceFirst("^0+(?=.)", "");
+        String secondNumber = second.replaceFirst("^0+(?=.)", "");
+        int order = Integer.compare(firstNumber.length(), secondNumber.length());
+        return order != 0 ? order : firstNumber.compareTo(secondNumber);
+    }
+
+    @Value
+    private static class ContentStoreFile {
+
+        NodeRef nodeRef;
+        // Directory of the file, relative to the root of the content store
+        String directory;
+    }
+}
@@ -0,0 +1,49 @@
+package eu.xenit.alfresco.healthprocessor.indexing.contentstore;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+
+/**
+ * The Health-Processor hands out and reports on nodes. A file of a content store is represented by a {@link NodeRef} in
+ * the {@value #PROTOCOL} protocol: the identifier of its store is the protocol of the content URL, and its id is the
+ * (encoded) path of the content URL. E.g. {@code store://2024/1/2/3/4/abc.bin} becomes
+ * {@code contentstore://store/2024%2F1%2F2%2F3%2F4%2Fabc.bin}.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ContentStoreNodeRefs {
+
+    public static final String PROTOCOL = "contentstore";
+
+    private static final String URL_SEPARATOR = "://";
+
+    @Nonnull
+    public static NodeRef toNodeRef(@Nonnull String contentUrl) {
+        int separator = contentUrl.indexOf(URL_SEPARATOR);
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Not a content URL: " + contentUrl);
+        }
+        String path = contentUrl.substring(separator + URL_SEPARATOR.length());
+        // The string form of a NodeRef can not be parsed back when its id contains slashes
+        return new NodeRef(new StoreRef(PROTOCOL, contentUrl.substring(0, separator)),
+                URLEncoder.encode(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the content URL of the file, or null if the node does not represent a file of a content store
+     */
+    @Nullable
+    public static String toContentUrl(@Nonnull NodeRef nodeRef) {
+        if (!PROTOCOL.equals(nodeRef.getStoreRef().getProtocol())) {
+            return null;
+        }
+        return nodeRef.getStoreRef().getIdentifier() + URL_SEPARATOR
+                + URLDecoder.decode(nodeRef.getId(), StandardCharsets.UTF_8);
+    }
+}
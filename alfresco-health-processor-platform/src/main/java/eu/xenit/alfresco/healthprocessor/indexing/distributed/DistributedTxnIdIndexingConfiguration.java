@@ -0,0 +1,51 @@
+package eu.xenit.alfresco.healthprocessor.indexing.distributed;
+
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy.IndexingStrategyKey;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import lombok.Value;
+
+@Value
+public class DistributedTxnIdIndexingConfiguration implements IndexingConfiguration {
+    long startTxnId;
+    long stopTxnId;
+    int txnBatchSize;
+    long partitionSize;
+    long leaseTtl;
+
+    public DistributedTxnIdIndexingConfiguration(long startTxnId, long stopTxnId, int txnBatchSize,
+            long partitionSize, long leaseTtl) {
+        if (startTxnId > stopTxnId) {
+            final String msg = "Invalid configuration, startTxnId (" + startTxnId + ") > stopId (" + stopTxnId + ")";
+            throw new IllegalArgumentException(msg);
+        }
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("Invalid configuration, partitionSize (" + partitionSize + ") <= 0");
+        }
+        this.startTxnId = startTxnId;
+        this.stopTxnId = stopTxnId;
+        this.txnBatchSize = txnBatchSize;
+        this.partitionSize = partitionSize;
+        this.leaseTtl = leaseTtl;
+    }
+
+    @Nonnull
+    @Override
+    public IndexingStrategyKey getIndexingStrategy() {
+        return IndexingStrategyKey.DISTRIBUTED_TXNID;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getConfiguration() {
+        Map<String, String> ret = new HashMap<>();
+        ret.put("start-txn-id", Long.toString(getStartTxnId()));
+        ret.put("stop-txn-id", Long.toString(getStopTxnId()));
+        ret.put("txn-batch-size", Integer.toString(getTxnBatchSize()));
+        ret.put("partition-size", Long.toString(getPartitionSize()));
+        ret.put("lease-ttl", Long.toString(getLeaseTtl()));
+        return ret;
+    }
+}
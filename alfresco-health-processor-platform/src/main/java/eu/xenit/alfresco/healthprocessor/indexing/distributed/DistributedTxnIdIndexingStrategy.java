@@ -0,0 +1,424 @@
+package eu.xenit.alfresco.healthprocessor.indexing.distributed;
+
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.indexing.NullCycleProgress;
+import eu.xenit.alfresco.healthprocessor.indexing.SimpleCycleProgress;
+import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent;
+import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdBasedIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.reporter.api.CycleProgress;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.TransactionHelper;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.JobLockService.JobLockRefreshCallback;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Indexing strategy that lets all Alfresco nodes of a cluster work on the same cycle.
+ * <p>
+ * The transaction range of a cycle is split into partitions, which are recorded in the {@link AttributeStore}. Each
+ * node claims partitions by taking a lease on them: a {@link JobLockService} lock that is kept alive by a
+ * {@link JobLockRefreshCallback} for as long as the node is processing the partition. A claimed partition is processed
+ * by a {@link TxnIdBasedIndexingStrategy} that persists its progress per partition. When a node crashes, its leases
+ * expire and the partitions are resumed by the next node that claims them. The node that finishes the last partition
+ * completes the cycle.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DistributedTxnIdIndexingStrategy implements IndexingStrategy {
+
+    static final String ATTR_KEY_CYCLE = "distributed-cycle";
+    static final String ATTR_KEY_CYCLE_START_TXN_ID = "start-txn-id";
+    static final String ATTR_KEY_CYCLE_MAX_TXN_ID = "max-txn-id";
+    static final String ATTR_KEY_CYCLE_PARTITION_SIZE = "partition-size";
+    static final String ATTR_KEY_DONE_PARTITIONS = "distributed-done-partitions";
+
+    static final QName COORDINATION_LOCK_QNAME =
+            QName.createQName(NamespaceService.SYSTEM_MODEL_1_0_URI, "HealthProcessor-Partitions");
+    static final long COORDINATION_LOCK_TTL = 5000L;
+    private static final long COORDINATION_LOCK_RETRY_WAIT = 500L;
+    private static final int COORDINATION_LOCK_RETRY_COUNT = 20;
+
+    private final DistributedTxnIdIndexingConfiguration configuration;
+    private final TrackingComponent trackingComponent;
+    private final AttributeStore attributeStore;
+    private final JobLockService jobLockService;
+    private final TransactionHelper transactionHelper;
+
+    private long cycleStartTxnId;
+    private long cycleMaxTxnId;
+    private long partitionSize;
+    private long numberOfPartitions;
+    private long numberOfDonePartitions;
+    private boolean cycleDone;
+    private boolean batchAcknowledgement = false;
+    @Nullable
+    private Partition currentPartition;
+    // Partitions claimed by this node that are not done yet: the current one and those with batches in progress
+    private final List<Partition> claimedPartitions = new ArrayList<>();
+    // Partition of the batches that have been handed out but not yet acknowledged, by sequence ID
+    private final Map<Long, Partition> batchesInProgress = new HashMap<>();
+    private CycleProgress cycleProgress = NullCycleProgress.getInstance();
+
+    static QName partitionLockQName(long partition) {
+        return QName.createQName(NamespaceService.SYSTEM_MODEL_1_0_URI, "HealthProcessor-Partition-" + partition);
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getState() {
+        Map<String, String> ret = new HashMap<>();
+
+        ret.put("cycle-start-txn-id", Long.toString(cycleStartTxnId));
+        ret.put("cycle-max-txn-id", Long.toString(cycleMaxTxnId));
+        ret.put("partitions", Long.toString(numberOfPartitions));
+        ret.put("partitions-done", Long.toString(numberOfDonePartitions));
+        ret.put("claimed-partitions", Integer.toString(claimedPartitions.size()));
+        Partition partition = currentPartition;
+        if (partition != null) {
+            ret.put("current-partition", Long.toString(partition.index));
+            partition.strategy.getState().forEach((key, value) -> ret.put("current-partition." + key, value));
+        }
+
+        return ret;
+    }
+
+    @Nonnull
+    @Override
+    public CycleProgress getCycleProgress() {
+        return cycleProgress;
+    }
+
+    @Override
+    public void onStart() {
+        cycleDone = false;
+        currentPartition = null;
+        claimedPartitions.clear();
+        batchesInProgress.clear();
+        initializeCycle();
+        numberOfDonePartitions = attributeStore.getAttributes(ATTR_KEY_DONE_PARTITIONS).size();
+        cycleProgress = new SimpleCycleProgress(1, numberOfPartitions, () -> numberOfDonePartitions);
+    }
+
+    @Override
+    public void onStop() {
+        releaseClaimedPartitions();
+        cycleProgress = NullCycleProgress.getInstance();
+        batchAcknowledgement = false;
+    }
+
+    @Override
+    public void onException(@Nonnull Exception e) {
+        // Progress of the claimed partitions is kept: they are resumed once their lease has expired
+        releaseClaimedPartitions();
+        batchAcknowledgement = false;
+    }
+
+    @Override
+    public boolean isCycleDone() {
+        return cycleDone;
+    }
+
+    @Override
+    public void enableBatchAcknowledgement() {
+        batchAcknowledgement = true;
+    }
+
+    @Nonnull
+    @Override
+    public Set<NodeRef> getNextNodeIds(int amount) {
+        return getNextNodeBatch(amount).getNodeRefs();
+    }
+
+    @Nonnull
+    @Override
+    public NodeBatch getNextNodeBatch(int amount) {
+        while (true) {
+            if (currentPartition != null && currentPartition.lease.isLost()) {
+                log.warn("Lease on partition #{} has been lost, it will be resumed by the next node that claims it",
+                        currentPartition.index);
+                claimedPartitions.remove(currentPartition);
+                currentPartition = null;
+            }
+            if (currentPartition == null) {
+                currentPartition = claimPartition();
+                if (currentPartition == null) {
+                    completeCycleIfAllPartitionsDone();
+                    return new NodeBatch(Collections.emptySet());
+                }
+            }
+
+            NodeBatch ret = currentPartition.strategy.getNextNodeBatch(amount);
+            if (!ret.isEmpty()) {
+                if (batchAcknowledgement) {
+                    batchesInProgress.put(ret.getSequenceId(), currentPartition);
+                    currentPartition.batchesInProgress++;
+                }
+                return ret;
+            }
+
+            // Without batch acknowledgement, requesting a new batch implies that the previous batch has been processed
+            currentPartition.exhausted = true;
+            completePartitionIfProcessed(currentPartition);
+            currentPartition = null;
+        }
+    }
+
+    @Override
+    public void prefetch(int amount) {
+        Partition partition = currentPartition;
+        if (partition != null) {
+            partition.strategy.prefetch(amount);
+        }
+    }
+
+    @Override
+    public void onBatchProcessed(@Nonnull NodeBatch batch) {
+        Partition partition = batchesInProgress.remove(batch.getSequenceId());
+        if (partition == null) {
+            log.warn("Acknowledged a batch of #{} nodes that is not in progress", batch.getNodeRefs().size());
+            return;
+        }
+        partition.batchesInProgress--;
+        if (isLeaseLost(partition)) {
+            return;
+        }
+        partition.strategy.onBatchProcessed(batch);
+        completePartitionIfProcessed(partition);
+    }
+
+    private void initializeCycle() {
+        if (readCycle()) {
+            return;
+        }
+        withCoordinationLock(() -> {
+            if (!readCycle()) {
+                createCycle();
+            }
+        });
+    }
+
+    private boolean readCycle() {
+        Long startTxnId = attributeStore.getAttribute(ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_START_TXN_ID);
+        Long maxTxnId = attributeStore.getAttribute(ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_MAX_TXN_ID);
+        Long size = attributeStore.getAttribute(ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_PARTITION_SIZE);
+        if (startTxnId == null || maxTxnId == null || size == null) {
+            return false;
+        }
+        initializePartitions(startTxnId, maxTxnId, size);
+        log.debug("Joined cycle of #{} partitions, transactions [{}, {}]", numberOfPartitions, startTxnId, maxTxnId);
+        return true;
+    }
+
+    private void createCycle() {
+        initializePartitions(Math.max(configuration.getStartTxnId(), 1L),
+                Math.min(trackingComponent.getMaxTxnId(), configuration.getStopTxnId()),
+                configuration.getPartitionSize());
+        attributeStore.setAttribute(cycleStartTxnId, ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_START_TXN_ID);
+        attributeStore.setAttribute(cycleMaxTxnId, ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_MAX_TXN_ID);
+        attributeStore.setAttribute(partitionSize, ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_PARTITION_SIZE);
+        attributeStore.removeAttributes(ATTR_KEY_DONE_PARTITIONS);
+        log.info("Started cycle of #{} partitions, transactions [{}, {}]", numberOfPartitions, cycleStartTxnId,
+                cycleMaxTxnId);
+    }
+
+    private void initializePartitions(long startTxnId, long maxTxnId, long size) {
+        cycleStartTxnId = startTxnId;
+        cycleMaxTxnId = maxTxnId;
+        partitionSize = size;
+        numberOfPartitions = maxTxnId < startTxnId ? 0 : (maxTxnId - startTxnId) / size + 1;
+    }
+
+    @Nullable
+    private Partition claimPartition() {
+        if (cycleDone || !isCurrentCycle()) {
+            return null;
+        }
+        Map<Serializable, Serializable> donePartitions = attributeStore.getAttributes(ATTR_KEY_DONE_PARTITIONS);
+        numberOfDonePartitions = donePartitions.size();
+
+        for (long index = 0; index < numberOfPartitions; index++) {
+            if (donePartitions.containsKey(index) || isClaimed(index)) {
+                continue;
+            }
+            Partition partition = tryClaimPartition(index);
+            if (partition != null) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    private boolean isCurrentCycle() {
+        // The cycle this node joined can have been completed, and a new one started, by other nodes in the meantime
+        Long startTxnId = attributeStore.getAttribute(ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_START_TXN_ID);
+        Long maxTxnId = attributeStore.getAttribute(ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_MAX_TXN_ID);
+        return startTxnId != null && startTxnId == cycleStartTxnId && maxTxnId != null && maxTxnId == cycleMaxTxnId;
+    }
+
+    private boolean isClaimed(long index) {
+        return claimedPartitions.stream().anyMatch(partition -> partition.index == index);
+    }
+
+    @Nullable
+    private Partition tryClaimPartition(long index) {
+        PartitionLease lease = new PartitionLease();
+        try {
+            jobLockService.getLock(partitionLockQName(index), configuration.getLeaseTtl(), lease);
+        } catch (LockAcquisitionException e) {
+            log.trace("Partition #{} is claimed by another node", index);
+            return null;
+        }
+        // The partition can have been completed by another node after the done partitions have been read
+        if (attributeStore.getAttribute(ATTR_KEY_DONE_PARTITIONS, index) != null) {
+            lease.release();
+            return null;
+        }
+
+        long startTxnId = cycleStartTxnId + index * partitionSize;
+        long stopTxnId = Math.min(startTxnId + partitionSize - 1, cycleMaxTxnId);
+        TxnIdBasedIndexingStrategy strategy = new TxnIdBasedIndexingStrategy(
+                new TxnIdIndexingConfiguration(startTxnId, stopTxnId, configuration.getTxnBatchSize()),
+                trackingComponent, attributeStore, index);
+        if (batchAcknowledgement) {
+            strategy.enableBatchAcknowledgement();
+        }
+        strategy.onStart();
+        log.debug("Claimed partition #{}, transactions [{}, {}]", index, startTxnId, stopTxnId);
+
+        Partition partition = new Partition(index, strategy, lease);
+        claimedPartitions.add(partition);
+        return partition;
+    }
+
+    private void completePartitionIfProcessed(Partition partition) {
+        if (!partition.exhausted || partition.batchesInProgress > 0 || isLeaseLost(partition)) {
+            return;
+        }
+        withCoordinationLock(() -> {
+            if (partition.lease.isLost()) {
+                return;
+            }
+            partition.strategy.onStop();
+            attributeStore.setAttribute(Boolean.TRUE, ATTR_KEY_DONE_PARTITIONS, partition.index);
+            log.debug("Completed partition #{}", partition.index);
+            completeCycleIfAllPartitionsDoneInternal();
+        });
+        claimedPartitions.remove(partition);
+        partition.lease.release();
+    }
+
+    /**
+     * Once the lease on a partition is lost, another node can have claimed it. Progress of the partition is then no
+     * longer persisted by this node: acknowledgements are dropped and the partition is never completed by it. The node
+     * that claims the partition next resumes it from the progress that was persisted before the lease was lost.
+     */
+    private boolean isLeaseLost(Partition partition) {
+        if (!partition.lease.isLost()) {
+            return false;
+        }
+        if (claimedPartitions.remove(partition)) {
+            log.warn("Lease on partition #{} has been lost, dropping the progress of its batches in progress",
+                    partition.index);
+        }
+        return true;
+    }
+
+    private void completeCycleIfAllPartitionsDone() {
+        if (!claimedPartitions.isEmpty()
+                || attributeStore.getAttributes(ATTR_KEY_DONE_PARTITIONS).size() < numberOfPartitions) {
+            return;
+        }
+        withCoordinationLock(this::completeCycleIfAllPartitionsDoneInternal);
+    }
+
+    private void completeCycleIfAllPartitionsDoneInternal() {
+        numberOfDonePartitions = attributeStore.getAttributes(ATTR_KEY_DONE_PARTITIONS).size();
+        if (numberOfDonePartitions < numberOfPartitions
+                || attributeStore.getAttribute(ATTR_KEY_CYCLE, ATTR_KEY_CYCLE_START_TXN_ID) == null) {
+            // Partitions still in progress, or the cycle has already been completed by another node
+            return;
+        }
+        attributeStore.removeAttributes(ATTR_KEY_CYCLE);
+        attributeStore.removeAttributes(ATTR_KEY_DONE_PARTITIONS);
+        cycleDone = true;
+        log.info("Completed cycle of #{} partitions", numberOfPartitions);
+    }
+
+    /**
+     * Coordination between nodes happens in a separate transaction, which is committed before the lock is released, so
+     * the next node that takes the lock always sees the changes of the previous one.
+     */
+    private void withCoordinationLock(Runnable runnable) {
+        String lockToken = jobLockService.getLock(COORDINATION_LOCK_QNAME, COORDINATION_LOCK_TTL,
+                COORDINATION_LOCK_RETRY_WAIT, COORDINATION_LOCK_RETRY_COUNT);
+        try {
+            transactionHelper.inNewTransaction(runnable, false);
+        } finally {
+            jobLockService.releaseLock(lockToken, COORDINATION_LOCK_QNAME);
+        }
+    }
+
+    private void releaseClaimedPartitions() {
+        claimedPartitions.forEach(partition -> partition.lease.release());
+        claimedPartitions.clear();
+        batchesInProgress.clear();
+        currentPartition = null;
+    }
+
+    @RequiredArgsConstructor
+    private static class Partition {
+
+        private final long index;
+        private final TxnIdBasedIndexingStrategy strategy;
+        private final PartitionLease lease;
+        private boolean exhausted;
+        private int batchesInProgress;
+    }
+
+    /**
+     * Lease on a partition, which is refreshed by the {@link JobLockService} as long as it is active.
+     */
+    private static class PartitionLease implements JobLockRefreshCallback {
+
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        private final AtomicBoolean lost = new AtomicBoolean(false);
+
+        @Override
+        public boolean isActive() {
+            return active.get();
+        }
+
+        @Override
+        public void lockReleased() {
+            if (active.get()) {
+                lost.set(true);
+            }
+        }
+
+        boolean isLost() {
+            return lost.get();
+        }
+
+        void release() {
+            // The lock itself is released by the JobLockService on its next refresh, after this transaction committed
+            active.set(false);
+        }
+    }
+}
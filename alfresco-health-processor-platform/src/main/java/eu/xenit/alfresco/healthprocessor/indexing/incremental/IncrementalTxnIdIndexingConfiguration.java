@@ -0,0 +1,39 @@
+package eu.xenit.alfresco.healthprocessor.indexing.incremental;
+
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy.IndexingStrategyKey;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import lombok.Value;
+
+@Value
+public class IncrementalTxnIdIndexingConfiguration implements IndexingConfiguration {
+    /**
+     * First transaction of the very first cycle, when no cycle has been completed yet
+     */
+    long startTxnId;
+    int txnBatchSize;
+    /**
+     * Number of transactions below the watermark that every cycle processes again. Transaction IDs are handed out
+     * when a transaction starts, so a long-running transaction can commit with an ID below the watermark after a cycle
+     * has completed.
+     */
+    long lookbackTransactions;
+
+    @Nonnull
+    @Override
+    public IndexingStrategyKey getIndexingStrategy() {
+        return IndexingStrategyKey.INCREMENTAL_TXNID;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getConfiguration() {
+        Map<String, String> ret = new HashMap<>();
+        ret.put("start-txn-id", Long.toString(getStartTxnId()));
+        ret.put("txn-batch-size", Integer.toString(getTxnBatchSize()));
+        ret.put("lookback-transactions", Long.toString(getLookbackTransactions()));
+        return ret;
+    }
+}
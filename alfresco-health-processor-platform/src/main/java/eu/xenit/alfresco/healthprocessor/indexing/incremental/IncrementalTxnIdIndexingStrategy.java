@@ -0,0 +1,150 @@
+package eu.xenit.alfresco.healthprocessor.indexing.incremental;
+
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.indexing.NullCycleProgress;
+import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent;
+import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdBasedIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.reporter.api.CycleProgress;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.service.cmr.repository.NodeRef;
+
+/**
+ * Indexing strategy that only processes the transactions that have been committed since the previous successful cycle.
+ * <p>
+ * When a cycle completes, the highest transaction ID of that cycle is persisted as a watermark in the
+ * {@link AttributeStore}. The next cycle processes the range {@code (watermark - lookbackTransactions, maxTxnId]}
+ * with a {@link TxnIdBasedIndexingStrategy}, which persists its own progress, so a failed cycle is resumed by the next
+ * one.
+ * <p>
+ * Transaction IDs are assigned when a transaction starts, not when it commits. A transaction that is still running
+ * when a cycle determines its {@code maxTxnId} can commit afterwards with an ID below the watermark. Like the hole
+ * retention of Solr, every cycle looks back a number of transactions below the watermark to pick up those
+ * transactions.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class IncrementalTxnIdIndexingStrategy implements IndexingStrategy {
+
+    static final String ATTR_KEY_WATERMARK_TXN_ID = "incremental-watermark-txn-id";
+    // Secondary key of the persisted progress of the txn-id strategy for the current cycle
+    static final String STATE_KEY = "incremental";
+
+    private final IncrementalTxnIdIndexingConfiguration configuration;
+    private final TrackingComponent trackingComponent;
+    private final AttributeStore attributeStore;
+
+    @Nullable
+    private Long watermark;
+    private long cycleStartTxnId;
+    private long cycleMaxTxnId;
+    private boolean batchAcknowledgement = false;
+    // Strategy for the transactions of the current cycle, or null if no transactions have been committed since the
+    // previous cycle
+    @Nullable
+    private TxnIdBasedIndexingStrategy cycleStrategy;
+
+    @Override
+    public void onStart() {
+        watermark = attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID);
+        cycleStartTxnId = watermark == null ? configuration.getStartTxnId()
+                : Math.max(configuration.getStartTxnId(), watermark + 1 - configuration.getLookbackTransactions());
+        cycleMaxTxnId = trackingComponent.getMaxTxnId();
+        log.debug("Processing transactions since the previous cycle. cycleStartTxnId={}, cycleMaxTxnId={}",
+                cycleStartTxnId, cycleMaxTxnId);
+
+        if (cycleStartTxnId > cycleMaxTxnId) {
+            cycleStrategy = null;
+            return;
+        }
+        cycleStrategy = new TxnIdBasedIndexingStrategy(
+                new TxnIdIndexingConfiguration(cycleStartTxnId, cycleMaxTxnId, configuration.getTxnBatchSize()),
+                trackingComponent, attributeStore, STATE_KEY);
+        if (batchAcknowledgement) {
+            cycleStrategy.enableBatchAcknowledgement();
+        }
+        cycleStrategy.onStart();
+    }
+
+    @Override
+    public void onStop() {
+        if (cycleStrategy != null) {
+            cycleStrategy.onStop();
+            cycleStrategy = null;
+        }
+        // Only a successful cycle moves the watermark: after a failure, the same range is processed again. The
+        // watermark never moves back, the lookback is applied when the next cycle starts.
+        long previousWatermark = watermark == null ? cycleStartTxnId - 1 : watermark;
+        attributeStore.setAttribute(Math.max(cycleMaxTxnId, previousWatermark), ATTR_KEY_WATERMARK_TXN_ID);
+        batchAcknowledgement = false;
+    }
+
+    @Override
+    public void onException(@Nonnull Exception e) {
+        if (cycleStrategy != null) {
+            cycleStrategy.onException(e);
+            cycleStrategy = null;
+        }
+        batchAcknowledgement = false;
+    }
+
+    @Nonnull
+    @Override
+    public Set<NodeRef> getNextNodeIds(int amount) {
+        return getNextNodeBatch(amount).getNodeRefs();
+    }
+
+    @Nonnull
+    @Override
+    public NodeBatch getNextNodeBatch(int amount) {
+        return cycleStrategy == null ? new NodeBatch(Collections.emptySet()) : cycleStrategy.getNextNodeBatch(amount);
+    }
+
+    @Override
+    public void prefetch(int amount) {
+        if (cycleStrategy != null) {
+            cycleStrategy.prefetch(amount);
+        }
+    }
+
+    @Override
+    public void enableBatchAcknowledgement() {
+        batchAcknowledgement = true;
+    }
+
+    @Override
+    public void onBatchProcessed(@Nonnull NodeBatch batch) {
+        if (cycleStrategy != null) {
+            cycleStrategy.onBatchProcessed(batch);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getState() {
+        Map<String, String> ret = new HashMap<>();
+        ret.put("cycle-start-txn-id", Long.toString(cycleStartTxnId));
+        ret.put("cycle-max-txn-id", Long.toString(cycleMaxTxnId));
+        TxnIdBasedIndexingStrategy strategy = cycleStrategy;
+        if (strategy != null) {
+            ret.putAll(strategy.getState());
+        }
+        return ret;
+    }
+
+    @Nonnull
+    @Override
+    public CycleProgress getCycleProgress() {
+        TxnIdBasedIndexingStrategy strategy = cycleStrategy;
+        return strategy == null ? NullCycleProgress.getInstance() : strategy.getCycleProgress();
+    }
+}
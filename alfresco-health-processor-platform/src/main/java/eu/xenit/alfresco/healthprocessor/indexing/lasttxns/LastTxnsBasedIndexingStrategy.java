@@ -3,6 +3,7 @@ package eu.xenit.alfresco.healthprocessor.indexing.lasttxns;
 import eu.xenit.alfresco.healthprocessor.indexing.NullCycleProgress;
 import eu.xenit.alfresco.healthprocessor.reporter.api.CycleProgress;
 import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
 import eu.xenit.alfresco.healthprocessor.indexing.SimpleCycleProgress;
 import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent;
 import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent.NodeInfo;
@@ -14,8 +15,6 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.LongStream;
 import javax.annotation.Nonnull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -46,24 +45,41 @@ public class LastTxnsBasedIndexingStrategy implements IndexingStrategy {
     @Nonnull
     @Override
     public Set<NodeRef> getNextNodeIds(int amount) {
-        Set<NodeRef> ret = new HashSet<>();
+        return getNextNodeBatch(amount).getNodeRefs();
+    }
 
-        while (
-                nextMaxTxId > 0
-                        && processedTransactions < configuration.getLookbackTransactions()
-                        && nodeQueue.size() < amount
-        ) {
-            fetchMoreNodes();
-        }
+    @Nonnull
+    @Override
+    public NodeBatch getNextNodeBatch(int amount) {
+        Set<NodeRef> nodeRefs = new HashSet<>();
+        Map<NodeRef, NodeRef.Status> nodeStatuses = new HashMap<>();
+
+        fillQueue(amount);
 
         for (int i = 0; i < amount; i++) {
             NodeInfo nodeInfo = nodeQueue.poll();
             if (nodeInfo == null) {
                 break;
             }
-            ret.add(nodeInfo.getNodeRef());
+            nodeRefs.add(nodeInfo.getNodeRef());
+            nodeStatuses.put(nodeInfo.getNodeRef(), nodeInfo.toStatus());
+        }
+        return new NodeBatch(nodeRefs, nodeStatuses);
+    }
+
+    @Override
+    public void prefetch(int amount) {
+        fillQueue(amount);
+    }
+
+    private void fillQueue(int amount) {
+        while (
+                nextMaxTxId > 0
+                        && processedTransactions < configuration.getLookbackTransactions()
+                        && nodeQueue.size() < amount
+        ) {
+            fetchMoreNodes();
         }
-        return ret;
     }
 
     private void fetchMoreNodes() {
@@ -76,16 +92,15 @@ public class LastTxnsBasedIndexingStrategy implements IndexingStrategy {
         long startTxId = Math.max(0, endTxIdExclusive - transactionsToLookBack);
         assert startTxId < endTxIdExclusive;
         log.debug("Fetching more nodes. startTxId={}, endTxIdExclusive={}", startTxId, endTxIdExclusive);
-        Set<NodeInfo> nodeInfo = trackingComponent.getNodesForTxnIds(
-                LongStream.range(startTxId, endTxIdExclusive).boxed().collect(Collectors.toList())
-        );
-
-        long uniqueTransactions = nodeInfo.stream().map(NodeInfo::getTxnId).distinct().count();
-        log.debug("Processed {} unique transactions", uniqueTransactions);
-        processedTransactions += uniqueTransactions;
+        Set<Long> uniqueTransactions = new HashSet<>();
+        trackingComponent.getNodesForTxnRange(startTxId, endTxIdExclusive, nodeInfo -> {
+            uniqueTransactions.add(nodeInfo.getTxnId());
+            return nodeQueue.add(nodeInfo);
+        });
+
+        log.debug("Processed {} unique transactions", uniqueTransactions.size());
+        processedTransactions += uniqueTransactions.size();
         nextMaxTxId = startTxId - 1;
-
-        nodeQueue.addAll(nodeInfo);
     }
 
     @Override
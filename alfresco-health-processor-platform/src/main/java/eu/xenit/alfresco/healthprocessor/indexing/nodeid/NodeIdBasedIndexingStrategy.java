@@ -0,0 +1,156 @@
+package eu.xenit.alfresco.healthprocessor.indexing.nodeid;
+
+import eu.xenit.alfresco.healthprocessor.indexing.BatchProgressTracker;
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.indexing.NullCycleProgress;
+import eu.xenit.alfresco.healthprocessor.indexing.SimpleCycleProgress;
+import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent;
+import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent.NodeInfo;
+import eu.xenit.alfresco.healthprocessor.reporter.api.CycleProgress;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.service.cmr.repository.NodeRef;
+
+/**
+ * Loops over nodes by their database ID, in contiguous ranges of {@code nodeIdBatchSize} IDs. Every node is visited
+ * exactly once, regardless of the number of transactions it has been modified in, and empty or purged transactions are
+ * never queried.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class NodeIdBasedIndexingStrategy implements IndexingStrategy {
+
+    static final String ATTR_KEY_LAST_PROCESSED_NODE_ID = "last-processed-node-id";
+
+    private final NodeIdIndexingConfiguration configuration;
+    private final TrackingComponent trackingComponent;
+    private final AttributeStore attributeStore;
+
+    private final Queue<NodeInfo> nodeQueue = new PriorityQueue<>(Comparator.comparingLong(NodeInfo::getNodeId));
+    private long maxNodeIdInclusive;
+    private long nextStartNodeIdToFetch;
+    private boolean done = false;
+    // Resume points are the first node ID of a batch
+    private final BatchProgressTracker<Long> batchesInProgress = new BatchProgressTracker<>(
+            nodeId -> this.attributeStore.setAttribute(nodeId, ATTR_KEY_LAST_PROCESSED_NODE_ID));
+
+    private CycleProgress cycleProgress = NullCycleProgress.getInstance();
+
+    @Override
+    public void onStart() {
+        done = false;
+        nodeQueue.clear();
+        batchesInProgress.clear();
+        initializeStartNodeId();
+        maxNodeIdInclusive = Math.min(trackingComponent.getMaxNodeId(), configuration.getStopNodeId());
+        done = nextStartNodeIdToFetch > maxNodeIdInclusive;
+        cycleProgress = new SimpleCycleProgress(nextStartNodeIdToFetch, maxNodeIdInclusive,
+                () -> nextStartNodeIdToFetch - 1);
+    }
+
+    @Override
+    public void onStop() {
+        attributeStore.removeAttributes(ATTR_KEY_LAST_PROCESSED_NODE_ID);
+        cycleProgress = NullCycleProgress.getInstance();
+        batchesInProgress.reset();
+    }
+
+    @Nonnull
+    @Override
+    public Set<NodeRef> getNextNodeIds(int amount) {
+        return getNextNodeBatch(amount).getNodeRefs();
+    }
+
+    @Nonnull
+    @Override
+    public NodeBatch getNextNodeBatch(int amount) {
+        Set<NodeRef> nodeRefs = new HashSet<>();
+        Map<NodeRef, NodeRef.Status> nodeStatuses = new HashMap<>();
+        fillQueue(amount);
+
+        long firstNodeId = nodeQueue.isEmpty() ? -1 : nodeQueue.peek().getNodeId();
+        for (int i = 0; i < amount && !nodeQueue.isEmpty(); i++) {
+            NodeInfo nodeInfo = nodeQueue.poll();
+            nodeRefs.add(nodeInfo.getNodeRef());
+            nodeStatuses.put(nodeInfo.getNodeRef(), nodeInfo.toStatus());
+        }
+
+        NodeBatch ret = new NodeBatch(nodeRefs, nodeStatuses);
+        if (!ret.isEmpty()) {
+            batchesInProgress.onBatchHandedOut(ret, firstNodeId);
+        }
+        return ret;
+    }
+
+    @Override
+    public void prefetch(int amount) {
+        fillQueue(amount);
+    }
+
+    @Override
+    public void enableBatchAcknowledgement() {
+        batchesInProgress.enableAcknowledgement();
+    }
+
+    @Override
+    public void onBatchProcessed(@Nonnull NodeBatch batch) {
+        batchesInProgress.onBatchProcessed(batch);
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getState() {
+        Map<String, String> ret = new HashMap<>();
+        ret.put("max-node-id-inclusive", Long.toString(maxNodeIdInclusive));
+        ret.put("next-node-id", Long.toString(nextStartNodeIdToFetch));
+        ret.put("nodes-in-queue", Integer.toString(nodeQueue.size()));
+        ret.put("fetching-nodes-done", Boolean.toString(done));
+        ret.put("batches-in-progress", Integer.toString(batchesInProgress.size()));
+        return ret;
+    }
+
+    @Nonnull
+    @Override
+    public CycleProgress getCycleProgress() {
+        return cycleProgress;
+    }
+
+    private void initializeStartNodeId() {
+        Long lastProcessedNodeId = attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_NODE_ID);
+        if (lastProcessedNodeId == null) {
+            lastProcessedNodeId = 1L;
+        }
+        nextStartNodeIdToFetch = Math.max(configuration.getStartNodeId(), lastProcessedNodeId);
+    }
+
+    private void fillQueue(int amount) {
+        while (!done && nodeQueue.size() < amount) {
+            fetchMoreNodes();
+        }
+    }
+
+    private void fetchMoreNodes() {
+        long startNodeId = nextStartNodeIdToFetch;
+        long endNodeIdExclusive = Math.min(startNodeId + configuration.getNodeIdBatchSize(), maxNodeIdInclusive + 1);
+
+        log.debug("Fetching more nodes. startNodeId={}, endNodeIdExclusive={}", startNodeId, endNodeIdExclusive);
+        trackingComponent.getNodesForNodeIdRange(startNodeId, endNodeIdExclusive, nodeQueue::add);
+
+        nextStartNodeIdToFetch = endNodeIdExclusive;
+        if (nextStartNodeIdToFetch > maxNodeIdInclusive) {
+            log.debug("nextStartNodeIdToFetch ({}) > maxNodeIdInclusive ({}) -> DONE!",
+                    nextStartNodeIdToFetch, maxNodeIdInclusive);
+            done = true;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package eu.xenit.alfresco.healthprocessor.indexing.nodeid;
+
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy.IndexingStrategyKey;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import lombok.Value;
+
+@Value
+public class NodeIdIndexingConfiguration implements IndexingConfiguration {
+    long startNodeId;
+    long stopNodeId;
+    int nodeIdBatchSize;
+
+    public NodeIdIndexingConfiguration(long startNodeId, long stopNodeId, int nodeIdBatchSize) {
+        if (startNodeId > stopNodeId) {
+            final String msg = "Invalid configuration, startNodeId (" + startNodeId + ") > stopNodeId ("
+                    + stopNodeId + ")";
+            throw new IllegalArgumentException(msg);
+        }
+        if (nodeIdBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid configuration, nodeIdBatchSize (" + nodeIdBatchSize + ") <= 0");
+        }
+        this.startNodeId = startNodeId;
+        this.stopNodeId = stopNodeId;
+        this.nodeIdBatchSize = nodeIdBatchSize;
+    }
+
+    @Nonnull
+    @Override
+    public IndexingStrategyKey getIndexingStrategy() {
+        return IndexingStrategyKey.NODE_ID;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getConfiguration() {
+        Map<String, String> ret = new HashMap<>();
+        ret.put("start-node-id", Long.toString(getStartNodeId()));
+        ret.put("stop-node-id", Long.toString(getStopNodeId()));
+        ret.put("node-id-batch-size", Integer.toString(getNodeIdBatchSize()));
+        return ret;
+    }
+}
@@ -0,0 +1,286 @@
+package eu.xenit.alfresco.healthprocessor.indexing.txnid;
+
+import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent.NodeInfo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+
+/**
+ * Queue of nodes, ordered by transaction ID, that is backed by parallel primitive arrays instead of {@link NodeInfo}
+ * objects. The {@link NodeRef} of a node is stored as an index in a table of stores and its UUID as two longs, so
+ * {@link NodeRef} instances are only created again when nodes are polled from the queue.
+ * <p>
+ * Nodes are expected to be added in increasing transaction IDs, one by one or in batches: each batch is sorted on its own
+ * and appended to the tail of the queue. Nodes that are added one by one are appended as they are, and are put in order
+ * with {@link #sortLast(int)} once all of them have been added.
+ * <p>
+ * The arrays grow with the largest number of queued nodes, e.g. for a dense transaction range. They shrink again once
+ * the queue drains, or once more than half of them holds nodes that have already been polled.
+ */
+final class CompactNodeQueue {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // txnId + nodeId + uuid (2 longs) + store index + deleted flag
+    static final int BYTES_PER_SLOT = 8 + 8 + 16 + 4 + 1;
+
+    private long[] txnIds = new long[0];
+    private long[] nodeIds = new long[0];
+    private long[] uuidsMostSigBits = new long[0];
+    private long[] uuidsLeastSigBits = new long[0];
+    private int[] storeIndexes = new int[0];
+    private boolean[] deleted = new boolean[0];
+    private int head;
+    private int tail;
+
+    private final List<StoreRef> stores = new ArrayList<>();
+    // UUIDs that are not in the canonical UUID format, by node ID
+    private final Map<Long, String> irregularUuids = new HashMap<>();
+
+    int size() {
+        return tail - head;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    void clear() {
+        txnIds = new long[0];
+        nodeIds = new long[0];
+        uuidsMostSigBits = new long[0];
+        uuidsLeastSigBits = new long[0];
+        storeIndexes = new int[0];
+        deleted = new boolean[0];
+        head = tail = 0;
+        stores.clear();
+        irregularUuids.clear();
+    }
+
+    void addAll(Collection<NodeInfo> nodes) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        ensureCapacity(nodes.size());
+
+        List<NodeInfo> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparingLong(NodeInfo::getTxnId));
+        for (NodeInfo nodeInfo : sorted) {
+            append(nodeInfo);
+        }
+    }
+
+    void add(NodeInfo nodeInfo) {
+        ensureCapacity(1);
+        append(nodeInfo);
+    }
+
+    /**
+     * Sorts the last nodes of the queue by transaction ID, keeping the order of the nodes of the same transaction. Nodes
+     * that were already in order, as they usually are, are not moved.
+     *
+     * @param count the number of nodes at the tail of the queue to sort, e.g. the nodes added with
+     *              {@link #add(NodeInfo)} since the previous sort
+     */
+    void sortLast(int count) {
+        int from = tail - count;
+        boolean ordered = true;
+        for (int slot = from + 1; slot < tail && ordered; slot++) {
+            ordered = txnIds[slot - 1] <= txnIds[slot];
+        }
+        if (ordered) {
+            return;
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = from + i;
+        }
+        // A stable sort
+        Arrays.sort(order, Comparator.comparingLong(slot -> txnIds[slot]));
+        permute(txnIds, order, from);
+        permute(nodeIds, order, from);
+        permute(uuidsMostSigBits, order, from);
+        permute(uuidsLeastSigBits, order, from);
+        int[] sortedStoreIndexes = new int[count];
+        boolean[] sortedDeleted = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            sortedStoreIndexes[i] = storeIndexes[order[i]];
+            sortedDeleted[i] = deleted[order[i]];
+        }
+        System.arraycopy(sortedStoreIndexes, 0, storeIndexes, from, count);
+        System.arraycopy(sortedDeleted, 0, deleted, from, count);
+    }
+
+    long peekTxnId() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return txnIds[head];
+    }
+
+    NodeRef poll() {
+        NodeRef.Status status = pollStatus();
+        return status == null ? null : status.getNodeRef();
+    }
+
+    /**
+     * @return the status of the next node, without the change transaction ID, or {@code null} if the queue is empty
+     */
+    NodeRef.Status pollStatus() {
+        if (isEmpty()) {
+            return null;
+        }
+        int slot = head++;
+        NodeRef nodeRef = new NodeRef(stores.get(storeIndexes[slot]), uuid(slot));
+        NodeRef.Status ret = new NodeRef.Status(nodeIds[slot], nodeRef, null, txnIds[slot], deleted[slot]);
+        if (isEmpty()) {
+            head = tail = 0;
+        }
+        shrinkIfMostlyPolled();
+        return ret;
+    }
+
+    /**
+     * @return the estimated number of bytes used by the nodes in this queue
+     */
+    long estimatedMemoryUsage() {
+        return (long) size() * BYTES_PER_SLOT + estimatedIrregularUuidsMemory();
+    }
+
+    /**
+     * @return the estimated number of bytes retained by this queue, including the unused capacity of its arrays
+     */
+    long estimatedRetainedMemory() {
+        return (long) txnIds.length * BYTES_PER_SLOT + estimatedIrregularUuidsMemory();
+    }
+
+    private long estimatedIrregularUuidsMemory() {
+        // Irregular UUIDs are estimated at 100 bytes each: a map entry, a boxed node ID and a short string
+        return irregularUuids.size() * 100L;
+    }
+
+    private void append(NodeInfo nodeInfo) {
+        int slot = tail++;
+        NodeRef nodeRef = nodeInfo.getNodeRef();
+        txnIds[slot] = nodeInfo.getTxnId();
+        nodeIds[slot] = nodeInfo.getNodeId();
+        storeIndexes[slot] = storeIndex(nodeRef.getStoreRef());
+        deleted[slot] = nodeInfo.isDeleted();
+
+        String uuid = nodeRef.getId();
+        if (isCanonicalUuid(uuid)) {
+            UUID parsed = UUID.fromString(uuid);
+            uuidsMostSigBits[slot] = parsed.getMostSignificantBits();
+            uuidsLeastSigBits[slot] = parsed.getLeastSignificantBits();
+        } else {
+            irregularUuids.put(nodeInfo.getNodeId(), uuid);
+        }
+    }
+
+    private static void permute(long[] array, Integer[] order, int from) {
+        long[] sorted = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = array[order[i]];
+        }
+        System.arraycopy(sorted, 0, array, from, order.length);
+    }
+
+    private String uuid(int slot) {
+        String irregularUuid = irregularUuids.remove(nodeIds[slot]);
+        if (irregularUuid != null) {
+            return irregularUuid;
+        }
+        return new UUID(uuidsMostSigBits[slot], uuidsLeastSigBits[slot]).toString();
+    }
+
+    private int storeIndex(StoreRef storeRef) {
+        int ret = stores.indexOf(storeRef);
+        if (ret < 0) {
+            stores.add(storeRef);
+            ret = stores.size() - 1;
+        }
+        return ret;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (tail + additional <= txnIds.length) {
+            return;
+        }
+        // Move the remaining nodes to the front, and grow the arrays if that does not make enough room
+        int capacity = txnIds.length;
+        if (size() + additional > capacity) {
+            capacity = Math.max(Math.max(INITIAL_CAPACITY, size() + additional), capacity + (capacity >> 1));
+        }
+        resize(capacity);
+    }
+
+    private void shrinkIfMostlyPolled() {
+        int capacity = txnIds.length;
+        if (capacity > INITIAL_CAPACITY && (isEmpty() || head > capacity / 2)) {
+            // Leaves room for half of the remaining nodes, the same factor by which the arrays grow
+            resize(Math.max(INITIAL_CAPACITY, size() + (size() >> 1)));
+        }
+    }
+
+    /**
+     * Moves the remaining nodes to the front of arrays with the given capacity.
+     */
+    private void resize(int capacity) {
+        int size = size();
+        txnIds = compact(txnIds, capacity);
+        nodeIds = compact(nodeIds, capacity);
+        uuidsMostSigBits = compact(uuidsMostSigBits, capacity);
+        uuidsLeastSigBits = compact(uuidsLeastSigBits, capacity);
+        storeIndexes = compact(storeIndexes, capacity);
+        deleted = compact(deleted, capacity);
+        head = 0;
+        tail = size;
+    }
+
+    private long[] compact(long[] array, int capacity) {
+        long[] ret = capacity == array.length ? array : new long[capacity];
+        System.arraycopy(array, head, ret, 0, size());
+        return ret;
+    }
+
+    private int[] compact(int[] array, int capacity) {
+        int[] ret = capacity == array.length ? array : new int[capacity];
+        System.arraycopy(array, head, ret, 0, size());
+        return ret;
+    }
+
+    private boolean[] compact(boolean[] array, int capacity) {
+        boolean[] ret = capacity == array.length ? array : new boolean[capacity];
+        System.arraycopy(array, head, ret, 0, size());
+        return ret;
+    }
+
+    /**
+     * Whether the UUID is in the lowercase, 36 characters format that {@link UUID#toString()} produces, so it can be
+     * restored from its two longs without any loss.
+     */
+    static boolean isCanonicalUuid(String uuid) {
+        if (uuid == null || uuid.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = uuid.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,22 +1,25 @@
 package eu.xenit.alfresco.healthprocessor.indexing.txnid;
 
+import eu.xenit.alfresco.healthprocessor.indexing.BatchProgressTracker;
 import eu.xenit.alfresco.healthprocessor.indexing.NullCycleProgress;
 import eu.xenit.alfresco.healthprocessor.reporter.api.CycleProgress;
 import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
 import eu.xenit.alfresco.healthprocessor.indexing.SimpleCycleProgress;
 import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent;
 import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent.NodeInfo;
+import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent.NodeInfoSink;
 import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.LongStream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,16 +30,33 @@ public class TxnIdBasedIndexingStrategy implements IndexingStrategy {
     private static final Logger logger = LoggerFactory.getLogger(TxnIdBasedIndexingStrategy.class);
 
     static final String ATTR_KEY_LAST_PROCESSED_TXN_ID = "last-processed-txn-id";
+    static final int DEFAULT_NODE_QUEUE_CAPACITY = 100_000;
 
-    private final Queue<NodeInfo> nodeQueue = new PriorityQueue<>(TxnIdBasedIndexingStrategy::compareNodeInfoByTxnId);
+    private final CompactNodeQueue nodeQueue = new CompactNodeQueue();
+    // Number of queued nodes from which the tracking component is asked to stop streaming nodes, at least the number of
+    // requested nodes
+    @Setter(AccessLevel.PACKAGE)
+    private int nodeQueueCapacity = DEFAULT_NODE_QUEUE_CAPACITY;
     private long maxTxnIdInclusive;
     private boolean done = false;
     private long nextStartTxnIdToFetch;
+    private long txnWindowSize;
 
     private final TxnIdIndexingConfiguration configuration;
     private final TrackingComponent trackingComponent;
     private final AttributeStore attributeStore;
+    // Secondary key of the persisted progress, so multiple instances can keep track of their progress independently
+    @Nullable
+    private final Serializable stateKey;
     private CycleProgress cycleProgress = NullCycleProgress.getInstance();
+    // Resume points are the first transaction ID of a batch
+    private final BatchProgressTracker<Long> batchesInProgress = new BatchProgressTracker<>(
+            txnId -> this.attributeStore.setAttribute(txnId, ATTR_KEY_LAST_PROCESSED_TXN_ID, this.stateKey));
+
+    public TxnIdBasedIndexingStrategy(TxnIdIndexingConfiguration configuration, TrackingComponent trackingComponent,
+            AttributeStore attributeStore) {
+        this(configuration, trackingComponent, attributeStore, null);
+    }
 
     @Nonnull
     @Override
@@ -45,8 +65,14 @@ public class TxnIdBasedIndexingStrategy implements IndexingStrategy {
 
         ret.put("max-txn-id-inclusive", Long.toString(maxTxnIdInclusive));
         ret.put("next-txn-id", Long.toString(nextStartTxnIdToFetch));
+        ret.put("txn-window-size", Long.toString(txnWindowSize));
         ret.put("nodes-in-queue", Integer.toString(nodeQueue.size()));
+        ret.put("node-queue-bytes", Long.toString(nodeQueue.estimatedMemoryUsage()));
+        ret.put("node-queue-retained-bytes", Long.toString(nodeQueue.estimatedRetainedMemory()));
+        ret.put("node-queue-bytes-per-node",
+                nodeQueue.isEmpty() ? "0" : Long.toString(nodeQueue.estimatedMemoryUsage() / nodeQueue.size()));
         ret.put("fetching-nodes-done", Boolean.toString(done));
+        ret.put("batches-in-progress", Integer.toString(batchesInProgress.size()));
 
         return ret;
     }
@@ -61,41 +87,73 @@ public class TxnIdBasedIndexingStrategy implements IndexingStrategy {
     public void onStart() {
         done = false;
         nodeQueue.clear();
+        batchesInProgress.clear();
         initializeStartTxnId();
         initializeMaxTxnId();
+        txnWindowSize = configuration.getTxnBatchSize();
         cycleProgress = new SimpleCycleProgress(nextStartTxnIdToFetch, maxTxnIdInclusive, () -> nextStartTxnIdToFetch - 1);
     }
 
     @Override
     public void onStop() {
-        attributeStore.removeAttributes(ATTR_KEY_LAST_PROCESSED_TXN_ID);
+        attributeStore.removeAttributes(ATTR_KEY_LAST_PROCESSED_TXN_ID, stateKey);
         cycleProgress = NullCycleProgress.getInstance();
+        batchesInProgress.reset();
+    }
+
+    @Override
+    public void enableBatchAcknowledgement() {
+        batchesInProgress.enableAcknowledgement();
+    }
+
+    @Override
+    public void onBatchProcessed(@Nonnull NodeBatch batch) {
+        batchesInProgress.onBatchProcessed(batch);
     }
 
     @Override
     @Nonnull
     public Set<NodeRef> getNextNodeIds(int amount) {
-        Set<NodeRef> ret = new HashSet<>();
-        while (!done && nodeQueue.size() < amount) {
-            fetchMoreNodes();
-        }
+        return getNextNodeBatch(amount).getNodeRefs();
+    }
 
-        for (int i = 0; i < amount; i++) {
-            NodeInfo nodeInfo = nodeQueue.poll();
-            if (nodeInfo == null) {
-                break;
-            }
-            if (i == 0) {
-                attributeStore.setAttribute(nodeInfo.getTxnId(), ATTR_KEY_LAST_PROCESSED_TXN_ID);
-            }
-            ret.add(nodeInfo.getNodeRef());
+    @Override
+    @Nonnull
+    public NodeBatch getNextNodeBatch(int amount) {
+        Set<NodeRef> nodeRefs = new HashSet<>();
+        Map<NodeRef, NodeRef.Status> nodeStatuses = new HashMap<>();
+        fillQueue(amount);
+
+        long firstTxnId = nodeQueue.isEmpty() ? -1 : nodeQueue.peekTxnId();
+        for (int i = 0; i < amount && !nodeQueue.isEmpty(); i++) {
+            NodeRef.Status status = nodeQueue.pollStatus();
+            nodeRefs.add(status.getNodeRef());
+            nodeStatuses.put(status.getNodeRef(), status);
         }
 
+        NodeBatch ret = new NodeBatch(nodeRefs, nodeStatuses);
+        if (!ret.isEmpty()) {
+            batchesInProgress.onBatchHandedOut(ret, firstTxnId);
+        }
         return ret;
     }
 
+    @Override
+    public void prefetch(int amount) {
+        fillQueue(amount);
+    }
+
+    private void fillQueue(int amount) {
+        while (!done && nodeQueue.size() < amount) {
+            fetchMoreNodes(amount);
+        }
+    }
+
     private void initializeStartTxnId() {
-        Long lastProcessedTxnId = attributeStore.getAttributeOrDefault(ATTR_KEY_LAST_PROCESSED_TXN_ID, 1L);
+        Long lastProcessedTxnId = attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_TXN_ID, stateKey);
+        if (lastProcessedTxnId == null) {
+            lastProcessedTxnId = 1L;
+        }
         nextStartTxnIdToFetch = Math.max(configuration.getStartTxnId(), lastProcessedTxnId);
     }
 
@@ -103,15 +161,20 @@ public class TxnIdBasedIndexingStrategy implements IndexingStrategy {
         maxTxnIdInclusive = Math.min(trackingComponent.getMaxTxnId(), configuration.getStopTxnId());
     }
 
-    private void fetchMoreNodes() {
+    private void fetchMoreNodes(int targetNodes) {
         long startTxn = nextStartTxnIdToFetch;
         long endTxnExclusive = getNextStopTxnIdExclusive();
 
         logger.debug("Fetching more nodes. startTxn={}, endTxnExclusive={}", startTxn, endTxnExclusive);
 
-        nodeQueue.addAll(
-                trackingComponent.getNodesForTxnIds(
-                        LongStream.range(startTxn, endTxnExclusive).boxed().collect(Collectors.toList())));
+        NodeQueueSink sink = new NodeQueueSink(Math.max(targetNodes, nodeQueueCapacity));
+        trackingComponent.getNodesForTxnRange(startTxn, endTxnExclusive, sink);
+        nodeQueue.sortLast(sink.acceptedNodes);
+        if (sink.minRejectedTxnId < endTxnExclusive) {
+            logger.debug("Node queue is full, fetching the next nodes from transaction {}", sink.minRejectedTxnId);
+            endTxnExclusive = sink.minRejectedTxnId;
+        }
+        adaptTxnWindowSize(targetNodes, endTxnExclusive - startTxn, sink.acceptedNodes);
 
         nextStartTxnIdToFetch = endTxnExclusive;
         if (nextStartTxnIdToFetch > maxTxnIdInclusive) {
@@ -121,12 +184,54 @@ public class TxnIdBasedIndexingStrategy implements IndexingStrategy {
         }
     }
 
+    /**
+     * Sizes the next transaction window so that, at the node density of the last window, it holds about the targeted
+     * number of nodes. Sparse transaction ranges then need fewer fetches, and large transactions no longer flood the
+     * queue.
+     */
+    private void adaptTxnWindowSize(int targetNodes, long fetchedTxns, int fetchedNodes) {
+        if (!configuration.isAdaptiveTxnBatchSize() || fetchedTxns <= 0) {
+            return;
+        }
+        long windowSize = fetchedNodes == 0 ? txnWindowSize * 2 : targetNodes * fetchedTxns / fetchedNodes;
+        txnWindowSize = Math.max(configuration.getMinTxnBatchSize(),
+                Math.min(windowSize, configuration.getMaxTxnBatchSize()));
+    }
+
     private long getNextStopTxnIdExclusive() {
-        return Math.min(nextStartTxnIdToFetch + configuration.getTxnBatchSize(), maxTxnIdInclusive + 1);
+        return Math.min(nextStartTxnIdToFetch + txnWindowSize, maxTxnIdInclusive + 1);
     }
 
-    private static int compareNodeInfoByTxnId(NodeInfo first, NodeInfo other) {
-        return Long.compare(first.getTxnId(), other.getTxnId());
+    /**
+     * Pushes the streamed nodes straight into the node queue, until the queue is full. From then on, only nodes of
+     * transactions up to the highest queued one are accepted, so the nodes of a transaction are never split over two
+     * fetches. Nodes of later transactions are dropped, and the next fetch continues from the lowest of their
+     * transaction IDs.
+     * <p>
+     * The tracking component does not guarantee that nodes arrive in order of transaction ID, so the query is never
+     * stopped early: a node of a lower transaction can still arrive after a dropped one. The accepted nodes are sorted
+     * once the query is done.
+     */
+    @RequiredArgsConstructor
+    private final class NodeQueueSink implements NodeInfoSink {
+
+        private final int capacity;
+        private long maxAcceptedTxnId = Long.MIN_VALUE;
+        private long minRejectedTxnId = Long.MAX_VALUE;
+        private int acceptedNodes;
+
+        @Override
+        public boolean accept(NodeInfo nodeInfo) {
+            long txnId = nodeInfo.getTxnId();
+            if (nodeQueue.size() >= capacity && txnId > maxAcceptedTxnId) {
+                minRejectedTxnId = Math.min(minRejectedTxnId, txnId);
+                return true;
+            }
+            nodeQueue.add(nodeInfo);
+            maxAcceptedTxnId = Math.max(maxAcceptedTxnId, txnId);
+            acceptedNodes++;
+            return true;
+        }
     }
 
 }
@@ -12,8 +12,19 @@ public class TxnIdIndexingConfiguration implements IndexingConfiguration {
     long startTxnId;
     long stopTxnId;
     int txnBatchSize;
+    int minTxnBatchSize;
+    int maxTxnBatchSize;
 
     public TxnIdIndexingConfiguration(long startTxnId, long stopTxnId, int txnBatchSize) {
+        this(startTxnId, stopTxnId, txnBatchSize, -1, -1);
+    }
+
+    /**
+     * @param minTxnBatchSize lower bound of the adaptive transaction window, or -1 to use {@code txnBatchSize}
+     * @param maxTxnBatchSize upper bound of the adaptive transaction window, or -1 to use {@code txnBatchSize}
+     */
+    public TxnIdIndexingConfiguration(long startTxnId, long stopTxnId, int txnBatchSize, int minTxnBatchSize,
+            int maxTxnBatchSize) {
         if (startTxnId > stopTxnId) {
             final String msg = "Invalid configuration, startTxnId (" + startTxnId + ") > stopId (" + stopTxnId + ")";
             throw new IllegalArgumentException(msg);
@@ -21,6 +32,20 @@ public class TxnIdIndexingConfiguration implements IndexingConfiguration {
         this.startTxnId = startTxnId;
         this.stopTxnId = stopTxnId;
         this.txnBatchSize = txnBatchSize;
+        this.minTxnBatchSize = minTxnBatchSize < 0 ? txnBatchSize : minTxnBatchSize;
+        this.maxTxnBatchSize = maxTxnBatchSize < 0 ? txnBatchSize : maxTxnBatchSize;
+        if (this.minTxnBatchSize < 1 || this.minTxnBatchSize > this.maxTxnBatchSize) {
+            throw new IllegalArgumentException("Invalid configuration, minTxnBatchSize (" + this.minTxnBatchSize
+                    + ") must be between 1 and maxTxnBatchSize (" + this.maxTxnBatchSize + ")");
+        }
+    }
+
+    /**
+     * @return whether the transaction window adapts to the node density of the transactions, which is the case when
+     * its bounds differ
+     */
+    public boolean isAdaptiveTxnBatchSize() {
+        return minTxnBatchSize < maxTxnBatchSize;
     }
 
     @Nonnull
@@ -36,6 +61,8 @@ public class TxnIdIndexingConfiguration implements IndexingConfiguration {
         ret.put("start-txn-id", Long.toString(getStartTxnId()));
         ret.put("stop-txn-id", Long.toString(getStopTxnId()));
         ret.put("txn-batch-size", Integer.toString(getTxnBatchSize()));
+        ret.put("min-txn-batch-size", Integer.toString(getMinTxnBatchSize()));
+        ret.put("max-txn-batch-size", Integer.toString(getMaxTxnBatchSize()));
         return ret;
     }
 }
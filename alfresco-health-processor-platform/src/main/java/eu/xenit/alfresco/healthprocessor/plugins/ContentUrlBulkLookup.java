@@ -0,0 +1,101 @@
+package eu.xenit.alfresco.healthprocessor.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.util.Pair;
+import org.alfresco.util.ParameterCheck;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.SqlSessionTemplate;
+
+/**
+ * Looks up the content URLs of a batch with one query per {@link #MAX_CONTENT_URLS_PER_QUERY} content URLs, where the
+ * {@link org.alfresco.repo.domain.contentdata.ContentDataDAO} looks them up one at a time.
+ * <p>
+ * The query is a variant of the {@code select_ContentUrlByKey} statement of Alfresco with an {@code IN} list, and
+ * matches content URLs by the same key: the short form of the URL and its CRC. Its mapper is added to the MyBatis
+ * configuration of the repository when the first lookup is done.
+ */
+@Slf4j
+public class ContentUrlBulkLookup {
+
+    static final String MAPPER_RESOURCE = "eu/xenit/alfresco/healthprocessor/plugins/content-url-SqlMap.xml";
+    static final String SELECT_CONTENT_URLS_BY_KEYS =
+            "eu.xenit.alfresco.healthprocessor.content.select_ContentUrlsByKeys";
+    // Well below the maximum number of expressions in an IN list of the databases that Alfresco supports
+    static final int MAX_CONTENT_URLS_PER_QUERY = 500;
+
+    private final SqlSessionTemplate sqlSessionTemplate;
+
+    public ContentUrlBulkLookup(SqlSessionTemplate sqlSessionTemplate) {
+        ParameterCheck.mandatory("sqlSessionTemplate", sqlSessionTemplate);
+        this.sqlSessionTemplate = sqlSessionTemplate;
+    }
+
+    /**
+     * @return the content URL entities by the content URL they were looked up with, content URLs that are not
+     * referenced in the database are absent
+     */
+    @Nonnull
+    public Map<String, ContentUrlEntity> getContentUrls(@Nonnull Collection<String> contentUrls) {
+        registerMapper(sqlSessionTemplate.getConfiguration());
+
+        Map<String, ContentUrlEntity> ret = new HashMap<>();
+        List<String> contentUrlList = new ArrayList<>(contentUrls);
+        for (int from = 0; from < contentUrlList.size(); from += MAX_CONTENT_URLS_PER_QUERY) {
+            List<String> chunk = contentUrlList.subList(from,
+                    Math.min(from + MAX_CONTENT_URLS_PER_QUERY, contentUrlList.size()));
+            Map<Pair<String, Long>, String> contentUrlsByKey = new HashMap<>();
+            for (String contentUrl : chunk) {
+                contentUrlsByKey.put(ContentUrlEntity.getContentUrlCrcPair(contentUrl), contentUrl);
+            }
+
+            Set<String> contentUrlShorts = new HashSet<>();
+            Set<Long> contentUrlCrcs = new HashSet<>();
+            contentUrlsByKey.keySet().forEach(key -> {
+                contentUrlShorts.add(key.getFirst());
+                contentUrlCrcs.add(key.getSecond());
+            });
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("contentUrlShorts", contentUrlShorts);
+            parameters.put("contentUrlCrcs", contentUrlCrcs);
+
+            // Both IN lists together can match a few more rows than were asked for, those are left out by the key
+            List<ContentUrlEntity> entities = sqlSessionTemplate.selectList(SELECT_CONTENT_URLS_BY_KEYS, parameters);
+            for (ContentUrlEntity entity : entities) {
+                String contentUrl = contentUrlsByKey.get(
+                        new Pair<>(entity.getContentUrlShort(), entity.getContentUrlCrc()));
+                if (contentUrl != null) {
+                    ret.put(contentUrl, entity);
+                }
+            }
+        }
+        log.trace("Found #{} of #{} content URLs", ret.size(), contentUrls.size());
+        return ret;
+    }
+
+    private static synchronized void registerMapper(Configuration configuration) {
+        if (configuration.isResourceLoaded(MAPPER_RESOURCE)) {
+            return;
+        }
+        try (InputStream mapper = ContentUrlBulkLookup.class.getClassLoader().getResourceAsStream(MAPPER_RESOURCE)) {
+            if (mapper == null) {
+                throw new IllegalStateException("MyBatis mapper '" + MAPPER_RESOURCE + "' not found");
+            }
+            new XMLMapperBuilder(mapper, configuration, MAPPER_RESOURCE, configuration.getSqlFragments()).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read MyBatis mapper '" + MAPPER_RESOURCE + "'", e);
+        }
+    }
+}
@@ -1,23 +1,53 @@
 package eu.xenit.alfresco.healthprocessor.plugins;
 
+import com.google.common.util.concurrent.RateLimiter;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeStatusCache;
 import eu.xenit.alfresco.healthprocessor.plugins.api.SingleNodeHealthProcessorPlugin;
+import eu.xenit.alfresco.healthprocessor.processing.CycleScoped;
 import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthReport;
 import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthStatus;
 import eu.xenit.alfresco.healthprocessor.util.QNameUtil;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.service.ServiceRegistry;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.ContentIOException;
 import org.alfresco.service.cmr.repository.ContentReader;
 import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -26,33 +56,104 @@ import org.alfresco.service.namespace.QName;
 import org.alfresco.util.ParameterCheck;
 import org.slf4j.Logger;
 
+/**
+ * Validates that the content of the d:content properties of a node exists in the content store.
+ * <p>
+ * When a {@link NodeDAO} is available, the nodes of a batch are loaded into the cache with their properties in bulk,
+ * and only the properties to validate are read from it. The content of a batch can be checked concurrently, see
+ * {@link #setContentCheckParallelism(int)}.
+ * <p>
+ * Versions and copies of a document often share the same content. The result of a content check can be remembered for
+ * the rest of the cycle, so content that is referenced by many nodes is only checked once, see
+ * {@link #setContentUrlCacheSize(int)}.
+ * <p>
+ * By default, content is healthy when it exists. Truncated content can be detected by verifying its size, or by reading
+ * all of it, see {@link #setContentVerification(String)}.
+ */
 @Slf4j
 @EqualsAndHashCode(callSuper = true)
-public class ContentValidationHealthProcessorPlugin extends SingleNodeHealthProcessorPlugin {
+public class ContentValidationHealthProcessorPlugin extends SingleNodeHealthProcessorPlugin implements CycleScoped {
+
+    private static final String MSG_NODE_DOES_NOT_EXIST = "Node does not exist or is deleted";
 
     private final NodeService nodeService;
     private final ContentService contentService;
+    // Loads the nodes of a batch in bulk, or null to process every node on its own
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    private final NodeDAO nodeDAO;
+    @EqualsAndHashCode.Exclude
+    private final NodeStatusCache nodeStatusCache;
 
     @Getter(value = AccessLevel.PACKAGE)
     private final Collection<QName> propertyQNamesToValidate;
 
+    private static final String CONTENT_CHECK_THREAD_NAME = "HealthProcessor-ContentCheck";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Reused for all content that a thread reads. A direct buffer, so a file channel reads into it without copying
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+    @Getter
+    private int contentCheckParallelism = 1;
+    @Getter
+    private long contentCheckTimeoutMs = 0;
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    private ExecutorService contentCheckExecutor;
+
+    @Getter
+    private int contentUrlCacheSize = 0;
+    // Results of the content checks of the current cycle, or null when they are not remembered
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    private ContentStateCache contentStateCache;
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong contentUrlCacheHits = new AtomicLong();
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong contentUrlCacheMisses = new AtomicLong();
+
+    private ContentVerification contentVerification = ContentVerification.EXISTS;
+    @Getter
+    private long contentReadBytesPerSecond = 0;
+    @SuppressWarnings("UnstableApiUsage")
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    private RateLimiter contentReadRateLimiter;
+
     public ContentValidationHealthProcessorPlugin(ServiceRegistry serviceRegistry,
             Collection<String> propertyQNamesToValidate) {
+        this(serviceRegistry, null, new NodeStatusCache(), propertyQNamesToValidate);
+    }
+
+    public ContentValidationHealthProcessorPlugin(ServiceRegistry serviceRegistry, @Nullable NodeDAO nodeDAO,
+            NodeStatusCache nodeStatusCache, Collection<String> propertyQNamesToValidate) {
         this(
                 serviceRegistry.getNodeService(),
                 serviceRegistry.getContentService(),
                 serviceRegistry.getDictionaryService(),
+                nodeDAO,
+                nodeStatusCache,
                 QNameUtil.toQNames(propertyQNamesToValidate, serviceRegistry.getNamespaceService())
         );
     }
 
     public ContentValidationHealthProcessorPlugin(NodeService nodeService, ContentService contentService,
             DictionaryService dictionaryService, Collection<QName> propertyQNamesToValidate) {
+        this(nodeService, contentService, dictionaryService, null, new NodeStatusCache(), propertyQNamesToValidate);
+    }
+
+    public ContentValidationHealthProcessorPlugin(NodeService nodeService, ContentService contentService,
+            DictionaryService dictionaryService, @Nullable NodeDAO nodeDAO, NodeStatusCache nodeStatusCache,
+            Collection<QName> propertyQNamesToValidate) {
         ParameterCheck.mandatory("nodeService", nodeService);
         ParameterCheck.mandatory("contentService", contentService);
+        ParameterCheck.mandatory("nodeStatusCache", nodeStatusCache);
 
         this.nodeService = nodeService;
         this.contentService = contentService;
+        this.nodeDAO = nodeDAO;
+        this.nodeStatusCache = nodeStatusCache;
 
         if (propertyQNamesToValidate == null || propertyQNamesToValidate.isEmpty()) {
             this.propertyQNamesToValidate = dictionaryService.getAllProperties(DataTypeDefinition.CONTENT);
@@ -68,52 +169,315 @@ public class ContentValidationHealthProcessorPlugin extends SingleNodeHealthProc
         return log;
     }
 
+    @Nonnull
+    @Override
+    public Set<NodeHealthReport> doProcess(Set<NodeRef> nodeRefs) {
+        Set<NodeHealthReport> ret = new HashSet<>(nodeRefs.size());
+        // Content by property of every node that exists
+        Map<NodeRef, Map<QName, ContentData>> contentPerNode = new HashMap<>(nodeRefs.size());
+        if (nodeDAO == null) {
+            collectContentOneByOne(nodeRefs, contentPerNode, ret);
+        } else {
+            collectContentInBulk(nodeRefs, contentPerNode, ret);
+        }
+
+        // The content of the whole batch is checked at once, so the checks can run concurrently
+        Map<String, ContentData> contentToCheck = new HashMap<>();
+        contentPerNode.values().forEach(nodeContent -> nodeContent.values().forEach(contentData ->
+                contentToCheck.putIfAbsent(contentData.getContentUrl(), contentData)));
+        Map<String, ContentState> contentStates = checkContent(contentToCheck);
+
+        contentPerNode.forEach((nodeRef, nodeContent) -> ret.add(toReport(nodeRef, nodeContent, contentStates)));
+        return ret;
+    }
+
     @Override
     protected NodeHealthReport process(NodeRef nodeRef) {
-        if (!nodeService.exists(nodeRef) || nodeService.getNodeStatus(nodeRef).isDeleted()) {
-            return new NodeHealthReport(NodeHealthStatus.NONE, nodeRef, "Node does not exist or is deleted");
+        return doProcess(Collections.singleton(nodeRef)).iterator().next();
+    }
+
+    private void collectContentOneByOne(Set<NodeRef> nodeRefs, Map<NodeRef, Map<QName, ContentData>> contentPerNode,
+            Set<NodeHealthReport> reports) {
+        for (NodeRef nodeRef : nodeRefs) {
+            getLogger().trace("Processing NodeRef: {}", nodeRef);
+            if (!nodeService.exists(nodeRef) || nodeService.getNodeStatus(nodeRef).isDeleted()) {
+                reports.add(new NodeHealthReport(NodeHealthStatus.NONE, nodeRef, MSG_NODE_DOES_NOT_EXIST));
+            } else {
+                Map<QName, Serializable> properties = nodeService.getProperties(nodeRef);
+                contentPerNode.put(nodeRef, collectContent(nodeRef, properties::get));
+            }
+        }
+    }
+
+    private void collectContentInBulk(Set<NodeRef> nodeRefs, Map<NodeRef, Map<QName, ContentData>> contentPerNode,
+            Set<NodeHealthReport> reports) {
+        List<NodeRef> nodeRefsToLoad = new ArrayList<>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs) {
+            // Nodes that the indexing strategy already found to be deleted are not loaded
+            NodeRef.Status cachedStatus = nodeStatusCache.get(nodeRef);
+            if (cachedStatus != null && cachedStatus.isDeleted()) {
+                reports.add(new NodeHealthReport(NodeHealthStatus.NONE, nodeRef, MSG_NODE_DOES_NOT_EXIST));
+            } else {
+                nodeRefsToLoad.add(nodeRef);
+            }
+        }
+        if (nodeRefsToLoad.isEmpty()) {
+            return;
         }
 
-        Map<QName, Serializable> properties = nodeService.getProperties(nodeRef);
+        // Loads the nodes with their properties into the cache with a few queries for the whole batch, the status and
+        // properties of every node below are then read from the cache
+        nodeDAO.cacheNodes(nodeRefsToLoad);
+        for (NodeRef nodeRef : nodeRefsToLoad) {
+            getLogger().trace("Processing NodeRef: {}", nodeRef);
+            NodeRef.Status status = nodeService.getNodeStatus(nodeRef);
+            if (status == null || status.isDeleted()) {
+                reports.add(new NodeHealthReport(NodeHealthStatus.NONE, nodeRef, MSG_NODE_DOES_NOT_EXIST));
+            } else {
+                // Only the properties to validate are converted, instead of all properties of the node
+                contentPerNode.put(nodeRef,
+                        collectContent(nodeRef, propertyQName -> nodeService.getProperty(nodeRef, propertyQName)));
+            }
+        }
+    }
 
-        boolean nodeHasContent = false;
-        Map<QName, String> failedPropertiesWithContentUrl = new HashMap<>();
+    private Map<QName, ContentData> collectContent(NodeRef nodeRef, Function<QName, Serializable> properties) {
+        Map<QName, ContentData> ret = new HashMap<>();
         for (QName dContentPropertyKey : propertyQNamesToValidate) {
-            String contentUrl = safeExtractContentUrl(properties, nodeRef, dContentPropertyKey);
-            if (contentUrl == null) {
-                continue;
+            ContentData contentData = safeExtractContentData(properties.apply(dContentPropertyKey), nodeRef,
+                    dContentPropertyKey);
+            if (contentData != null) {
+                getLogger().debug("Node '{}', property '{}', will check ContentUrl: '{}'", nodeRef,
+                        dContentPropertyKey, contentData.getContentUrl());
+                ret.put(dContentPropertyKey, contentData);
+            }
+        }
+        return ret;
+    }
+
+    private Map<String, ContentState> checkContent(Map<String, ContentData> contentToCheck) {
+        ContentStateCache cache = contentStateCache;
+        if (cache == null) {
+            return checkUncachedContent(contentToCheck);
+        }
+
+        Map<String, ContentState> ret = new HashMap<>(contentToCheck.size());
+        Map<String, ContentData> uncachedContent = new HashMap<>();
+        synchronized (cache) {
+            contentToCheck.forEach((contentUrl, contentData) -> {
+                ContentState cachedState = cache.get(contentUrl);
+                if (cachedState == null) {
+                    uncachedContent.put(contentUrl, contentData);
+                } else {
+                    ret.put(contentUrl, cachedState);
+                }
+            });
+        }
+        contentUrlCacheHits.addAndGet(ret.size());
+        contentUrlCacheMisses.addAndGet(uncachedContent.size());
+
+        Map<String, ContentState> checkedStates = checkUncachedContent(uncachedContent);
+        synchronized (cache) {
+            // Content that could not be checked in time is checked again when another node references it
+            checkedStates.forEach((contentUrl, state) -> {
+                if (state != ContentState.UNKNOWN) {
+                    cache.put(contentUrl, state);
+                }
+            });
+        }
+        ret.putAll(checkedStates);
+        return ret;
+    }
+
+    private Map<String, ContentState> checkUncachedContent(Map<String, ContentData> contentToCheck) {
+        Map<String, ContentState> ret = new HashMap<>(contentToCheck.size());
+        ExecutorService executor = contentCheckExecutor;
+        if (executor == null || (contentToCheck.size() <= 1 && contentCheckTimeoutMs <= 0)) {
+            contentToCheck.forEach((contentUrl, contentData) -> ret.put(contentUrl, checkContent(contentData)));
+            return ret;
+        }
+
+        // The number of threads of the executor limits the number of checks in flight, for all batches together
+        Map<String, ContentCheck> checks = new HashMap<>(contentToCheck.size());
+        contentToCheck.forEach((contentUrl, contentData) -> {
+            ContentCheck check = new ContentCheck(withRunAsUser(() -> checkContent(contentData)));
+            check.future = executor.submit(check);
+            checks.put(contentUrl, check);
+        });
+        for (Map.Entry<String, ContentCheck> entry : checks.entrySet()) {
+            ContentCheck check = entry.getValue();
+            try {
+                ret.put(entry.getKey(), contentCheckTimeoutMs > 0 ?
+                        check.get(TimeUnit.MILLISECONDS.toNanos(contentCheckTimeoutMs)) : check.future.get());
+            } catch (TimeoutException exception) {
+                getLogger().warn("Content check of ContentUrl '{}' did not complete within {} ms", entry.getKey(),
+                        contentCheckTimeoutMs);
+                check.future.cancel(true);
+                ret.put(entry.getKey(), ContentState.UNKNOWN);
+            } catch (ExecutionException exception) {
+                // Anything that goes wrong fails the batch, as when the content is checked one by one
+                checks.values().forEach(other -> other.future.cancel(true));
+                if (exception.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) exception.getCause();
+                }
+                throw new IllegalStateException(exception.getCause());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                checks.values().forEach(other -> other.future.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for content checks", exception);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * A content check on the executor that remembers when it started running. The timeout of a check is counted from
+     * then, not from when it was submitted: the checks of all batches share the executor, and a check that is queued
+     * behind the checks of other batches has not had its chance yet.
+     */
+    private static final class ContentCheck implements Callable<ContentState> {
+
+        private final Callable<ContentState> work;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startNanos;
+        private Future<ContentState> future;
+
+        private ContentCheck(Callable<ContentState> work) {
+            this.work = work;
+        }
+
+        @Override
+        public ContentState call() throws Exception {
+            startNanos = System.nanoTime();
+            started.countDown();
+            return work.call();
+        }
+
+        private ContentState get(long timeoutNanos)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            // Every check runs eventually, the checks that run before it are bounded by the timeout as well
+            started.await();
+            return future.get(startNanos + timeoutNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ContentState checkContent(ContentData contentData) {
+        String contentUrl = contentData.getContentUrl();
+        getLogger().trace("Will try to retrieve ContentReader (ContentUrl: '{}')", contentUrl);
+        ContentReader reader = contentService.getRawReader(contentUrl);
+        if (reader == null || !reader.exists()) {
+            return ContentState.MISSING;
+        }
+        if (contentVerification == ContentVerification.EXISTS) {
+            return ContentState.EXISTS;
+        }
+
+        // The size of the content in the store is metadata, e.g. the length of the file, so it is cheap to compare
+        long size = reader.getSize();
+        if (size != contentData.getSize()) {
+            getLogger().debug("ContentUrl '{}' has a size of {} bytes, expected {} bytes", contentUrl, size,
+                    contentData.getSize());
+            return ContentState.SIZE_MISMATCH;
+        }
+        if (contentVerification == ContentVerification.SIZE) {
+            return ContentState.EXISTS;
+        }
+        return readContent(reader, contentData);
+    }
+
+    /**
+     * Reads all content, to verify that every byte that is expected can be read from the store
+     */
+    private ContentState readContent(ContentReader reader, ContentData contentData) {
+        String contentUrl = contentData.getContentUrl();
+        ByteBuffer buffer = READ_BUFFER.get();
+        RateLimiter rateLimiter = contentReadRateLimiter;
+        long bytesRead = 0;
+        // For content in a file, the readable channel is a FileChannel that reads straight into the direct buffer
+        try (ReadableByteChannel channel = reader.getReadableChannel()) {
+            buffer.clear();
+            int read;
+            while ((read = channel.read(buffer)) >= 0) {
+                bytesRead += read;
+                if (rateLimiter != null && read > 0) {
+                    // noinspection UnstableApiUsage
+                    rateLimiter.acquire(read);
+                }
+                buffer.clear();
             }
+        } catch (ClosedByInterruptException exception) {
+            // The check was cancelled
+            Thread.currentThread().interrupt();
+            return ContentState.UNKNOWN;
+        } catch (IOException | ContentIOException exception) {
+            getLogger().debug("ContentUrl '{}' could not be read", contentUrl, exception);
+            return ContentState.UNREADABLE;
+        }
+
+        if (bytesRead != contentData.getSize()) {
+            getLogger().debug("Read {} bytes of ContentUrl '{}', expected {} bytes", bytesRead, contentUrl,
+                    contentData.getSize());
+            return ContentState.SIZE_MISMATCH;
+        }
+        return ContentState.EXISTS;
+    }
 
-            getLogger().debug("Node '{}', property '{}', will try to retrieve ContentReader (ContentUrl: '{}')",
-                    nodeRef, dContentPropertyKey, contentUrl);
-            ContentReader reader = contentService.getRawReader(contentUrl);
-            nodeHasContent = true;
-            if (reader == null || !reader.exists()) {
-                failedPropertiesWithContentUrl.put(dContentPropertyKey, contentUrl);
+    private static NodeHealthReport toReport(NodeRef nodeRef, Map<QName, ContentData> content,
+            Map<String, ContentState> contentStates) {
+        Set<String> messages = new HashSet<>();
+        boolean failed = false;
+        boolean unchecked = false;
+        for (Map.Entry<QName, ContentData> propertyContent : content.entrySet()) {
+            String message = toMessage(propertyContent.getKey(), propertyContent.getValue().getContentUrl());
+            switch (contentStates.get(propertyContent.getValue().getContentUrl())) {
+                case MISSING:
+                    failed = true;
+                    messages.add(message);
+                    break;
+                case SIZE_MISMATCH:
+                    failed = true;
+                    messages.add(message + ", size does not match");
+                    break;
+                case UNREADABLE:
+                    failed = true;
+                    messages.add(message + ", content could not be read");
+                    break;
+                case UNKNOWN:
+                    unchecked = true;
+                    messages.add(message + ", check timed out");
+                    break;
+                default:
+                    break;
             }
         }
 
         NodeHealthStatus status;
-        if (nodeHasContent) {
-            status = failedPropertiesWithContentUrl.isEmpty() ? NodeHealthStatus.HEALTHY : NodeHealthStatus.UNHEALTHY;
-        } else {
+        if (failed) {
+            status = NodeHealthStatus.UNHEALTHY;
+        } else if (content.isEmpty() || unchecked) {
+            // No content, or no verdict on all of its content
             status = NodeHealthStatus.NONE;
+        } else {
+            status = NodeHealthStatus.HEALTHY;
         }
-
-        return new NodeHealthReport(status, nodeRef, toMessages(failedPropertiesWithContentUrl));
+        return new NodeHealthReport(status, nodeRef, messages);
     }
 
-    private String safeExtractContentUrl(Map<QName, Serializable> properties, NodeRef nodeRef,
-            QName dContentPropertyKey) {
-        if (!properties.containsKey(dContentPropertyKey)) {
-            getLogger().trace("Node '{}', properties don't contain d:content property '{}', skipping.",
-                    nodeRef, dContentPropertyKey);
-            return null;
+    private static <T> Callable<T> withRunAsUser(Callable<T> work) {
+        // Background threads do not inherit the security context of the thread running the processor
+        String runAsUser = AuthenticationUtil.getRunAsUser();
+        if (runAsUser == null) {
+            return work;
         }
+        return () -> AuthenticationUtil.runAs(work::call, runAsUser);
+    }
 
-        Serializable contentDataValue = properties.get(dContentPropertyKey);
+    @Nullable
+    private ContentData safeExtractContentData(@Nullable Serializable contentDataValue, NodeRef nodeRef,
+            QName dContentPropertyKey) {
         if (contentDataValue == null) {
-            getLogger().debug("Node '{}', property '{}', ContentData is null", nodeRef, dContentPropertyKey);
+            getLogger().trace("Node '{}', d:content property '{}' is not set, skipping.", nodeRef,
+                    dContentPropertyKey);
             return null;
         }
         if (!(contentDataValue instanceof ContentData)) {
@@ -127,19 +491,144 @@ public class ContentValidationHealthProcessorPlugin extends SingleNodeHealthProc
                     nodeRef, dContentPropertyKey);
             return null;
         }
-        return contentData.getContentUrl();
-    }
-
-    private static Set<String> toMessages(Map<QName, String> propQNamesWithContentUrl) {
-        return propQNamesWithContentUrl.entrySet().stream()
-                .map(entry -> toMessage(entry.getKey(), entry.getValue()))
-                .collect(Collectors.toSet());
+        return contentData;
     }
 
     private static String toMessage(QName property, String contentUrl) {
         return "Property: '" + property + "', contentUrl: '" + contentUrl + "'";
     }
 
+    /**
+     * Sets the maximum number of content checks that run at the same time, for all batches together. With the default
+     * of 1, the content of a batch is checked one by one.
+     */
+    public void setContentCheckParallelism(int contentCheckParallelism) {
+        if (contentCheckParallelism < 1) {
+            throw new IllegalArgumentException(
+                    "contentCheckParallelism should be at least 1, was " + contentCheckParallelism);
+        }
+        this.contentCheckParallelism = contentCheckParallelism;
+        updateContentCheckExecutor();
+    }
+
+    /**
+     * Sets the maximum time that a content check may run, in milliseconds, counted from when the check starts. A node
+     * of which the content could not be checked in time gets no verdict, unless other content of the node is missing.
+     * With the default of 0, a check may run indefinitely.
+     */
+    public void setContentCheckTimeoutMs(long contentCheckTimeoutMs) {
+        if (contentCheckTimeoutMs < 0) {
+            throw new IllegalArgumentException(
+                    "contentCheckTimeoutMs should not be negative, was " + contentCheckTimeoutMs);
+        }
+        this.contentCheckTimeoutMs = contentCheckTimeoutMs;
+        updateContentCheckExecutor();
+    }
+
+    private void updateContentCheckExecutor() {
+        // A timeout can only be enforced when the content is checked on threads of its own, even one check at a time
+        boolean needsExecutor = contentCheckParallelism > 1 || contentCheckTimeoutMs > 0;
+        ExecutorService previous = contentCheckExecutor;
+        contentCheckExecutor = needsExecutor ? createContentCheckExecutor(contentCheckParallelism) : null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    private static ExecutorService createContentCheckExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, CONTENT_CHECK_THREAD_NAME + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Idle threads do not linger between cycles
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Sets the maximum number of ContentUrls of which the result of the content check is remembered during a cycle.
+     * Once the cache is full, the least recently used ContentUrl is forgotten. With the default of 0, the content of
+     * every node is checked, even when another node with the same content was already checked.
+     */
+    public void setContentUrlCacheSize(int contentUrlCacheSize) {
+        if (contentUrlCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "contentUrlCacheSize should not be negative, was " + contentUrlCacheSize);
+        }
+        this.contentUrlCacheSize = contentUrlCacheSize;
+        contentStateCache = contentUrlCacheSize > 0 ? new ContentStateCache(contentUrlCacheSize) : null;
+    }
+
+    /**
+     * Sets how thoroughly content is verified, by the key of a {@link ContentVerification}
+     */
+    public void setContentVerification(String contentVerificationKey) {
+        ContentVerification verification = ContentVerification.fromKey(contentVerificationKey);
+        if (verification == null) {
+            throw new IllegalArgumentException("Unknown content verification '" + contentVerificationKey
+                    + "', expected one of " + Arrays.stream(ContentVerification.values())
+                    .map(ContentVerification::getKey)
+                    .collect(Collectors.toList()));
+        }
+        this.contentVerification = verification;
+        // Content states of a less thorough verification do not apply anymore
+        clearContentStateCache();
+    }
+
+    /**
+     * Sets the maximum number of bytes per second that are read when all content is read, for all content checks
+     * together. With the default of 0, content is read as fast as the store allows.
+     */
+    public void setContentReadBytesPerSecond(long contentReadBytesPerSecond) {
+        if (contentReadBytesPerSecond < 0) {
+            throw new IllegalArgumentException(
+                    "contentReadBytesPerSecond should not be negative, was " + contentReadBytesPerSecond);
+        }
+        this.contentReadBytesPerSecond = contentReadBytesPerSecond;
+        // noinspection UnstableApiUsage
+        contentReadRateLimiter = contentReadBytesPerSecond > 0 ? RateLimiter.create(contentReadBytesPerSecond) : null;
+    }
+
+    @Override
+    public void onCycleStart() {
+        clearContentStateCache();
+        contentUrlCacheHits.set(0);
+        contentUrlCacheMisses.set(0);
+    }
+
+    @Override
+    public void onCycleEnd() {
+        // The hits and misses remain available until the next cycle starts
+        clearContentStateCache();
+    }
+
+    private void clearContentStateCache() {
+        ContentStateCache cache = contentStateCache;
+        if (cache != null) {
+            synchronized (cache) {
+                cache.clear();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, String> getState() {
+        ContentStateCache cache = contentStateCache;
+        if (cache == null) {
+            return super.getState();
+        }
+        Map<String, String> state = new HashMap<>();
+        synchronized (cache) {
+            state.put("content-url-cache.size", Integer.toString(cache.size()));
+        }
+        state.put("content-url-cache.hits", Long.toString(contentUrlCacheHits.get()));
+        state.put("content-url-cache.misses", Long.toString(contentUrlCacheMisses.get()));
+        return state;
+    }
+
     @Override
     public Map<String, String> getConfiguration() {
         Map<String, String> configuration = new HashMap<>();
@@ -148,6 +637,76 @@ public class ContentValidationHealthProcessorPlugin extends SingleNodeHealthProc
                 .map(QName::toPrefixString)
                 .collect(Collectors.joining(", "))
         );
+        configuration.put("contentCheckParallelism", Integer.toString(contentCheckParallelism));
+        configuration.put("contentCheckTimeoutMs", Long.toString(contentCheckTimeoutMs));
+        configuration.put("contentUrlCacheSize", Integer.toString(contentUrlCacheSize));
+        configuration.put("contentVerification", contentVerification.getKey());
+        configuration.put("contentReadBytesPerSecond", Long.toString(contentReadBytesPerSecond));
         return configuration;
     }
+
+    /**
+     * How thoroughly the content of a node is verified
+     */
+    public enum ContentVerification {
+        /**
+         * The content exists in the store
+         */
+        EXISTS("exists"),
+        /**
+         * The content exists and its size in the store matches the size in the metadata of the node
+         */
+        SIZE("size"),
+        /**
+         * The content exists, and all bytes of the size in the metadata of the node can be read from the store
+         */
+        READ("read");
+
+        @Getter
+        private final String key;
+
+        ContentVerification(String key) {
+            this.key = key;
+        }
+
+        @Nullable
+        public static ContentVerification fromKey(String key) {
+            for (ContentVerification verification : values()) {
+                if (verification.getKey().equals(key)) {
+                    return verification;
+                }
+            }
+            return null;
+        }
+    }
+
+    private enum ContentState {
+        EXISTS,
+        MISSING,
+        // The content does not have the size of the metadata of the node
+        SIZE_MISMATCH,
+        // Reading the content failed
+        UNREADABLE,
+        // The check did not complete in time or was cancelled
+        UNKNOWN
+    }
+
+    /**
+     * Least recently used cache of content states by ContentUrl. Not thread-safe, access has to be synchronized on the
+     * cache itself.
+     */
+    private static class ContentStateCache extends LinkedHashMap<String, ContentState> {
+
+        private final int maxSize;
+
+        ContentStateCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ContentState> eldest) {
+            return size() > maxSize;
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package eu.xenit.alfresco.healthprocessor.plugins;
+
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreNodeRefs;
+import eu.xenit.alfresco.healthprocessor.plugins.api.ToggleableHealthProcessorPlugin;
+import eu.xenit.alfresco.healthprocessor.processing.CycleScoped;
+import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthReport;
+import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthStatus;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.util.ParameterCheck;
+import org.slf4j.Logger;
+
+/**
+ * Validates that the files of a content store are referenced by a content URL in the database. Files that are not,
+ * take up space without being part of the repository.
+ * <p>
+ * This plugin works on the files that the {@link ContentStoreIndexingStrategy} hands out, other nodes get no verdict.
+ * The content URLs of a batch are looked up together with a {@link ContentUrlBulkLookup}, or one by one through the
+ * {@link ContentDataDAO} when there is none or when it fails.
+ */
+@Slf4j
+@EqualsAndHashCode(callSuper = true)
+public class OrphanedContentHealthProcessorPlugin extends ToggleableHealthProcessorPlugin implements CycleScoped {
+
+    static final String MSG_NOT_A_CONTENT_STORE_FILE = "Not a file of a content store";
+    static final String MSG_NOT_REFERENCED = "File is not referenced by a content URL in the database";
+    static final String MSG_ORPHANED = "File is orphaned, it will be removed by the content store cleaner";
+
+    private final ContentDataDAO contentDataDAO;
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    private final ContentUrlBulkLookup contentUrlBulkLookup;
+
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong unreferencedFiles = new AtomicLong();
+
+    public OrphanedContentHealthProcessorPlugin(ContentDataDAO contentDataDAO) {
+        this(contentDataDAO, null);
+    }
+
+    public OrphanedContentHealthProcessorPlugin(ContentDataDAO contentDataDAO,
+            @Nullable ContentUrlBulkLookup contentUrlBulkLookup) {
+        ParameterCheck.mandatory("contentDataDAO", contentDataDAO);
+        this.contentDataDAO = contentDataDAO;
+        this.contentUrlBulkLookup = contentUrlBulkLookup;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return log;
+    }
+
+    @Nonnull
+    @Override
+    protected Set<NodeHealthReport> doProcess(Set<NodeRef> nodeRefs) {
+        Set<NodeHealthReport> ret = new HashSet<>(nodeRefs.size());
+        Map<NodeRef, String> contentUrls = new HashMap<>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs) {
+            String contentUrl = ContentStoreNodeRefs.toContentUrl(nodeRef);
+            if (contentUrl == null) {
+                ret.add(new NodeHealthReport(NodeHealthStatus.NONE, nodeRef, MSG_NOT_A_CONTENT_STORE_FILE));
+            } else {
+                contentUrls.put(nodeRef, contentUrl);
+            }
+        }
+
+        Map<String, ContentUrlEntity> contentUrlEntities = lookupContentUrls(contentUrls.values());
+        contentUrls.forEach((nodeRef, contentUrl) -> {
+            ContentUrlEntity contentUrlEntity = contentUrlEntities == null ?
+                    contentDataDAO.getContentUrl(contentUrl) : contentUrlEntities.get(contentUrl);
+            ret.add(process(nodeRef, contentUrl, contentUrlEntity));
+        });
+        return ret;
+    }
+
+    /**
+     * @return the content URL entities of the content URLs, or null when they have to be looked up one by one
+     */
+    @Nullable
+    private Map<String, ContentUrlEntity> lookupContentUrls(Collection<String> contentUrls) {
+        if (contentUrls.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (contentUrlBulkLookup == null) {
+            return null;
+        }
+        try {
+            return contentUrlBulkLookup.getContentUrls(contentUrls);
+        } catch (RuntimeException e) {
+            getLogger().warn("Bulk lookup of #{} content URLs failed, looking them up one by one", contentUrls.size(),
+                    e);
+            return null;
+        }
+    }
+
+    private NodeHealthReport process(NodeRef nodeRef, String contentUrl, @Nullable ContentUrlEntity contentUrlEntity) {
+        if (contentUrlEntity == null) {
+            getLogger().debug("ContentUrl '{}' is not referenced", contentUrl);
+            unreferencedFiles.incrementAndGet();
+            return new NodeHealthReport(NodeHealthStatus.UNHEALTHY, nodeRef, MSG_NOT_REFERENCED + ": " + contentUrl);
+        }
+        if (contentUrlEntity.getOrphanTime() != null) {
+            return new NodeHealthReport(NodeHealthStatus.NONE, nodeRef, MSG_ORPHANED + ": " + contentUrl);
+        }
+        return new NodeHealthReport(NodeHealthStatus.HEALTHY, nodeRef);
+    }
+
+    @Override
+    public void onCycleStart() {
+        unreferencedFiles.set(0);
+    }
+
+    @Override
+    public Map<String, String> getState() {
+        Map<String, String> state = new HashMap<>();
+        state.put("unreferenced-files", Long.toString(unreferencedFiles.get()));
+        return state;
+    }
+}
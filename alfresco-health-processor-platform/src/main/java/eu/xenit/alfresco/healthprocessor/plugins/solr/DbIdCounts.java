@@ -0,0 +1,94 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import java.util.Arrays;
+
+/**
+ * Number of times each DBID is present in a search response.
+ * <p>
+ * Keeps the DBIDs in an open addressing hash table of primitive longs, so counting the documents of a response does
+ * not box every DBID and only takes memory for the distinct DBIDs, no matter how many duplicates are returned.
+ */
+final class DbIdCounts {
+
+    // Marks an empty slot; DBIDs are never negative
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    DbIdCounts(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    void increment(long dbId) {
+        add(dbId, 1);
+    }
+
+    void add(long dbId, int count) {
+        if (dbId == EMPTY) {
+            throw new IllegalArgumentException("Invalid DBID: " + dbId);
+        }
+        int slot = slot(keys, dbId);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = dbId;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            // grow() moves the DBID to another slot
+            slot = slot(keys, dbId);
+        }
+        counts[slot] += count;
+    }
+
+    int get(long dbId) {
+        if (dbId == EMPTY) {
+            return 0;
+        }
+        int slot = slot(keys, dbId);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    /**
+     * @return The number of distinct DBIDs
+     */
+    int size() {
+        return size;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        counts = new int[capacity];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * @return The slot that contains the DBID, or the empty slot where it should be inserted
+     */
+    private static int slot(long[] keys, long dbId) {
+        int mask = keys.length - 1;
+        int slot = Long.hashCode(dbId * 0x9E3779B97F4A7C15L) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != dbId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
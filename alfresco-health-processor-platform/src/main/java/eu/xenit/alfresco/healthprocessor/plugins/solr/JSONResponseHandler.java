@@ -12,9 +12,25 @@ import org.apache.http.util.EntityUtils;
 
 public class JSONResponseHandler implements ResponseHandler<JsonNode> {
 
+    // Thread-safe once it has been configured
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     @Override
     public JsonNode handleResponse(final HttpResponse response)
             throws IOException {
+        final HttpEntity entity = checkStatus(response);
+        return entity == null ? null : handleEntity(entity);
+    }
+
+    public JsonNode handleEntity(HttpEntity entity) throws IOException {
+        return OBJECT_MAPPER.readTree(entity.getContent());
+    }
+
+    /**
+     * @return The entity of a successful response
+     * @throws HttpResponseException When the response has an error status
+     */
+    static HttpEntity checkStatus(final HttpResponse response) throws IOException {
         // This is copy-paste from AbstractResponseHandler,
         // The versions on the classpath of httpclient & httpcore are not compatible with each other
         // so lombok is unable to properly compile if we extend from AbstractResponseHandler
@@ -25,11 +41,6 @@ public class JSONResponseHandler implements ResponseHandler<JsonNode> {
             throw new HttpResponseException(statusLine.getStatusCode(),
                     statusLine.getReasonPhrase());
         }
-        return entity == null ? null : handleEntity(entity);
-    }
-
-    public JsonNode handleEntity(HttpEntity entity) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.readTree(entity.getContent());
+        return entity;
     }
 }
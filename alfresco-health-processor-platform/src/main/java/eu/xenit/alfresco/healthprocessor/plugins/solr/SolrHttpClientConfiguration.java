@@ -0,0 +1,44 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import lombok.Value;
+
+/**
+ * Connection pool and timeouts of the HTTP client that is used to talk to the search endpoints
+ */
+@Value
+public class SolrHttpClientConfiguration {
+
+    public static final SolrHttpClientConfiguration DEFAULT =
+            new SolrHttpClientConfiguration(20, 10, 5000, 60000, 60000, 30000);
+
+    int maxConnectionsTotal;
+    int maxConnectionsPerRoute;
+    /**
+     * Timeouts in milliseconds, 0 waits indefinitely
+     */
+    int connectTimeoutMs;
+    int socketTimeoutMs;
+    int connectionRequestTimeoutMs;
+    /**
+     * Time in milliseconds after which idle connections are closed, 0 keeps them open
+     */
+    long idleConnectionTimeoutMs;
+
+    public SolrHttpClientConfiguration(int maxConnectionsTotal, int maxConnectionsPerRoute, int connectTimeoutMs,
+            int socketTimeoutMs, int connectionRequestTimeoutMs, long idleConnectionTimeoutMs) {
+        if (maxConnectionsTotal <= 0 || maxConnectionsPerRoute <= 0) {
+            throw new IllegalArgumentException("Invalid configuration, maxConnectionsTotal (" + maxConnectionsTotal
+                    + ") and maxConnectionsPerRoute (" + maxConnectionsPerRoute + ") should be > 0");
+        }
+        if (connectTimeoutMs < 0 || socketTimeoutMs < 0 || connectionRequestTimeoutMs < 0
+                || idleConnectionTimeoutMs < 0) {
+            throw new IllegalArgumentException("Invalid configuration, timeouts should be >= 0");
+        }
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.socketTimeoutMs = socketTimeoutMs;
+        this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+        this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+    }
+}
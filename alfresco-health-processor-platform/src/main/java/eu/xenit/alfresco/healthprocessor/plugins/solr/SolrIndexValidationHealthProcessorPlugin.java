@@ -6,6 +6,7 @@ import static eu.xenit.alfresco.healthprocessor.plugins.solr.NodeIndexHealthRepo
 import static eu.xenit.alfresco.healthprocessor.plugins.solr.NodeIndexHealthReport.IndexHealthStatus.NOT_FOUND;
 import static eu.xenit.alfresco.healthprocessor.plugins.solr.NodeIndexHealthReport.IndexHealthStatus.NOT_INDEXED;
 
+import eu.xenit.alfresco.healthprocessor.indexing.NodeStatusCache;
 import eu.xenit.alfresco.healthprocessor.plugins.api.ToggleableHealthProcessorPlugin;
 import eu.xenit.alfresco.healthprocessor.plugins.solr.NodeIndexHealthReport.IndexHealthStatus;
 import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpoint;
@@ -13,15 +14,27 @@ import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpointSel
 import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthReport;
 import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthStatus;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -37,8 +50,41 @@ public class SolrIndexValidationHealthProcessorPlugin extends ToggleableHealthPr
     private final NodeService nodeService;
     private final SearchEndpointSelector solrServerSelector;
     private final SolrRequestExecutor solrRequestExecutor;
+    private final NodeStatusCache nodeStatusCache;
+
+    private static final String ENDPOINT_THREAD_NAME = "HealthProcessor-SolrEndpoint";
+
+    @Getter
+    private int endpointParallelism = 1;
+    /**
+     * Maximum time to wait for the results of all search endpoints of a batch, in milliseconds, counted from the moment
+     * the searches are sent. The nodes of an endpoint that does not respond in time are reported as {@code EXCEPTION}.
+     * 0 waits indefinitely.
+     */
+    @Getter
+    private long endpointTimeoutMs = 0;
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    private ExecutorService endpointExecutor;
+    /**
+     * Maximum number of nodes and maximum time in milliseconds to combine the searches of concurrently processed
+     * batches for. 0 sends the searches of every batch on their own.
+     */
+    @Getter
+    private int coalesceMaxNodes = 1000;
+    @Getter
+    private long coalesceMaxDelayMs = 0;
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    private SolrSearchCoalescer searchCoalescer;
+
+    public SolrIndexValidationHealthProcessorPlugin(NodeService nodeService,
+            SearchEndpointSelector solrServerSelector, SolrRequestExecutor solrRequestExecutor) {
+        this(nodeService, solrServerSelector, solrRequestExecutor, new NodeStatusCache());
+    }
 
     static final String MSG_NO_SEARCH_ENDPOINTS = "Node is not expected in any search index.";
+    static final String MSG_NO_NODE_STATUS = "Node does not exist in the repository.";
     @Override
     protected Logger getLogger() {
         return log;
@@ -51,20 +97,27 @@ public class SolrIndexValidationHealthProcessorPlugin extends ToggleableHealthPr
         Set<NodeHealthReport> healthReports = new HashSet<>(nodeRefs.size());
         Map<NodeRef.Status, Set<NodeIndexHealthReport>> indexHealthReports = new HashMap<>(nodeRefs.size());
 
-        // Collect node statuses
-        Set<NodeRef.Status> nodeRefStatuses = nodeRefs.stream()
-                .map(nodeService::getNodeStatus)
-                .collect(Collectors.toSet());
+        // Collect node statuses, using the statuses resolved by the indexing strategy where allowed
+        Set<NodeRef.Status> nodeRefStatuses = new HashSet<>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs) {
+            NodeRef.Status nodeRefStatus = getNodeStatus(nodeRef);
+            if (nodeRefStatus == null) {
+                // E.g. a node that has been purged, or a file handed out by the content-store indexing strategy
+                getLogger().debug("Node {} has no status", nodeRef);
+                healthReports.add(new NodeHealthReport(NodeHealthStatus.NONE, nodeRef, MSG_NO_NODE_STATUS));
+            } else {
+                nodeRefStatuses.add(nodeRefStatus);
+            }
+        }
 
         // Collect which search endpoints should contain which nodes
-        Map<SearchEndpoint, Set<NodeRef.Status>> endpointToNodeMap = new HashMap<>();
+        Map<SearchEndpoint, Set<NodeRef.Status>> endpointToNodeMap =
+                solrServerSelector.getSearchEndpointsForNodes(nodeRefStatuses);
+        getLogger().trace("Found endpoints for nodes: {}", endpointToNodeMap);
+        Set<NodeRef.Status> nodeRefStatusesWithEndpoints = new HashSet<>(nodeRefStatuses.size());
+        endpointToNodeMap.values().forEach(nodeRefStatusesWithEndpoints::addAll);
         for (NodeRef.Status nodeRefStatus : nodeRefStatuses) {
-            Set<SearchEndpoint> searchEndpoints = solrServerSelector.getSearchEndpointsForNode(nodeRefStatus);
-            getLogger().trace("Found endpoints for node {}: {}", nodeRefStatus.getNodeRef(), searchEndpoints);
-            for (SearchEndpoint searchEndpoint : searchEndpoints) {
-                endpointToNodeMap.computeIfAbsent(searchEndpoint, k -> new HashSet<>()).add(nodeRefStatus);
-            }
-            if (searchEndpoints.isEmpty()) {
+            if (!nodeRefStatusesWithEndpoints.contains(nodeRefStatus)) {
                 getLogger().debug("Node {} has no search endpoints", nodeRefStatus.getNodeRef());
                 healthReports.add(
                         new NodeHealthReport(NodeHealthStatus.NONE, nodeRefStatus.getNodeRef(),
@@ -76,39 +129,8 @@ public class SolrIndexValidationHealthProcessorPlugin extends ToggleableHealthPr
         }
 
         // Perform searches on the endpoints that should contain a node
-        for (Map.Entry<SearchEndpoint, Set<NodeRef.Status>> entry : endpointToNodeMap.entrySet()) {
-            SearchEndpoint searchEndpoint = entry.getKey();
-            Set<NodeRef.Status> expectedNodeRefStatuses = new HashSet<>(entry.getValue());
-            try {
-                SolrSearchResult searchResult = solrRequestExecutor.checkNodeIndexed(searchEndpoint,
-                        expectedNodeRefStatuses);
-
-                getLogger().trace("Search endpoint {}: expected nodes {}, result {}", searchEndpoint,
-                        expectedNodeRefStatuses,
-                        searchResult);
-
-                for (Status status : searchResult.getFound()) {
-                    indexHealthReports.get(status).add(new NodeIndexHealthReport(FOUND, status, searchEndpoint));
-                }
-
-                for (Status status : searchResult.getMissing()) {
-                    indexHealthReports.get(status).add(new NodeIndexHealthReport(NOT_FOUND, status, searchEndpoint));
-                }
-
-                for (Status status : searchResult.getNotIndexed()) {
-                    indexHealthReports.get(status).add(new NodeIndexHealthReport(NOT_INDEXED, status, searchEndpoint));
-                }
-
-                for (Status status : searchResult.getDuplicate()) {
-                    indexHealthReports.get(status).add(new NodeIndexHealthReport(DUPLICATE, status, searchEndpoint));
-                }
-            } catch (IOException exception) {
-                getLogger().error("Exception during healthcheck on search endpoint {}", searchEndpoint, exception);
-                for (Status nodeRefStatus : expectedNodeRefStatuses) {
-                    indexHealthReports.get(nodeRefStatus)
-                            .add(new NodeIndexHealthReport(EXCEPTION, nodeRefStatus, searchEndpoint));
-                }
-            }
+        for (NodeIndexHealthReport indexHealthReport : checkEndpoints(endpointToNodeMap)) {
+            indexHealthReports.get(indexHealthReport.getNodeRefStatus()).add(indexHealthReport);
         }
 
         indexHealthReports.entrySet()
@@ -135,11 +157,165 @@ public class SolrIndexValidationHealthProcessorPlugin extends ToggleableHealthPr
         return healthReports;
     }
 
+    @Nullable
+    private NodeRef.Status getNodeStatus(NodeRef nodeRef) {
+        // The transaction of a node can have moved on since the indexing strategy fetched its status. Validating the
+        // transaction against Solr then requires the current status.
+        NodeRef.Status status = solrRequestExecutor.isCheckTransaction() ? null : nodeStatusCache.get(nodeRef);
+        return status != null ? status : nodeService.getNodeStatus(nodeRef);
+    }
+
+    private List<NodeIndexHealthReport> checkEndpoints(Map<SearchEndpoint, Set<NodeRef.Status>> endpointToNodeMap) {
+        List<NodeIndexHealthReport> ret = new ArrayList<>();
+        ExecutorService executor = endpointExecutor;
+        if (executor == null || endpointToNodeMap.isEmpty()
+                || (endpointToNodeMap.size() == 1 && endpointTimeoutMs <= 0)) {
+            endpointToNodeMap.forEach((endpoint, nodeRefStatuses) ->
+                    ret.addAll(checkEndpoint(endpoint, nodeRefStatuses)));
+            return ret;
+        }
+
+        // Send the searches to all endpoints at once, so a batch takes as long as the slowest endpoint
+        Map<SearchEndpoint, Future<List<NodeIndexHealthReport>>> searches = new HashMap<>();
+        endpointToNodeMap.forEach((endpoint, nodeRefStatuses) ->
+                searches.put(endpoint, executor.submit(() -> checkEndpoint(endpoint, nodeRefStatuses))));
+        // One deadline for all endpoints, waiting for an endpoint does not give the ones after it more time
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(endpointTimeoutMs);
+        for (Map.Entry<SearchEndpoint, Future<List<NodeIndexHealthReport>>> search : searches.entrySet()) {
+            SearchEndpoint searchEndpoint = search.getKey();
+            try {
+                ret.addAll(endpointTimeoutMs > 0 ?
+                        search.getValue().get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS) :
+                        search.getValue().get());
+            } catch (TimeoutException exception) {
+                getLogger().error("Search endpoint {} did not respond within {} ms", searchEndpoint,
+                        endpointTimeoutMs);
+                search.getValue().cancel(true);
+                ret.addAll(exceptionReports(searchEndpoint, endpointToNodeMap.get(searchEndpoint)));
+            } catch (ExecutionException exception) {
+                // IOExceptions are reported by checkEndpoint(), anything else fails the batch as in sequential mode
+                searches.values().forEach(future -> future.cancel(true));
+                if (exception.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) exception.getCause();
+                }
+                throw new IllegalStateException(exception.getCause());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                searches.values().forEach(future -> future.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for search endpoint " + searchEndpoint,
+                        exception);
+            }
+        }
+        return ret;
+    }
+
+    private List<NodeIndexHealthReport> checkEndpoint(SearchEndpoint searchEndpoint,
+            Set<NodeRef.Status> nodeRefStatuses) {
+        Set<NodeRef.Status> expectedNodeRefStatuses = new HashSet<>(nodeRefStatuses);
+        SolrSearchCoalescer coalescer = searchCoalescer;
+        try {
+            SolrSearchResult searchResult = coalescer != null ?
+                    coalescer.checkNodeIndexed(searchEndpoint, expectedNodeRefStatuses) :
+                    solrRequestExecutor.checkNodeIndexed(searchEndpoint, expectedNodeRefStatuses);
+
+            getLogger().trace("Search endpoint {}: expected nodes {}, result {}", searchEndpoint,
+                    expectedNodeRefStatuses,
+                    searchResult);
+
+            List<NodeIndexHealthReport> ret = new ArrayList<>(expectedNodeRefStatuses.size());
+            for (Status status : searchResult.getFound()) {
+                ret.add(new NodeIndexHealthReport(FOUND, status, searchEndpoint));
+            }
+
+            for (Status status : searchResult.getMissing()) {
+                ret.add(new NodeIndexHealthReport(NOT_FOUND, status, searchEndpoint));
+            }
+
+            for (Status status : searchResult.getNotIndexed()) {
+                ret.add(new NodeIndexHealthReport(NOT_INDEXED, status, searchEndpoint));
+            }
+
+            for (Status status : searchResult.getDuplicate()) {
+                ret.add(new NodeIndexHealthReport(DUPLICATE, status, searchEndpoint));
+            }
+            return ret;
+        } catch (IOException exception) {
+            getLogger().error("Exception during healthcheck on search endpoint {}", searchEndpoint, exception);
+            return exceptionReports(searchEndpoint, expectedNodeRefStatuses);
+        }
+    }
+
+    private static List<NodeIndexHealthReport> exceptionReports(SearchEndpoint searchEndpoint,
+            Set<NodeRef.Status> nodeRefStatuses) {
+        return nodeRefStatuses.stream()
+                .map(nodeRefStatus -> new NodeIndexHealthReport(EXCEPTION, nodeRefStatus, searchEndpoint))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sets the maximum number of search endpoints that are queried at the same time for a batch. With the default of
+     * 1, the endpoints are queried one after the other.
+     */
+    public void setEndpointParallelism(int endpointParallelism) {
+        if (endpointParallelism < 1) {
+            throw new IllegalArgumentException("endpointParallelism should be at least 1, was " + endpointParallelism);
+        }
+        this.endpointParallelism = endpointParallelism;
+        updateEndpointExecutor();
+    }
+
+    public void setEndpointTimeoutMs(long endpointTimeoutMs) {
+        this.endpointTimeoutMs = endpointTimeoutMs;
+        updateEndpointExecutor();
+    }
+
+    private void updateEndpointExecutor() {
+        // A timeout can only be enforced when the endpoints are searched on threads of their own, even one at a time
+        boolean needsExecutor = endpointParallelism > 1 || endpointTimeoutMs > 0;
+        ExecutorService previous = endpointExecutor;
+        endpointExecutor = needsExecutor ? createEndpointExecutor(endpointParallelism) : null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    public void setCoalesceMaxNodes(int coalesceMaxNodes) {
+        this.coalesceMaxNodes = coalesceMaxNodes;
+        updateSearchCoalescer();
+    }
+
+    public void setCoalesceMaxDelayMs(long coalesceMaxDelayMs) {
+        this.coalesceMaxDelayMs = coalesceMaxDelayMs;
+        updateSearchCoalescer();
+    }
+
+    private void updateSearchCoalescer() {
+        searchCoalescer = coalesceMaxDelayMs > 0 ?
+                new SolrSearchCoalescer(solrRequestExecutor, coalesceMaxNodes, coalesceMaxDelayMs) : null;
+    }
+
+    private static ExecutorService createEndpointExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, ENDPOINT_THREAD_NAME + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Idle threads do not linger between cycles
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     public Map<String, String> getConfiguration() {
         Map<String, String> configuration = new HashMap<>();
         configuration.put("enabled", Boolean.toString(isEnabled()));
         configuration.put("solrServerSelector", solrServerSelector.toString());
+        configuration.put("endpointParallelism", Integer.toString(endpointParallelism));
+        configuration.put("endpointTimeoutMs", Long.toString(endpointTimeoutMs));
+        configuration.put("coalesceMaxNodes", Integer.toString(coalesceMaxNodes));
+        configuration.put("coalesceMaxDelayMs", Long.toString(coalesceMaxDelayMs));
         return configuration;
     }
 }
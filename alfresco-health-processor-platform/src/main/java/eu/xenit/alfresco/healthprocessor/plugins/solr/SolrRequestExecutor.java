@@ -4,35 +4,103 @@ import com.fasterxml.jackson.databind.JsonNode;
 import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpoint;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
+import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
 
 
 /**
  * Performs HTTP requests on a {@link SearchEndpoint}
  */
 @Slf4j
-@RequiredArgsConstructor
 public class SolrRequestExecutor {
 
     private final HttpClient httpClient;
+    /**
+     * Validate that the indexed transaction of a node is its latest transaction, not only that the node is indexed
+     */
+    @Getter
     private final boolean checkTransaction;
+    // Connection pool of the HTTP client, or null when the HTTP client has been provided
+    @Nullable
+    private final PoolingHttpClientConnectionManager connectionManager;
+    /**
+     * Count the documents of each DBID with a facet instead of fetching all documents. The size of the response is
+     * then bounded by the number of nodes, no matter how many times they are duplicated in the index.
+     */
+    @Getter
+    @Setter
+    private boolean facetCounts = false;
+    /**
+     * Time in milliseconds for which the last indexed transaction of an endpoint is remembered. Nodes in later
+     * transactions can not have been indexed yet: they are reported as not indexed without searching for them. 0
+     * searches for all nodes.
+     */
+    @Getter
+    private long lastIndexedTxTtlMs = 0;
+    private final Map<SearchEndpoint, CachedLastIndexedTx> lastIndexedTxCache = new ConcurrentHashMap<>();
+
+    public SolrRequestExecutor(HttpClient httpClient, boolean checkTransaction) {
+        this(httpClient, checkTransaction, null);
+    }
+
+    private SolrRequestExecutor(HttpClient httpClient, boolean checkTransaction,
+            @Nullable PoolingHttpClientConnectionManager connectionManager) {
+        this.httpClient = httpClient;
+        this.checkTransaction = checkTransaction;
+        this.connectionManager = connectionManager;
+    }
+
+    public SolrRequestExecutor(Boolean checkTransaction, Properties globalProperties,
+            SolrHttpClientConfiguration httpClientConfiguration) {
+        this(SslHttpClientFactory.createConnectionManager(globalProperties, httpClientConfiguration),
+                httpClientConfiguration, checkTransaction);
+    }
+
+    private SolrRequestExecutor(PoolingHttpClientConnectionManager connectionManager,
+            SolrHttpClientConfiguration httpClientConfiguration, boolean checkTransaction) {
+        this(SslHttpClientFactory.setupHttpClient(connectionManager, httpClientConfiguration), checkTransaction,
+                connectionManager);
+    }
+
+    public void setLastIndexedTxTtlMs(long lastIndexedTxTtlMs) {
+        if (lastIndexedTxTtlMs < 0) {
+            throw new IllegalArgumentException("lastIndexedTxTtlMs should be >= 0, was " + lastIndexedTxTtlMs);
+        }
+        this.lastIndexedTxTtlMs = lastIndexedTxTtlMs;
+        lastIndexedTxCache.clear();
+    }
 
-    public SolrRequestExecutor(Boolean checkTransaction, Properties globalProperties) {
-        this(SslHttpClientFactory.setupHttpClient(globalProperties), checkTransaction);
+    /**
+     * @return Statistics of the connection pool to all search endpoints, or null when the HTTP client has been
+     * provided
+     */
+    @Nullable
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager == null ? null : connectionManager.getTotalStats();
     }
 
     /**
@@ -46,41 +114,45 @@ public class SolrRequestExecutor {
     public SolrSearchResult checkNodeIndexed(SearchEndpoint endpoint, Collection<Status> nodeStatuses)
             throws IOException {
 
-        // Initially, try a fetch for double the size of the node statuses array
-        // This is so we can immediately detect the case where all nodes are indexed twice.
-        int fetchSize = nodeStatuses.size() * 2;
-        JsonNode response = executeSearchRequest(endpoint, nodeStatuses, fetchSize);
+        SolrSearchResult solrSearchResult = new SolrSearchResult();
 
-        long numberOfFoundDocs = response.path("response").path("numFound").asLong();
-        if (numberOfFoundDocs > fetchSize) {
-            // We did not fetch enough in one batch to fetch all duplicates (when nodes are duplicated more than once)
-            // Send a new request for the number of rows we actually need.
-            log.debug(
-                    "Found number of docs #{} is larger than the requested number of rows #{}. Fetching again with larger number of rows.",
-                    numberOfFoundDocs, fetchSize);
-            response = executeSearchRequest(endpoint, nodeStatuses, numberOfFoundDocs);
+        Collection<Status> nodeStatusesToSearch = nodeStatuses;
+        Long cachedLastIndexedTransaction = getCachedLastIndexedTx(endpoint);
+        if (cachedLastIndexedTransaction != null) {
+            // Solr only moves forward: nodes in later transactions can not have been indexed yet
+            nodeStatusesToSearch = new ArrayList<>(nodeStatuses.size());
+            for (Status nodeStatus : nodeStatuses) {
+                if (nodeStatus.getDbTxnId() > cachedLastIndexedTransaction) {
+                    solrSearchResult.getNotIndexed().add(nodeStatus);
+                } else {
+                    nodeStatusesToSearch.add(nodeStatus);
+                }
+            }
+            if (nodeStatusesToSearch.isEmpty()) {
+                log.debug("All #{} nodes are in transactions after the last indexed transaction {} of {}",
+                        nodeStatuses.size(), cachedLastIndexedTransaction, endpoint);
+                return solrSearchResult;
+            }
         }
 
-        Long lastIndexedTransaction = response.path("lastIndexedTx").asLong();
+        SolrSearchResponse response = facetCounts ?
+                executeFacetRequest(endpoint, nodeStatusesToSearch) :
+                executeDocumentsRequest(endpoint, nodeStatusesToSearch);
 
-        JsonNode docs = response.path("response").path("docs");
+        long lastIndexedTransaction = response.getLastIndexedTx();
+        cacheLastIndexedTx(endpoint, lastIndexedTransaction);
 
-        // Map from DBID to number of times that it is present
-        Map<Long, Long> foundDbIds = StreamSupport.stream(docs.spliterator(), false)
-                .filter(JsonNode::isObject)
-                .map(o -> o.path("DBID").asLong())
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        // Number of times that each DBID is present
+        DbIdCounts foundDbIds = response.getDbIdCounts();
 
         log.debug("Last indexed transaction in solr: {}", lastIndexedTransaction);
         if (log.isTraceEnabled()) {
             log.trace("Transactions on nodes: {}",
-                    nodeStatuses.stream().map(Status::getDbTxnId).collect(Collectors.toSet()));
+                    nodeStatusesToSearch.stream().map(Status::getDbTxnId).collect(Collectors.toSet()));
         }
 
-        SolrSearchResult solrSearchResult = new SolrSearchResult();
-
-        for (Status nodeStatus : nodeStatuses) {
-            switch (foundDbIds.getOrDefault(nodeStatus.getDbId(), 0L).intValue()) {
+        for (Status nodeStatus : nodeStatusesToSearch) {
+            switch (foundDbIds.get(nodeStatus.getDbId())) {
                 case 0:
                     // Node is in a transaction that has not yet been indexed
                     if (nodeStatus.getDbTxnId() > lastIndexedTransaction) {
@@ -105,31 +177,91 @@ public class SolrRequestExecutor {
         return solrSearchResult;
     }
 
-    private JsonNode executeSearchRequest(SearchEndpoint endpoint, Collection<Status> nodeStatuses, long fetchSize)
+    @Nullable
+    private Long getCachedLastIndexedTx(SearchEndpoint endpoint) {
+        if (lastIndexedTxTtlMs <= 0) {
+            return null;
+        }
+        CachedLastIndexedTx cached = lastIndexedTxCache.get(endpoint);
+        return cached == null || cached.isExpired() ? null : cached.getLastIndexedTx();
+    }
+
+    private void cacheLastIndexedTx(SearchEndpoint endpoint, long lastIndexedTx) {
+        // A response without a last indexed transaction tells nothing about the progress of the index
+        if (lastIndexedTxTtlMs <= 0 || lastIndexedTx <= 0) {
+            return;
+        }
+        CachedLastIndexedTx update = new CachedLastIndexedTx(lastIndexedTx,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lastIndexedTxTtlMs));
+        // Solr only moves forward: a response that was overtaken by a later one must not move the cache back
+        lastIndexedTxCache.merge(endpoint, update, (cached, updated) ->
+                cached.isExpired() || updated.getLastIndexedTx() >= cached.getLastIndexedTx() ? updated : cached);
+    }
+
+    private SolrSearchResponse executeDocumentsRequest(SearchEndpoint endpoint, Collection<Status> nodeStatuses)
+            throws IOException {
+        // Initially, try a fetch for double the size of the node statuses array
+        // This is so we can immediately detect the case where all nodes are indexed twice.
+        int fetchSize = nodeStatuses.size() * 2;
+        SolrSearchResponse response = executeSearchRequest(endpoint, nodeStatuses, fetchSize);
+
+        long numberOfFoundDocs = response.getNumFound();
+        if (numberOfFoundDocs > fetchSize) {
+            // We did not fetch enough in one batch to fetch all duplicates (when nodes are duplicated more than once)
+            // Send a new request for the number of rows we actually need.
+            log.debug(
+                    "Found number of docs #{} is larger than the requested number of rows #{}. Fetching again with larger number of rows.",
+                    numberOfFoundDocs, fetchSize);
+            response = executeSearchRequest(endpoint, nodeStatuses, numberOfFoundDocs);
+        }
+        return response;
+    }
+
+    private SolrSearchResponse executeFacetRequest(SearchEndpoint endpoint, Collection<Status> nodeStatuses)
+            throws IOException {
+        // No documents, only the number of documents per DBID. Every DBID that is found is needed to tell found nodes
+        // from missing ones, so the facet is not limited to duplicated DBIDs.
+        return executeSearchRequest(endpoint, nodeStatuses, 0,
+                new BasicNameValuePair("facet", "true"),
+                new BasicNameValuePair("facet.field", "DBID"),
+                new BasicNameValuePair("facet.mincount", "1"),
+                new BasicNameValuePair("facet.limit", "-1"),
+                new BasicNameValuePair("json.nl", "flat"));
+    }
+
+    private SolrSearchResponse executeSearchRequest(SearchEndpoint endpoint, Collection<Status> nodeStatuses,
+            long fetchSize, NameValuePair... extraParameters)
             throws IOException {
         String solrQuery;
         if (!checkTransaction) {
+            // The terms query parser looks up the DBIDs directly, without building a boolean query of all of them
             solrQuery = nodeStatuses.stream()
-                    .map(Status::getDbId)
-                    .map(dbId -> "DBID:" + dbId)
-                    .collect(Collectors.joining("%20OR%20"));
+                    .map(status -> Long.toString(status.getDbId()))
+                    .collect(Collectors.joining(",", "{!terms f=DBID}", ""));
         } else {
             // FROM SS 2.0 Documents in SOLR also contain their related transaction (called INTXID).
             // Searching for both DBID and TX from Alfresco validates that the node is indexed
             // and that it's related transaction is the latest. (making sure no later transaction was accidentally skipped)
             solrQuery = nodeStatuses.stream()
-                    .map(status -> "(DBID:" + status.getDbId() + "%20AND%20INTXID:" + status.getDbTxnId() + ")" )
-                    .collect(Collectors.joining("%20OR%20"));
+                    .map(status -> "(DBID:" + status.getDbId() + " AND INTXID:" + status.getDbTxnId() + ")")
+                    .collect(Collectors.joining(" OR "));
         }
 
         log.debug("Search query to endpoint {}: {}", endpoint, solrQuery);
 
-        HttpUriRequest searchRequest = new HttpGet(
-                endpoint.getBaseUri()
-                        .resolve("select?q=" + solrQuery + "&fl=DBID&wt=json&rows=" + fetchSize));
+        // The query is sent in the request body, so its size is not limited by the maximum length of a URL
+        HttpPost searchRequest = new HttpPost(endpoint.getBaseUri().resolve("select"));
+        List<NameValuePair> parameters = new ArrayList<>(Arrays.asList(
+                new BasicNameValuePair("q", solrQuery),
+                new BasicNameValuePair("fl", "DBID"),
+                new BasicNameValuePair("wt", "json"),
+                new BasicNameValuePair("rows", Long.toString(fetchSize))
+        ));
+        parameters.addAll(Arrays.asList(extraParameters));
+        searchRequest.setEntity(new UrlEncodedFormEntity(parameters, StandardCharsets.UTF_8));
 
         log.trace("Executing HTTP request {}", searchRequest);
-        return httpClient.execute(searchRequest, new JSONResponseHandler());
+        return httpClient.execute(searchRequest, new SolrSearchResponseHandler(nodeStatuses.size()));
     }
 
     /**
@@ -169,6 +301,17 @@ public class SolrRequestExecutor {
         return new SolrActionResponse(successFull, message);
     }
 
+    @Value
+    private static class CachedLastIndexedTx {
+
+        long lastIndexedTx;
+        long expiresAtNanos;
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos >= 0;
+        }
+    }
+
     @Value
     public static class SolrActionResponse {
         private final boolean successFull;
@@ -0,0 +1,181 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpoint;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.service.cmr.repository.NodeRef.Status;
+
+/**
+ * Combines the searches of batches that are processed at the same time into one search per {@link SearchEndpoint}.
+ * <p>
+ * The first batch that searches an endpoint waits for at most {@code maxDelayMs} for other batches to join, unless
+ * the combined search reaches {@code maxNodes} before that. One search is then sent for all of them, and its result is
+ * split up again per batch. This only pays off when batches are processed concurrently: a batch that is processed on
+ * its own waits the full delay.
+ */
+@Slf4j
+public class SolrSearchCoalescer {
+
+    private final SolrRequestExecutor solrRequestExecutor;
+    private final int maxNodes;
+    private final long maxDelayMs;
+
+    private final Object lock = new Object();
+    // Searches that are waiting to be sent, by endpoint
+    private final Map<SearchEndpoint, PendingSearch> pendingSearches = new HashMap<>();
+
+    public SolrSearchCoalescer(SolrRequestExecutor solrRequestExecutor, int maxNodes, long maxDelayMs) {
+        if (maxNodes <= 0 || maxDelayMs <= 0) {
+            throw new IllegalArgumentException("Invalid configuration, maxNodes (" + maxNodes + ") and maxDelayMs ("
+                    + maxDelayMs + ") should be > 0");
+        }
+        this.solrRequestExecutor = solrRequestExecutor;
+        this.maxNodes = maxNodes;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * @see SolrRequestExecutor#checkNodeIndexed(SearchEndpoint, Collection)
+     */
+    public SolrSearchResult checkNodeIndexed(SearchEndpoint endpoint, Collection<Status> nodeStatuses)
+            throws IOException {
+        Request request = new Request(nodeStatuses);
+        PendingSearch search;
+        boolean first;
+        boolean full;
+        synchronized (lock) {
+            search = pendingSearches.get(endpoint);
+            first = search == null;
+            if (first) {
+                search = new PendingSearch();
+                pendingSearches.put(endpoint, search);
+            }
+            search.add(request);
+            full = search.numberOfNodes >= maxNodes;
+            if (full) {
+                pendingSearches.remove(endpoint);
+                search.sealed = true;
+                lock.notifyAll();
+            }
+        }
+
+        if (full) {
+            send(endpoint, search);
+        } else if (first && awaitOthers(endpoint, search)) {
+            send(endpoint, search);
+        }
+        return await(request);
+    }
+
+    /**
+     * Waits for other batches to join the search
+     *
+     * @return true if this thread has to send the search, false if another thread filled it up and sends it
+     */
+    private boolean awaitOthers(SearchEndpoint endpoint, PendingSearch search) throws InterruptedIOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        synchronized (lock) {
+            try {
+                long remaining;
+                while (!search.sealed && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Nobody else sends a search that has not been filled up: fail the batches that joined it
+                if (!search.sealed) {
+                    pendingSearches.remove(endpoint);
+                    search.sealed = true;
+                    search.requests.forEach(request -> request.result.completeExceptionally(e));
+                }
+                throw new InterruptedIOException("Interrupted while waiting to search " + endpoint);
+            }
+            if (search.sealed) {
+                return false;
+            }
+            pendingSearches.remove(endpoint);
+            search.sealed = true;
+            return true;
+        }
+    }
+
+    private void send(SearchEndpoint endpoint, PendingSearch search) {
+        Set<Status> nodeStatuses = new HashSet<>(search.numberOfNodes);
+        search.requests.forEach(request -> nodeStatuses.addAll(request.nodeStatuses));
+        log.debug("Searching {} for #{} nodes of #{} batches", endpoint, nodeStatuses.size(), search.requests.size());
+        try {
+            SolrSearchResult result = solrRequestExecutor.checkNodeIndexed(endpoint, nodeStatuses);
+            search.requests.forEach(request -> request.result.complete(split(result, request.nodeStatuses)));
+        } catch (IOException | RuntimeException e) {
+            search.requests.forEach(request -> request.result.completeExceptionally(e));
+        }
+    }
+
+    private static SolrSearchResult split(SolrSearchResult result, Collection<Status> nodeStatuses) {
+        SolrSearchResult ret = new SolrSearchResult();
+        for (Status nodeStatus : nodeStatuses) {
+            if (result.getFound().contains(nodeStatus)) {
+                ret.getFound().add(nodeStatus);
+            } else if (result.getMissing().contains(nodeStatus)) {
+                ret.getMissing().add(nodeStatus);
+            } else if (result.getNotIndexed().contains(nodeStatus)) {
+                ret.getNotIndexed().add(nodeStatus);
+            } else if (result.getDuplicate().contains(nodeStatus)) {
+                ret.getDuplicate().add(nodeStatus);
+            }
+        }
+        return ret;
+    }
+
+    private static SolrSearchResult await(Request request) throws IOException {
+        try {
+            return request.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for search result");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static class PendingSearch {
+
+        private final List<Request> requests = new ArrayList<>();
+        private int numberOfNodes;
+        // Set once no more batches can join the search
+        private boolean sealed;
+
+        void add(Request request) {
+            requests.add(request);
+            numberOfNodes += request.nodeStatuses.size();
+        }
+    }
+
+    private static class Request {
+
+        private final Collection<Status> nodeStatuses;
+        private final CompletableFuture<SolrSearchResult> result = new CompletableFuture<>();
+
+        Request(Collection<Status> nodeStatuses) {
+            this.nodeStatuses = nodeStatuses;
+        }
+    }
+}
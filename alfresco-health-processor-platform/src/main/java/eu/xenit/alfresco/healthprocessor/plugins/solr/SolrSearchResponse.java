@@ -0,0 +1,14 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import lombok.Value;
+
+/**
+ * The parts of a search response that are needed to check whether nodes are indexed
+ */
+@Value
+class SolrSearchResponse {
+
+    long numFound;
+    long lastIndexedTx;
+    DbIdCounts dbIdCounts;
+}
@@ -0,0 +1,135 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import lombok.RequiredArgsConstructor;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+
+/**
+ * Reads the number of found documents, the last indexed transaction and the DBIDs of the documents from a search
+ * response, token by token, without building a tree of the whole response.
+ * <p>
+ * The DBIDs are counted from the returned documents, or taken from the {@code DBID} facet (in {@code json.nl=flat}
+ * format) when the response contains one.
+ */
+@RequiredArgsConstructor
+class SolrSearchResponseHandler implements ResponseHandler<SolrSearchResponse> {
+
+    // Thread-safe once it has been configured
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int expectedNumberOfDbIds;
+
+    @Override
+    public SolrSearchResponse handleResponse(HttpResponse response) throws IOException {
+        HttpEntity entity = JSONResponseHandler.checkStatus(response);
+        if (entity == null) {
+            return new SolrSearchResponse(0, 0, new DbIdCounts(0));
+        }
+        try (InputStream content = entity.getContent()) {
+            return parse(content);
+        }
+    }
+
+    SolrSearchResponse parse(InputStream content) throws IOException {
+        long numFound = 0;
+        long lastIndexedTx = 0;
+        DbIdCounts dbIdCounts = new DbIdCounts(expectedNumberOfDbIds);
+
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object as search response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("lastIndexedTx".equals(field)) {
+                    lastIndexedTx = parser.getValueAsLong();
+                } else if ("response".equals(field) && value == JsonToken.START_OBJECT) {
+                    numFound = parseResponse(parser, dbIdCounts);
+                } else if ("facet_counts".equals(field) && value == JsonToken.START_OBJECT) {
+                    parseFacetCounts(parser, dbIdCounts);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new SolrSearchResponse(numFound, lastIndexedTx, dbIdCounts);
+    }
+
+    /**
+     * Parses the {@code response} object, counting the DBIDs of its documents
+     *
+     * @return The number of found documents
+     */
+    private static long parseResponse(JsonParser parser, DbIdCounts dbIdCounts) throws IOException {
+        long numFound = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("numFound".equals(field)) {
+                numFound = parser.getValueAsLong();
+            } else if ("docs".equals(field) && value == JsonToken.START_ARRAY) {
+                parseDocs(parser, dbIdCounts);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return numFound;
+    }
+
+    private static void parseDocs(JsonParser parser, DbIdCounts dbIdCounts) throws IOException {
+        JsonToken doc;
+        while ((doc = parser.nextToken()) != null && doc != JsonToken.END_ARRAY) {
+            if (doc != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("DBID".equals(field)) {
+                    dbIdCounts.increment(parser.getValueAsLong());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void parseFacetCounts(JsonParser parser, DbIdCounts dbIdCounts) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (!"facet_fields".equals(field) || value != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String facetField = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "DBID".equals(facetField)) {
+                    parseDbIdFacet(parser, dbIdCounts);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a flat facet: alternating terms and their counts
+     */
+    private static void parseDbIdFacet(JsonParser parser, DbIdCounts dbIdCounts) throws IOException {
+        JsonToken term;
+        while ((term = parser.nextToken()) != null && term != JsonToken.END_ARRAY) {
+            long dbId = parser.getValueAsLong();
+            parser.nextToken();
+            dbIdCounts.add(dbId, parser.getValueAsInt());
+        }
+    }
+}
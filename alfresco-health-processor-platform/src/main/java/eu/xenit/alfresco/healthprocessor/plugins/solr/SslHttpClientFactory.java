@@ -1,9 +1,14 @@
 package eu.xenit.alfresco.healthprocessor.plugins.solr;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContexts;
 
 import java.io.File;
@@ -20,10 +25,48 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 public class SslHttpClientFactory {
 
     public static HttpClient setupHttpClient(Properties globalProperties) {
+        return setupHttpClient(createConnectionManager(globalProperties, SolrHttpClientConfiguration.DEFAULT),
+                SolrHttpClientConfiguration.DEFAULT);
+    }
+
+    public static HttpClient setupHttpClient(PoolingHttpClientConnectionManager connectionManager,
+            SolrHttpClientConfiguration configuration) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(configuration.getConnectTimeoutMs())
+                .setSocketTimeout(configuration.getSocketTimeoutMs())
+                .setConnectionRequestTimeout(configuration.getConnectionRequestTimeoutMs())
+                .build();
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // The client certificate would mark every connection as stateful, which keeps the pool from reusing
+                // them for the next request, and forces a new TLS handshake for each request
+                .disableConnectionState();
+        if (configuration.getIdleConnectionTimeoutMs() > 0) {
+            builder.evictExpiredConnections()
+                    .evictIdleConnections(configuration.getIdleConnectionTimeoutMs(), TimeUnit.MILLISECONDS);
+        }
+        return builder.build();
+    }
+
+    public static PoolingHttpClientConnectionManager createConnectionManager(Properties globalProperties,
+            SolrHttpClientConfiguration configuration) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", createSslSocketFactory(globalProperties))
+                        .build());
+        connectionManager.setMaxTotal(configuration.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(configuration.getMaxConnectionsPerRoute());
+        return connectionManager;
+    }
+
+    private static SSLConnectionSocketFactory createSslSocketFactory(Properties globalProperties) {
         try {
             String keystoreLocation = globalProperties.getProperty("encryption.ssl.keystore.location");
             String truststoreLocation = globalProperties.getProperty("encryption.ssl.truststore.location");
@@ -69,16 +112,12 @@ public class SslHttpClientFactory {
                     .build();
 
             // Create the SSLConnectionSocketFactory with the SSLContext
-            SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(
+            return new SSLConnectionSocketFactory(
                     sslContext,
                     new String[]{"TLSv1.2","TLSv1.3"}, // Allowed TLS protocols
                     null, // Default cipher suites
                     NoopHostnameVerifier.INSTANCE
             );
-            return HttpClientBuilder.create()
-                    .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                    .setSSLSocketFactory(sslSocketFactory)
-                    .build();
         } catch (IOException | CertificateException | KeyManagementException | UnrecoverableKeyException |
                  KeyStoreException | NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
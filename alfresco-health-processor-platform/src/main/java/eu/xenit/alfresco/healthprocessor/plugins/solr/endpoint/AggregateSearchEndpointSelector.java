@@ -1,20 +1,59 @@
 package eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint;
 
+import eu.xenit.alfresco.healthprocessor.plugins.solr.filter.FilteringSearchEndpointSelector;
+import eu.xenit.alfresco.healthprocessor.plugins.solr.filter.SolrNodeFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import lombok.AllArgsConstructor;
 import lombok.ToString;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 
 
 /**
  * Collects {@link SearchEndpoint}s for a node from multiple sources
+ * <p>
+ * For a batch of nodes, the {@link DbIdRangeSearchEndpointSelector}s (optionally wrapped in a
+ * {@link FilteringSearchEndpointSelector}) are combined in a {@link DbIdRangeIndex} per filter. A node is then routed
+ * to all its DBID range shards with one filter evaluation and one binary search, instead of asking every shard.
  */
-@AllArgsConstructor
 @ToString
 public class AggregateSearchEndpointSelector implements SearchEndpointSelector {
 
+    // Used for DBID range selectors that are not wrapped in a filter
+    private static final SolrNodeFilter NO_FILTER = nodeRefStatus -> false;
+
     private final Set<SearchEndpointSelector> endpointSelectors;
+    @ToString.Exclude
+    private final Map<SolrNodeFilter, DbIdRangeIndex> dbIdRangeIndexes = new LinkedHashMap<>();
+    @ToString.Exclude
+    private final List<SearchEndpointSelector> otherEndpointSelectors = new ArrayList<>();
+
+    public AggregateSearchEndpointSelector(Set<SearchEndpointSelector> endpointSelectors) {
+        this.endpointSelectors = endpointSelectors;
+
+        Map<SolrNodeFilter, List<DbIdRangeSearchEndpointSelector>> dbIdRangeSelectors = new LinkedHashMap<>();
+        for (SearchEndpointSelector endpointSelector : endpointSelectors) {
+            SolrNodeFilter filter = NO_FILTER;
+            SearchEndpointSelector selector = endpointSelector;
+            if (selector instanceof FilteringSearchEndpointSelector) {
+                filter = ((FilteringSearchEndpointSelector) selector).getFilter();
+                selector = ((FilteringSearchEndpointSelector) selector).getSolrServerEndpointSelector();
+            }
+            if (selector instanceof DbIdRangeSearchEndpointSelector) {
+                dbIdRangeSelectors.computeIfAbsent(filter, k -> new ArrayList<>())
+                        .add((DbIdRangeSearchEndpointSelector) selector);
+            } else {
+                otherEndpointSelectors.add(endpointSelector);
+            }
+        }
+        dbIdRangeSelectors.forEach((filter, selectors) -> dbIdRangeIndexes.put(filter, new DbIdRangeIndex(selectors)));
+    }
 
     @Override
     public Set<SearchEndpoint> getSearchEndpointsForNode(Status nodeRef) {
@@ -22,4 +61,21 @@ public class AggregateSearchEndpointSelector implements SearchEndpointSelector {
                 .flatMap(selector -> selector.getSearchEndpointsForNode(nodeRef).stream())
                 .collect(Collectors.toSet());
     }
+
+    @Override
+    public Map<SearchEndpoint, Set<Status>> getSearchEndpointsForNodes(Collection<Status> nodeRefs) {
+        Map<SearchEndpoint, Set<Status>> ret = new HashMap<>();
+        dbIdRangeIndexes.forEach((filter, index) -> {
+            for (Status nodeRef : filter.filterIgnored(nodeRefs)) {
+                for (SearchEndpoint searchEndpoint : index.getSearchEndpoints(nodeRef.getDbId())) {
+                    ret.computeIfAbsent(searchEndpoint, k -> new HashSet<>()).add(nodeRef);
+                }
+            }
+        });
+        for (SearchEndpointSelector selector : otherEndpointSelectors) {
+            selector.getSearchEndpointsForNodes(nodeRefs).forEach((searchEndpoint, nodes) ->
+                    ret.computeIfAbsent(searchEndpoint, k -> new HashSet<>()).addAll(nodes));
+        }
+        return ret;
+    }
 }
@@ -0,0 +1,61 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Looks up the {@link SearchEndpoint}s of a database id in the ranges of multiple
+ * {@link DbIdRangeSearchEndpointSelector}s with a single binary search.
+ * <p>
+ * The boundaries of all ranges split the database ids in consecutive segments, and every segment holds the endpoints
+ * of all ranges that cover it, so overlapping ranges (e.g. replicas of a shard) are supported.
+ */
+class DbIdRangeIndex {
+
+    // Sorted start (inclusive) of every segment, the last boundary is the end (exclusive) of the last segment
+    private final long[] boundaries;
+    // Endpoints of the segment that starts at the boundary with the same index
+    private final List<List<SearchEndpoint>> segmentEndpoints;
+
+    DbIdRangeIndex(Collection<DbIdRangeSearchEndpointSelector> selectors) {
+        TreeSet<Long> sortedBoundaries = new TreeSet<>();
+        for (DbIdRangeSearchEndpointSelector selector : selectors) {
+            if (selector.getDbIdStart() < selector.getDbIdEnd()) {
+                sortedBoundaries.add(selector.getDbIdStart());
+                sortedBoundaries.add(selector.getDbIdEnd());
+            }
+        }
+        boundaries = sortedBoundaries.stream().mapToLong(Long::longValue).toArray();
+
+        segmentEndpoints = new ArrayList<>(Math.max(boundaries.length - 1, 0));
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            List<SearchEndpoint> endpoints = new ArrayList<>();
+            for (DbIdRangeSearchEndpointSelector selector : selectors) {
+                if (selector.getDbIdStart() <= boundaries[i] && boundaries[i] < selector.getDbIdEnd()
+                        && !endpoints.contains(selector.getEndpoint())) {
+                    endpoints.add(selector.getEndpoint());
+                }
+            }
+            segmentEndpoints.add(Collections.unmodifiableList(endpoints));
+        }
+    }
+
+    /**
+     * @return The endpoints of all ranges that contain the database id
+     */
+    List<SearchEndpoint> getSearchEndpoints(long dbId) {
+        int index = Arrays.binarySearch(boundaries, dbId);
+        if (index < 0) {
+            // Not a boundary itself: the segment that starts at the previous boundary
+            index = -index - 2;
+        }
+        if (index < 0 || index >= segmentEndpoints.size()) {
+            return Collections.emptyList();
+        }
+        return segmentEndpoints.get(index);
+    }
+}
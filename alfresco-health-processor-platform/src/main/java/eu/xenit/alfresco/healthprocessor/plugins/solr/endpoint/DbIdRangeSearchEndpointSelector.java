@@ -3,7 +3,9 @@ package eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint;
 import java.util.Collections;
 import java.util.Objects;
 import java.util.Set;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.ToString;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 
@@ -12,6 +14,7 @@ import org.alfresco.service.cmr.repository.NodeRef.Status;
  */
 @AllArgsConstructor
 @ToString
+@Getter(AccessLevel.PACKAGE)
 public class DbIdRangeSearchEndpointSelector implements SearchEndpointSelector {
 
     private final Long dbIdStart;
@@ -1,5 +1,9 @@
 package eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import org.alfresco.service.cmr.repository.NodeRef;
 
@@ -20,4 +24,23 @@ public interface SearchEndpointSelector {
      * @return
      */
     Set<SearchEndpoint> getSearchEndpointsForNode(NodeRef.Status nodeRef);
+
+    /**
+     * Retrieves the search endpoints which should have the nodes indexed, grouped per search endpoint.
+     * <p>
+     * Nodes that are not indexed anywhere are not present in the result.
+     *
+     * @param nodeRefs The nodes to select search endpoints for
+     * @return The nodes that should be indexed by each search endpoint
+     * @see #getSearchEndpointsForNode(NodeRef.Status)
+     */
+    default Map<SearchEndpoint, Set<NodeRef.Status>> getSearchEndpointsForNodes(Collection<NodeRef.Status> nodeRefs) {
+        Map<SearchEndpoint, Set<NodeRef.Status>> ret = new HashMap<>();
+        for (NodeRef.Status nodeRef : nodeRefs) {
+            for (SearchEndpoint searchEndpoint : getSearchEndpointsForNode(nodeRef)) {
+                ret.computeIfAbsent(searchEndpoint, k -> new HashSet<>()).add(nodeRef);
+            }
+        }
+        return ret;
+    }
 }
@@ -1,21 +1,28 @@
 package eu.xenit.alfresco.healthprocessor.plugins.solr.filter;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import lombok.AllArgsConstructor;
 import lombok.ToString;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 
 /**
  * Aggregated filter.
  * <p>
- * If any of the sub-filters indicate that the node should be ignored, the node will be ignored
+ * If any of the sub-filters indicate that the node should be ignored, the node will be ignored. Filters that only look
+ * at the node status are applied first, so nodes that they ignore never need to be loaded by the other filters.
  */
-@AllArgsConstructor
 @ToString
 public class AggregateFilter implements SolrNodeFilter {
 
     private final List<SolrNodeFilter> filters;
 
+    public AggregateFilter(List<SolrNodeFilter> filters) {
+        this.filters = new ArrayList<>(filters);
+        this.filters.sort(Comparator.comparing(SolrNodeFilter::isLoadingNodeData));
+    }
+
     @Override
     public boolean isIgnored(Status nodeRefStatus) {
         for (SolrNodeFilter filter : filters) {
@@ -25,4 +32,21 @@ public class AggregateFilter implements SolrNodeFilter {
         }
         return false;
     }
+
+    @Override
+    public List<Status> filterIgnored(Collection<Status> nodeRefStatuses) {
+        List<Status> ret = new ArrayList<>(nodeRefStatuses);
+        for (SolrNodeFilter filter : filters) {
+            if (ret.isEmpty()) {
+                break;
+            }
+            ret = filter.filterIgnored(ret);
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean isLoadingNodeData() {
+        return filters.stream().anyMatch(SolrNodeFilter::isLoadingNodeData);
+    }
 }
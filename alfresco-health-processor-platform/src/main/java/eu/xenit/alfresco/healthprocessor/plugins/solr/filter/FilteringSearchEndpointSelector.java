@@ -2,9 +2,13 @@ package eu.xenit.alfresco.healthprocessor.plugins.solr.filter;
 
 import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpoint;
 import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpointSelector;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
@@ -15,6 +19,7 @@ import org.alfresco.service.cmr.repository.NodeRef.Status;
 @Slf4j
 @AllArgsConstructor
 @ToString
+@Getter
 public class FilteringSearchEndpointSelector implements SearchEndpointSelector {
 
     private final SearchEndpointSelector solrServerEndpointSelector;
@@ -30,4 +35,11 @@ public class FilteringSearchEndpointSelector implements SearchEndpointSelector {
         }
         return solrServerEndpointSelector.getSearchEndpointsForNode(nodeRef);
     }
+
+    @Override
+    public Map<SearchEndpoint, Set<Status>> getSearchEndpointsForNodes(Collection<Status> nodeRefs) {
+        List<Status> notIgnored = filter.filterIgnored(nodeRefs);
+        log.trace("#{} of #{} nodes are ignored by a filter.", nodeRefs.size() - notIgnored.size(), nodeRefs.size());
+        return solrServerEndpointSelector.getSearchEndpointsForNodes(notIgnored);
+    }
 }
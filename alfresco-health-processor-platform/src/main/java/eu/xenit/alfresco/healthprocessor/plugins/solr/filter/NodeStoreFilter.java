@@ -1,5 +1,6 @@
 package eu.xenit.alfresco.healthprocessor.plugins.solr.filter;
 
+import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +13,7 @@ import org.alfresco.service.cmr.repository.StoreRef;
 @Slf4j
 @RequiredArgsConstructor
 @ToString
+@EqualsAndHashCode
 public class NodeStoreFilter implements SolrNodeFilter {
 
     private final StoreRef storeRef;
@@ -2,14 +2,17 @@ package eu.xenit.alfresco.healthprocessor.plugins.solr.filter;
 
 import eu.xenit.alfresco.healthprocessor.util.QNameUtil;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import lombok.AllArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.service.ServiceRegistry;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
@@ -19,7 +22,8 @@ import org.alfresco.service.namespace.QName;
 /**
  * Filter that ignores nodes that have a certain properties with a certain value.
  * <p>
- * Any property value that is present will result in the node being ignored
+ * Any property value that is present will result in the node being ignored. Only the filtered properties are read,
+ * and when a batch of nodes is filtered, the nodes are loaded into the cache with one bulk query first.
  */
 @Slf4j
 @AllArgsConstructor
@@ -28,12 +32,26 @@ public class PropertySolrNodeFilter implements SolrNodeFilter {
 
     @ToString.Exclude
     private final NodeService nodeService;
+    // Loads the nodes of a batch in bulk, or null to load every node on its own
+    @Nullable
+    @ToString.Exclude
+    private final NodeDAO nodeDAO;
     private final Map<QName, Serializable> filteredProperties;
 
+    public PropertySolrNodeFilter(NodeService nodeService, Map<QName, Serializable> filteredProperties) {
+        this(nodeService, null, filteredProperties);
+    }
+
     public PropertySolrNodeFilter(ServiceRegistry serviceRegistry,
             Map<String, Serializable> filteredProperties) {
+        this(serviceRegistry, null, filteredProperties);
+    }
+
+    public PropertySolrNodeFilter(ServiceRegistry serviceRegistry, @Nullable NodeDAO nodeDAO,
+            Map<String, Serializable> filteredProperties) {
         this(
                 serviceRegistry.getNodeService(),
+                nodeDAO,
                 filteredProperties.entrySet().stream()
                         .collect(Collectors.toMap(
                                 e -> QNameUtil.toQName(e.getKey(), serviceRegistry.getNamespaceService()),
@@ -41,6 +59,26 @@ public class PropertySolrNodeFilter implements SolrNodeFilter {
         );
     }
 
+    @Override
+    public List<Status> filterIgnored(Collection<Status> nodeRefStatuses) {
+        if (nodeDAO != null) {
+            List<Long> nodeIds = nodeRefStatuses.stream()
+                    .filter(nodeRefStatus -> !nodeRefStatus.isDeleted())
+                    .map(Status::getDbId)
+                    .collect(Collectors.toList());
+            if (!nodeIds.isEmpty()) {
+                // Loads the nodes with their properties into the cache, which isIgnored() reads from
+                nodeDAO.cacheNodesById(nodeIds);
+            }
+        }
+        return SolrNodeFilter.super.filterIgnored(nodeRefStatuses);
+    }
+
+    @Override
+    public boolean isLoadingNodeData() {
+        return true;
+    }
+
     @Override
     public boolean isIgnored(Status nodeRefStatus) {
         if (nodeRefStatus.isDeleted()) {
@@ -48,11 +86,10 @@ public class PropertySolrNodeFilter implements SolrNodeFilter {
             return false;
         }
         try {
-            Map<QName, Serializable> properties = nodeService.getProperties(nodeRefStatus.getNodeRef());
-
             for (Entry<QName, Serializable> filteredProperty : filteredProperties.entrySet()) {
-                if (properties.containsKey(filteredProperty.getKey())) {
-                    Serializable value = properties.get(filteredProperty.getKey());
+                // Only the filtered properties are converted, instead of all properties of the node
+                Serializable value = nodeService.getProperty(nodeRefStatus.getNodeRef(), filteredProperty.getKey());
+                if (value != null) {
                     if (value instanceof List) {
                         List list = (List) value;
                         for (Object val : list) {
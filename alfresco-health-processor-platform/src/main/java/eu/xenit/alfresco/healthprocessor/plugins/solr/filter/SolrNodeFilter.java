@@ -1,5 +1,8 @@
 package eu.xenit.alfresco.healthprocessor.plugins.solr.filter;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 
 /**
@@ -8,4 +11,28 @@ import org.alfresco.service.cmr.repository.NodeRef.Status;
 public interface SolrNodeFilter {
 
     boolean isIgnored(Status nodeRefStatus);
+
+    /**
+     * Filters a batch of nodes at once, so data that is needed to filter the nodes can be loaded for the whole batch.
+     *
+     * @param nodeRefStatuses The nodes to filter
+     * @return The nodes that are not ignored, in their original order
+     */
+    default List<Status> filterIgnored(Collection<Status> nodeRefStatuses) {
+        List<Status> ret = new ArrayList<>(nodeRefStatuses.size());
+        for (Status nodeRefStatus : nodeRefStatuses) {
+            if (!isIgnored(nodeRefStatus)) {
+                ret.add(nodeRefStatus);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return true if the filter loads data of the node, false if it only looks at the {@link Status}. Filters that
+     * load data are more expensive, and are applied last by an {@link AggregateFilter}.
+     */
+    default boolean isLoadingNodeData() {
+        return false;
+    }
 }
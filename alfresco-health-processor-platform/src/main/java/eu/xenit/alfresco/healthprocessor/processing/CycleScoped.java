@@ -0,0 +1,22 @@
+package eu.xenit.alfresco.healthprocessor.processing;
+
+/**
+ * Implemented by plugins that keep state for the duration of a single cycle, e.g. a cache that is only valid while the
+ * cycle runs. The {@link ProcessorService} notifies them when a cycle starts and when it ends, whether it succeeded or
+ * not.
+ */
+public interface CycleScoped {
+
+    /**
+     * Invoked before the first batch of a cycle is processed. Nothing from a previous cycle should be carried over.
+     */
+    void onCycleStart();
+
+    /**
+     * Invoked once all batches of a cycle have been processed, or the cycle failed. Resources can be released, state
+     * that is exposed for monitoring can be kept until the next cycle starts.
+     */
+    default void onCycleEnd() {
+
+    }
+}
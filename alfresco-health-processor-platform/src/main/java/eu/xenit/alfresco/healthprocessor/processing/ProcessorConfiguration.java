@@ -2,6 +2,7 @@ package eu.xenit.alfresco.healthprocessor.processing;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.With;
 
 @AllArgsConstructor
 @Getter
@@ -12,4 +13,27 @@ public class ProcessorConfiguration {
     private final double maxBatchesPerSecond;
     private final boolean readOnly;
     private final String runAsUser;
+    @With
+    private final int prefetchBatches;
+    @With
+    private final int workerThreads;
+    @With
+    private final boolean concurrentPlugins;
+
+    public ProcessorConfiguration(boolean singleTenant, int nodeBatchSize, double maxBatchesPerSecond,
+            boolean readOnly, String runAsUser) {
+        this(singleTenant, nodeBatchSize, maxBatchesPerSecond, readOnly, runAsUser, 0, 1, false);
+    }
+
+    /**
+     * Prefetching only applies to a single worker. With multiple workers, the next batch is already fetched while the
+     * workers process earlier batches, and {@link #getPrefetchBatches()} is not used.
+     */
+    public boolean isPrefetchEnabled() {
+        return prefetchBatches > 0 && !isConcurrent();
+    }
+
+    public boolean isConcurrent() {
+        return workerThreads > 1;
+    }
 }
@@ -3,6 +3,11 @@ package eu.xenit.alfresco.healthprocessor.processing;
 import com.google.common.util.concurrent.RateLimiter;
 import eu.xenit.alfresco.healthprocessor.fixer.NodeFixService;
 import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeStatusCache;
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.plugins.NoOpHealthProcessorPlugin;
+import eu.xenit.alfresco.healthprocessor.plugins.OrphanedContentHealthProcessorPlugin;
 import eu.xenit.alfresco.healthprocessor.plugins.api.HealthProcessorPlugin;
 import eu.xenit.alfresco.healthprocessor.reporter.ReportsService;
 import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthReport;
@@ -14,16 +19,35 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.util.ParameterCheck;
+import org.springframework.beans.factory.InitializingBean;
 
 @RequiredArgsConstructor
 @Slf4j
-public class ProcessorService {
+public class ProcessorService implements InitializingBean {
+
+    private static final String PREFETCH_THREAD_NAME = "HealthProcessor-Prefetch";
+    private static final String WORKER_THREAD_NAME = "HealthProcessor-Worker";
+    private static final String PLUGIN_THREAD_NAME = "HealthProcessor-Plugin";
 
     private final ProcessorConfiguration configuration;
     private final IndexingStrategy indexingStrategy;
@@ -32,11 +56,49 @@ public class ProcessorService {
     private final ReportsService reportsService;
     private final StateCache stateCache;
     private final NodeFixService fixService;
+    private final NodeStatusCache nodeStatusCache;
 
     @SuppressWarnings("UnstableApiUsage")
     @Nullable
     private RateLimiter rateLimiter;
 
+    @Nullable
+    private ExecutorService prefetchExecutor;
+
+    @Nullable
+    private ExecutorService workerExecutor;
+
+    @Nullable
+    private ExecutorService pluginExecutor;
+
+    private final Object reportingLock = new Object();
+
+    @Override
+    public void afterPropertiesSet() {
+        validatePlugins();
+    }
+
+    /**
+     * The {@link ContentStoreIndexingStrategy} hands out files of the content store instead of nodes. Plugins that
+     * validate nodes can not process those, so the configuration is rejected at startup instead of failing every batch.
+     */
+    private void validatePlugins() {
+        if (!(indexingStrategy instanceof ContentStoreIndexingStrategy) || plugins == null) {
+            return;
+        }
+        List<String> unsupportedPlugins = plugins.stream()
+                .filter(HealthProcessorPlugin::isEnabled)
+                .filter(plugin -> !(plugin instanceof OrphanedContentHealthProcessorPlugin)
+                        && !(plugin instanceof NoOpHealthProcessorPlugin))
+                .map(plugin -> plugin.getClass().getSimpleName())
+                .collect(Collectors.toList());
+        if (!unsupportedPlugins.isEmpty()) {
+            throw new IllegalStateException("Invalid configuration, the content-store indexing strategy only supports "
+                    + "the orphaned-content and noop plugins, but these plugins are enabled as well: "
+                    + unsupportedPlugins);
+        }
+    }
+
     public void execute() {
         if (hasNoEnabledPlugins()) {
             log.warn("Health-Processor scheduled but not a single enabled plugin found.");
@@ -49,8 +111,15 @@ public class ProcessorService {
             transactionHelper.inNewTransaction(this::onStop, false);
         } catch (Exception e) {
             log.error("Health-Processor: FAILED", e);
+            // Other workers may still be processing and reporting, and use the indexing strategy. They are stopped
+            // before the error is handled, so the reporters and the indexing strategy are not used at the same time.
+            shutdownExecutors();
             transactionHelper.inNewTransaction(() -> onError(e), false);
             throw e;
+        } finally {
+            shutdownExecutors();
+            nodeStatusCache.clear();
+            cycleScopedPlugins().forEach(CycleScoped::onCycleEnd);
         }
     }
 
@@ -60,48 +129,181 @@ public class ProcessorService {
 
         stateCache.setState(ProcessorState.ACTIVE);
 
+        if (configuration.isConcurrent()) {
+            indexingStrategy.enableBatchAcknowledgement();
+        }
         indexingStrategy.onStart();
         reportsService.onStart();
+        cycleScopedPlugins().forEach(CycleScoped::onCycleStart);
         initializeRateLimiter();
+        initializeExecutors();
     }
 
     private void onError(Exception e) {
-        reportsService.onException(e);
+        indexingStrategy.onException(e);
+        // Workers that did not stop in time may still report
+        synchronized (reportingLock) {
+            reportsService.onException(e);
+        }
         stateCache.setState(ProcessorState.FAILED);
     }
 
     private void onStop() {
+        boolean cycleDone = indexingStrategy.isCycleDone();
         indexingStrategy.onStop();
-        reportsService.onCycleDone();
+        if (cycleDone) {
+            reportsService.onCycleDone();
+        } else {
+            log.info("Health-Processor: cycle is completed by another node");
+        }
         stateCache.setState(ProcessorState.IDLE);
 
         log.info("Health-Processor: DONE");
     }
 
     private void executeInternal() {
+        if (workerExecutor != null) {
+            executeInternalConcurrently(workerExecutor);
+            return;
+        }
         Set<NodeRef> nodesToProcess = getNextNodesInTransaction();
         while (!nodesToProcess.isEmpty()) {
             updateCycleProgress();
-            this.processNodeBatch(nodesToProcess);
+            Future<?> prefetch = prefetchNextNodes();
+            try {
+                this.processNodeBatch(nodesToProcess);
+            } catch (RuntimeException e) {
+                // The prefetch changes the queue of the indexing strategy, which is notified of the failure next. The
+                // prefetch executor is drained before that happens.
+                prefetch.cancel(true);
+                throw e;
+            }
+            await(prefetch);
             nodesToProcess = getNextNodesInTransaction();
         }
         updateCycleProgress();
     }
 
+    private void executeInternalConcurrently(ExecutorService executor) {
+        CompletionService<NodeBatch> completionService = new ExecutorCompletionService<>(executor);
+        int batchesInProgress = 0;
+
+        NodeBatch nodesToProcess = getNextNodeBatchInTransaction();
+        while (!nodesToProcess.isEmpty()) {
+            updateCycleProgress();
+            NodeBatch batch = nodesToProcess;
+            completionService.submit(withRunAsUser(() -> {
+                this.processNodeBatch(batch.getNodeRefs());
+                return batch;
+            }));
+            batchesInProgress++;
+
+            // Never request more batches from the indexing strategy than there are workers to process them
+            Future<NodeBatch> processed;
+            while ((processed = completionService.poll()) != null
+                    || batchesInProgress >= configuration.getWorkerThreads()) {
+                acknowledgeProcessedBatch(processed != null ? processed : take(completionService));
+                batchesInProgress--;
+            }
+            nodesToProcess = getNextNodeBatchInTransaction();
+        }
+        while (batchesInProgress > 0) {
+            acknowledgeProcessedBatch(take(completionService));
+            batchesInProgress--;
+        }
+        updateCycleProgress();
+    }
+
+    private void acknowledgeProcessedBatch(Future<NodeBatch> processed) {
+        NodeBatch batch = await(processed);
+        transactionHelper.inNewTransaction(() -> indexingStrategy.onBatchProcessed(batch), false);
+    }
+
     private Set<NodeRef> getNextNodesInTransaction() {
-        return transactionHelper.inNewTransaction(
-                () -> indexingStrategy.getNextNodeIds(configuration.getNodeBatchSize()), false);
+        return getNextNodeBatchInTransaction().getNodeRefs();
+    }
+
+    private NodeBatch getNextNodeBatchInTransaction() {
+        NodeBatch batch = transactionHelper.inNewTransaction(
+                () -> indexingStrategy.getNextNodeBatch(configuration.getNodeBatchSize()), false);
+        // Plugins can look up the status of the nodes there, until the batch has been processed
+        nodeStatusCache.putAll(batch);
+        return batch;
+    }
+
+    private Future<?> prefetchNextNodes() {
+        if (prefetchExecutor == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int amount = configuration.getNodeBatchSize() * configuration.getPrefetchBatches();
+        return prefetchExecutor.submit(withRunAsUser(() -> {
+            log.debug("Prefetching up to #{} nodes", amount);
+            transactionHelper.inNewTransaction(() -> indexingStrategy.prefetch(amount), true);
+            return null;
+        }));
+    }
+
+    private static <T> Callable<T> withRunAsUser(Supplier<T> work) {
+        // Background threads do not inherit the security context of the thread running the processor
+        String runAsUser = AuthenticationUtil.getRunAsUser();
+        if (runAsUser == null) {
+            return work::get;
+        }
+        return () -> AuthenticationUtil.runAs(work::get, runAsUser);
+    }
+
+    private static <T> Future<T> take(CompletionService<T> completionService) {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a batch of nodes to be processed", e);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a background task", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Background task failed", e.getCause());
+        }
     }
 
     private void processNodeBatch(Set<NodeRef> nodesToProcess) {
         ParameterCheck.mandatory("nodesToProcess", nodesToProcess);
 
         Set<NodeRef> copy = Collections.unmodifiableSet(nodesToProcess);
-        for (HealthProcessorPlugin plugin : plugins) {
-            this.processNodeBatchRateLimited(copy, plugin);
+        try {
+            if (pluginExecutor != null) {
+                this.processNodeBatchConcurrently(copy, pluginExecutor);
+                return;
+            }
+            for (HealthProcessorPlugin plugin : plugins) {
+                this.processNodeBatchRateLimited(copy, plugin);
+            }
+        } finally {
+            nodeStatusCache.removeAll(nodesToProcess);
         }
     }
 
+    private void processNodeBatchConcurrently(Set<NodeRef> nodesToProcessCopy, ExecutorService executor) {
+        // Plugins do not depend on each other: each of them processes, fixes and reports the same batch on its own
+        List<Future<Object>> pluginsInProgress = plugins.stream()
+                .filter(HealthProcessorPlugin::isEnabled)
+                .map(plugin -> executor.submit(withRunAsUser(() -> {
+                    this.processNodeBatchRateLimited(nodesToProcessCopy, plugin);
+                    return null;
+                })))
+                .collect(Collectors.toList());
+        pluginsInProgress.forEach(ProcessorService::await);
+    }
+
     private void processNodeBatchRateLimited(Set<NodeRef> nodesToProcessCopy, HealthProcessorPlugin plugin) {
         if (rateLimiter != null) {
             log.debug("Trying to acquire rateLimiter...");
@@ -127,12 +329,21 @@ public class ProcessorService {
 
         Set<NodeHealthReport> healthAfterFixing = fixService.fixUnhealthyNodes(plugin.getClass(), reports);
 
-        transactionHelper.inNewTransaction(() -> reportsService.processReports(plugin.getClass(), healthAfterFixing),
-                false);
+        // The only lock on reporting. Reporters are not required to be thread-safe and the reports store updates its
+        // stats read-modify-write, so when batches are processed concurrently, only one of them may report at a time,
+        // until it is committed. Processing and fixing, which take most of the time, stay outside of the lock.
+        synchronized (reportingLock) {
+            transactionHelper.inNewTransaction(
+                    () -> reportsService.processReports(plugin.getClass(), healthAfterFixing), false);
+        }
     }
 
     private void updateCycleProgress() {
-        transactionHelper.inNewTransaction(() -> reportsService.onProgress(indexingStrategy.getCycleProgress()), false);
+        // Reporters are also offered the progress while workers report
+        synchronized (reportingLock) {
+            transactionHelper.inNewTransaction(() -> reportsService.onProgress(indexingStrategy.getCycleProgress()),
+                    false);
+        }
     }
 
     private Set<NodeHealthReport> validateNodeReports(Set<NodeRef> nodesToProcess, Set<NodeHealthReport> reports, HealthProcessorPlugin plugin) {
@@ -196,12 +407,70 @@ public class ProcessorService {
         return plugins.stream().noneMatch(HealthProcessorPlugin::isEnabled);
     }
 
+    private Stream<CycleScoped> cycleScopedPlugins() {
+        return plugins.stream()
+                .filter(CycleScoped.class::isInstance)
+                .map(CycleScoped.class::cast);
+    }
+
     private void initializeRateLimiter() {
         // noinspection UnstableApiUsage
         this.rateLimiter = configuration.getMaxBatchesPerSecond() > 0 ?
                 RateLimiter.create(configuration.getMaxBatchesPerSecond()) : null;
     }
 
+    private void initializeExecutors() {
+        shutdownExecutors();
+        if (configuration.getPrefetchBatches() > 0 && configuration.isConcurrent()) {
+            // The workers replace prefetching: the next batch is fetched while the workers process earlier batches
+            log.info("Prefetching is not used with #{} worker threads", configuration.getWorkerThreads());
+        }
+        if (configuration.isPrefetchEnabled()) {
+            this.prefetchExecutor = Executors.newSingleThreadExecutor(daemonThreadFactory(PREFETCH_THREAD_NAME));
+        }
+        if (configuration.isConcurrent()) {
+            this.workerExecutor = Executors.newFixedThreadPool(configuration.getWorkerThreads(),
+                    daemonThreadFactory(WORKER_THREAD_NAME));
+        }
+        if (configuration.isConcurrentPlugins()) {
+            int enabledPlugins = (int) plugins.stream().filter(HealthProcessorPlugin::isEnabled).count();
+            this.pluginExecutor = Executors.newFixedThreadPool(
+                    enabledPlugins * Math.max(1, configuration.getWorkerThreads()),
+                    daemonThreadFactory(PLUGIN_THREAD_NAME));
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void shutdownExecutors() {
+        this.prefetchExecutor = shutdown(prefetchExecutor);
+        this.workerExecutor = shutdown(workerExecutor);
+        this.pluginExecutor = shutdown(pluginExecutor);
+    }
+
+    @Nullable
+    private static ExecutorService shutdown(@Nullable ExecutorService executor) {
+        if (executor == null) {
+            return null;
+        }
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Background tasks of the Health-Processor did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
     public ProcessorState getState() {
         return stateCache.getStateOrDefault();
     }
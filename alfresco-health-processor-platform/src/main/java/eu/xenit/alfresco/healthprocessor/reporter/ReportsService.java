@@ -26,6 +26,10 @@ public class ReportsService {
         forEachEnabledReporter(HealthReporter::onStart);
     }
 
+    /**
+     * Offers reports to all enabled reporters. Reporters are not required to be thread-safe: when batches are processed
+     * by multiple workers, the caller invokes this method one at a time.
+     */
     public void processReports(Class<? extends HealthProcessorPlugin> pluginClass, Set<NodeHealthReport> reports) {
         forEachEnabledReporter(reporter -> reporter.processReports(pluginClass, reports));
     }
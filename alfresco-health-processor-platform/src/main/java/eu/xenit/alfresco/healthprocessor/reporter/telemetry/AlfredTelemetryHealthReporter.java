@@ -20,9 +20,12 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import javax.annotation.Nonnull;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
+import org.apache.http.pool.PoolStats;
 
 @EqualsAndHashCode(callSuper = true)
 public class AlfredTelemetryHealthReporter extends SingleReportHealthReporter {
@@ -34,6 +37,9 @@ public class AlfredTelemetryHealthReporter extends SingleReportHealthReporter {
 
     private final AtomicReference<Float> progress = new AtomicReference<>(0f);
 
+    // Gauges only keep a weak reference to the object they measure
+    private final Map<String, Supplier<PoolStats>> connectionPools = new HashMap<>();
+
     private final MeterRegistry registry;
 
     public AlfredTelemetryHealthReporter() {
@@ -53,6 +59,26 @@ public class AlfredTelemetryHealthReporter extends SingleReportHealthReporter {
                 .register(registry);
     }
 
+    /**
+     * Exposes the statistics of an HTTP connection pool as gauges, tagged with the name of the pool
+     */
+    public void registerConnectionPool(@Nonnull String pool, @Nonnull Supplier<PoolStats> poolStats) {
+        connectionPools.put(pool, poolStats);
+        registerConnectionPoolGauge(pool, "leased", poolStats, PoolStats::getLeased);
+        registerConnectionPoolGauge(pool, "available", poolStats, PoolStats::getAvailable);
+        registerConnectionPoolGauge(pool, "pending", poolStats, PoolStats::getPending);
+        registerConnectionPoolGauge(pool, "max", poolStats, PoolStats::getMax);
+    }
+
+    private void registerConnectionPoolGauge(String pool, String state, Supplier<PoolStats> poolStats,
+            ToIntFunction<PoolStats> value) {
+        Gauge.builder(Key.HTTP_CONNECTIONS, poolStats, stats -> value.applyAsInt(stats.get()))
+                .description(Description.HTTP_CONNECTIONS)
+                .tag(Tag.POOL, pool)
+                .tag(Tag.STATE, state)
+                .register(registry);
+    }
+
     @Override
     public void onStart() {
         isActive.set(true);
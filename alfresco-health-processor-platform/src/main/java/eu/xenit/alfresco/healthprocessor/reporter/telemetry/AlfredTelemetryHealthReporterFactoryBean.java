@@ -1,6 +1,8 @@
 package eu.xenit.alfresco.healthprocessor.reporter.telemetry;
 
+import eu.xenit.alfresco.healthprocessor.plugins.solr.SolrRequestExecutor;
 import eu.xenit.alfresco.healthprocessor.reporter.api.HealthReporter;
+import javax.annotation.Nullable;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.config.AbstractFactoryBean;
@@ -10,6 +12,7 @@ import org.springframework.util.ClassUtils;
 public class AlfredTelemetryHealthReporterFactoryBean extends AbstractFactoryBean<HealthReporter> {
 
     private static final String CLASS_MICROMETER_METRICS = "io.micrometer.core.instrument.Metrics";
+    static final String SOLR_CONNECTION_POOL = "solr";
 
     private final boolean isMicrometerPresent;
 
@@ -25,6 +28,10 @@ public class AlfredTelemetryHealthReporterFactoryBean extends AbstractFactoryBea
     @Setter
     private boolean enabled;
 
+    @Setter
+    @Nullable
+    private SolrRequestExecutor solrRequestExecutor;
+
     @Override
     public Class<?> getObjectType() {
         return HealthReporter.class;
@@ -35,6 +42,9 @@ public class AlfredTelemetryHealthReporterFactoryBean extends AbstractFactoryBea
         if (isMicrometerPresent) {
             AlfredTelemetryHealthReporter ret = new AlfredTelemetryHealthReporter();
             ret.setEnabled(enabled);
+            if (solrRequestExecutor != null && solrRequestExecutor.getConnectionPoolStats() != null) {
+                ret.registerConnectionPool(SOLR_CONNECTION_POOL, solrRequestExecutor::getConnectionPoolStats);
+            }
             return ret;
         }
 
@@ -15,6 +15,7 @@ public final class Constants {
         public static final String PROGRESS = BASE + ".progress";
         public static final String PLUGINS = BASE + ".plugins";
         public static final String REPORTS = BASE + ".reports";
+        public static final String HTTP_CONNECTIONS = BASE + ".http.connections";
 
     }
 
@@ -23,6 +24,8 @@ public final class Constants {
 
         public static final String PLUGIN = "plugin";
         public static final String STATUS = "status";
+        public static final String POOL = "pool";
+        public static final String STATE = "state";
 
     }
 
@@ -31,6 +34,7 @@ public final class Constants {
 
         public static final String PLUGINS = "Number of registered, active HealthProcessorPlugin implementations";
         public static final String PROGRESS = "Completion percentage of the current cycle (0.0-1.0)";
+        public static final String HTTP_CONNECTIONS = "Number of connections in an HTTP connection pool, by state";
     }
 
 }
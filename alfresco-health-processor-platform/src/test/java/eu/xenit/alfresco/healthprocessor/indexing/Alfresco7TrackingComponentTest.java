@@ -2,6 +2,7 @@ package eu.xenit.alfresco.healthprocessor.indexing;
 
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
@@ -13,11 +14,16 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent.NodeInfo;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import org.alfresco.repo.domain.node.Node;
+import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.domain.node.TransactionEntity;
+import org.alfresco.repo.domain.qname.QNameDAO;
 import org.alfresco.repo.search.SearchTrackingComponent;
 import org.alfresco.repo.search.SearchTrackingComponent.NodeQueryCallback;
+import org.alfresco.repo.solr.NodeParameters;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.StoreRef;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,12 +37,16 @@ class Alfresco7TrackingComponentTest {
 
     @Mock
     private SearchTrackingComponent searchTrackingComponent;
+    @Mock
+    private NodeDAO nodeDAO;
+    @Mock
+    private QNameDAO qnameDAO;
 
     private TrackingComponent trackingComponent;
 
     @BeforeEach
     void setup() {
-        trackingComponent = new Alfresco7TrackingComponent(searchTrackingComponent);
+        trackingComponent = new Alfresco7TrackingComponent(searchTrackingComponent, nodeDAO, qnameDAO);
     }
 
     @Test
@@ -69,6 +79,99 @@ class Alfresco7TrackingComponentTest {
         verify(searchTrackingComponent, never()).getNodes(any(), any());
     }
 
+    @Test
+    void getNodesForTxnRange() {
+        doAnswer(invocation -> {
+            NodeParameters parameters = invocation.getArgument(0);
+            assertThat(parameters.getFromTxnId(), is(equalTo(1L)));
+            assertThat(parameters.getToTxnId(), is(equalTo(2L)));
+
+            NodeQueryCallback cb = invocation.getArgument(1);
+            cb.handleNode(nodeEntity(1L, 101L, "abc-123"));
+            cb.handleNode(nodeEntity(2L, 102L, "xyz-987"));
+
+            return null;
+        }).when(searchTrackingComponent).getNodes(any(), any());
+
+        List<NodeInfo> nodes = new ArrayList<>();
+        trackingComponent.getNodesForTxnRange(1L, 3L, nodes::add);
+
+        assertThat(nodes, containsInAnyOrder(
+                new NodeInfo(1L, 101L, new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "abc-123")),
+                new NodeInfo(2L, 102L, new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "xyz-987"))));
+    }
+
+    @Test
+    void getNodesForTxnRange_sinkAppliesBackPressure() {
+        doAnswer(invocation -> {
+            NodeQueryCallback cb = invocation.getArgument(1);
+            assertThat(cb.handleNode(nodeEntity(1L, 101L, "abc-123")), is(true));
+            assertThat(cb.handleNode(nodeEntity(2L, 102L, "xyz-987")), is(false));
+            return null;
+        }).when(searchTrackingComponent).getNodes(any(), any());
+
+        List<NodeInfo> nodes = new ArrayList<>();
+        trackingComponent.getNodesForTxnRange(1L, 3L, nodeInfo -> nodeInfo.getTxnId() == 1L && nodes.add(nodeInfo));
+
+        assertThat(nodes, contains(
+                new NodeInfo(1L, 101L, new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "abc-123"))));
+    }
+
+    @Test
+    void getNodesForTxnRange_deletedNode() {
+        doAnswer(invocation -> {
+            NodeQueryCallback cb = invocation.getArgument(1);
+            Node deleted = nodeEntity(1L, 101L, "abc-123");
+            when(deleted.getDeleted(qnameDAO)).thenReturn(true);
+            cb.handleNode(deleted);
+            return null;
+        }).when(searchTrackingComponent).getNodes(any(), any());
+
+        List<NodeInfo> nodes = new ArrayList<>();
+        trackingComponent.getNodesForTxnRange(1L, 2L, nodes::add);
+
+        assertThat(nodes, contains(
+                new NodeInfo(1L, 101L, new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "abc-123"), true)));
+        assertThat(nodes.get(0).toStatus().isDeleted(), is(true));
+        assertThat(nodes.get(0).toStatus().getDbTxnId(), is(equalTo(1L)));
+        assertThat(nodes.get(0).toStatus().getDbId(), is(equalTo(101L)));
+    }
+
+    @Test
+    void getMaxNodeId() {
+        when(nodeDAO.getMaxNodeId()).thenReturn(202L);
+
+        assertThat(trackingComponent.getMaxNodeId(), is(equalTo(202L)));
+    }
+
+    @Test
+    void getNodesForNodeIdRange() {
+        doAnswer(invocation -> {
+            NodeParameters parameters = invocation.getArgument(0);
+            assertThat(parameters.getFromNodeId(), is(equalTo(101L)));
+            assertThat(parameters.getToNodeId(), is(equalTo(102L)));
+
+            NodeQueryCallback cb = invocation.getArgument(1);
+            cb.handleNode(nodeEntity(1L, 101L, "abc-123"));
+            cb.handleNode(nodeEntity(2L, 102L, "xyz-987"));
+
+            return null;
+        }).when(searchTrackingComponent).getNodes(any(), any());
+
+        List<NodeInfo> nodes = new ArrayList<>();
+        trackingComponent.getNodesForNodeIdRange(101L, 103L, nodes::add);
+
+        assertThat(nodes, contains(
+                new NodeInfo(1L, 101L, new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "abc-123")),
+                new NodeInfo(2L, 102L, new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "xyz-987"))));
+    }
+
+    @Test
+    void getNodesForEmptyTxnRange() {
+        trackingComponent.getNodesForTxnRange(5L, 5L, nodeInfo -> true);
+        verify(searchTrackingComponent, never()).getNodes(any(), any());
+    }
+
     private Node nodeEntity(long txnId, long nodeId, String uuid) {
         Node ret = mock(Node.class);
         TransactionEntity transactionEntity = mock(TransactionEntity.class);
@@ -0,0 +1,82 @@
+package eu.xenit.alfresco.healthprocessor.indexing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchProgressTrackerTest {
+
+    private List<Long> persisted;
+    private BatchProgressTracker<Long> tracker;
+
+    @BeforeEach
+    void setup() {
+        persisted = new ArrayList<>();
+        tracker = new BatchProgressTracker<>(persisted::add);
+    }
+
+    @Test
+    void withoutAcknowledgement_everyBatchIsPersisted() {
+        tracker.onBatchHandedOut(batch(), 1L);
+        tracker.onBatchHandedOut(batch(), 4L);
+
+        assertThat(persisted, contains(1L, 4L));
+        assertThat(tracker.size(), is(0));
+    }
+
+    @Test
+    void withAcknowledgement_progressFollowsOldestBatchInProgress() {
+        tracker.enableAcknowledgement();
+        NodeBatch first = batch();
+        NodeBatch second = batch();
+        NodeBatch third = batch();
+        tracker.onBatchHandedOut(first, 1L);
+        tracker.onBatchHandedOut(second, 4L);
+        tracker.onBatchHandedOut(third, 7L);
+        assertThat(persisted, contains(1L));
+
+        tracker.onBatchProcessed(second);
+        assertThat(persisted, contains(1L));
+
+        tracker.onBatchProcessed(first);
+        assertThat(persisted, contains(1L, 7L));
+
+        tracker.onBatchProcessed(third);
+        assertThat(persisted, contains(1L, 7L));
+        assertThat(tracker.size(), is(0));
+    }
+
+    @Test
+    void unknownBatchIsIgnored() {
+        tracker.enableAcknowledgement();
+        NodeBatch first = batch();
+        tracker.onBatchHandedOut(first, 1L);
+        tracker.onBatchHandedOut(batch(), 4L);
+
+        tracker.onBatchProcessed(batch());
+        assertThat(tracker.size(), is(2));
+        assertThat(persisted, contains(1L));
+    }
+
+    @Test
+    void reset_disablesAcknowledgement() {
+        tracker.enableAcknowledgement();
+        tracker.onBatchHandedOut(batch(), 1L);
+        tracker.reset();
+
+        assertThat(tracker.size(), is(0));
+        tracker.onBatchHandedOut(batch(), 4L);
+        assertThat(persisted, contains(1L, 4L));
+    }
+
+    private static NodeBatch batch() {
+        return new NodeBatch(Collections.singleton(TestNodeRefs.REF));
+    }
+}
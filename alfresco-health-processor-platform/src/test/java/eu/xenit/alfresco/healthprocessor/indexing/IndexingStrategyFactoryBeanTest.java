@@ -5,12 +5,22 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.distributed.DistributedTxnIdIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.distributed.DistributedTxnIdIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.incremental.IncrementalTxnIdIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.incremental.IncrementalTxnIdIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.indexing.lasttxns.LastTxnsBasedIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.indexing.lasttxns.LastTxnsIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.nodeid.NodeIdBasedIndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.nodeid.NodeIdIndexingConfiguration;
 import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdBasedIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.indexing.txnid.TxnIdIndexingConfiguration;
 import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.AssertTransactionHelper;
 import eu.xenit.alfresco.healthprocessor.util.InMemoryAttributeStore;
+import org.alfresco.repo.lock.JobLockService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -21,6 +31,8 @@ public class IndexingStrategyFactoryBeanTest {
 
     @Mock
     private TrackingComponent trackingComponent;
+    @Mock
+    private JobLockService jobLockService;
     private AttributeStore attributeStore = new InMemoryAttributeStore();
 
     @Test
@@ -49,11 +61,44 @@ public class IndexingStrategyFactoryBeanTest {
         );
     }
 
+    @Test
+    void createInstanceForDistributedTxnId() {
+        assertThat(
+                factoryBean(new DistributedTxnIdIndexingConfiguration(1, 1, 1, 1, 1000)).createInstance(),
+                is(instanceOf(DistributedTxnIdIndexingStrategy.class))
+        );
+    }
+
+    @Test
+    void createInstanceForNodeId() {
+        assertThat(
+                factoryBean(new NodeIdIndexingConfiguration(1, 1, 1)).createInstance(),
+                is(instanceOf(NodeIdBasedIndexingStrategy.class))
+        );
+    }
+
+    @Test
+    void createInstanceForIncrementalTxnId() {
+        assertThat(
+                factoryBean(new IncrementalTxnIdIndexingConfiguration(1, 1, 0)).createInstance(),
+                is(instanceOf(IncrementalTxnIdIndexingStrategy.class))
+        );
+    }
+
+    @Test
+    void createInstanceForContentStore() {
+        assertThat(
+                factoryBean(new ContentStoreIndexingConfiguration("/contentstore", "store", 0)).createInstance(),
+                is(instanceOf(ContentStoreIndexingStrategy.class))
+        );
+    }
+
     private IndexingStrategyFactoryBean factoryBean() {
         return factoryBean(IndexingConfigUtil.defaultConfig());
     }
 
     private IndexingStrategyFactoryBean factoryBean(IndexingConfiguration configuration) {
-        return new IndexingStrategyFactoryBean(configuration, trackingComponent, attributeStore);
+        return new IndexingStrategyFactoryBean(configuration, trackingComponent, attributeStore, jobLockService,
+                new AssertTransactionHelper());
     }
 }
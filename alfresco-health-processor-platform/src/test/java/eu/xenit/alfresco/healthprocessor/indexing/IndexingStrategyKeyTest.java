@@ -11,6 +11,10 @@ class IndexingStrategyKeyTest {
     void fromKey() {
         assertEquals(IndexingStrategyKey.LAST_TXNS, IndexingStrategyKey.fromKey("last-txns"));
         assertEquals(IndexingStrategyKey.TXNID, IndexingStrategyKey.fromKey("txn-id"));
+        assertEquals(IndexingStrategyKey.DISTRIBUTED_TXNID, IndexingStrategyKey.fromKey("distributed-txn-id"));
+        assertEquals(IndexingStrategyKey.NODE_ID, IndexingStrategyKey.fromKey("node-id"));
+        assertEquals(IndexingStrategyKey.INCREMENTAL_TXNID, IndexingStrategyKey.fromKey("incremental-txn-id"));
+        assertEquals(IndexingStrategyKey.CONTENT_STORE, IndexingStrategyKey.fromKey("content-store"));
     }
 
     @Test
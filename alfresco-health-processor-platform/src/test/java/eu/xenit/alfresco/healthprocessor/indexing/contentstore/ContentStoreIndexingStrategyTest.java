@@ -0,0 +1,150 @@
+package eu.xenit.alfresco.healthprocessor.indexing.contentstore;
+
+import static eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingStrategy.ATTR_KEY_LAST_PROCESSED_DIRECTORY;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.InMemoryAttributeStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContentStoreIndexingStrategyTest {
+
+    @TempDir
+    Path contentStore;
+
+    private AttributeStore attributeStore;
+
+    @BeforeEach
+    void setup() throws IOException {
+        attributeStore = new InMemoryAttributeStore();
+        file("2023/12/31/23/59/a.bin");
+        file("2024/1/2/3/4/b.bin");
+        file("2024/1/2/3/4/c.bin");
+        file("2024/2/1/0/0/d.bin");
+        file("2024/10/1/0/0/e.bin");
+    }
+
+    @Test
+    void getNextNodeIds_walksInChronologicalOrder() {
+        ContentStoreIndexingStrategy strategy = strategy(0);
+        strategy.onStart();
+
+        assertThat(contentUrls(strategy.getNextNodeIds(3)), containsInAnyOrder(
+                "store://2023/12/31/23/59/a.bin", "store://2024/1/2/3/4/b.bin", "store://2024/1/2/3/4/c.bin"));
+        assertThat(contentUrls(strategy.getNextNodeIds(3)), containsInAnyOrder(
+                "store://2024/2/1/0/0/d.bin", "store://2024/10/1/0/0/e.bin"));
+        assertThat(strategy.getNextNodeIds(3), is(empty()));
+    }
+
+    @Test
+    void getNextNodeIds_skipsRecentFiles() throws IOException {
+        Files.setLastModifiedTime(contentStore.resolve("2023/12/31/23/59/a.bin"),
+                FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+        ContentStoreIndexingStrategy strategy = strategy(86400000L);
+        strategy.onStart();
+
+        assertThat(contentUrls(strategy.getNextNodeIds(10)), contains("store://2023/12/31/23/59/a.bin"));
+        assertThat(strategy.getNextNodeIds(10), is(empty()));
+    }
+
+    @Test
+    void getNextNodeIds_persistentState_pickupFromPreviousCycle() {
+        ContentStoreIndexingStrategy originalStrategy = strategy(0);
+        originalStrategy.onStart();
+        originalStrategy.getNextNodeIds(1);
+        originalStrategy.getNextNodeIds(1);
+        // Interrupted while the batch with b.bin is being processed
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_DIRECTORY), is("2024/1/2/3/4"));
+
+        ContentStoreIndexingStrategy strategy = strategy(0);
+        strategy.onStart();
+
+        assertThat(contentUrls(strategy.getNextNodeIds(10)), containsInAnyOrder("store://2024/1/2/3/4/b.bin",
+                "store://2024/1/2/3/4/c.bin", "store://2024/2/1/0/0/d.bin", "store://2024/10/1/0/0/e.bin"));
+
+        strategy.onStop();
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_DIRECTORY), is(nullValue()));
+    }
+
+    @Test
+    void getNextNodeIds_persistentState_directoryNoLongerExists() {
+        attributeStore.setAttribute("2024/1/5/0/0", ATTR_KEY_LAST_PROCESSED_DIRECTORY);
+        ContentStoreIndexingStrategy strategy = strategy(0);
+        strategy.onStart();
+
+        assertThat(contentUrls(strategy.getNextNodeIds(10)), containsInAnyOrder("store://2024/2/1/0/0/d.bin",
+                "store://2024/10/1/0/0/e.bin"));
+    }
+
+    @Test
+    void getNextNodeIds_contentStoreDoesNotExist() {
+        ContentStoreIndexingStrategy strategy = new ContentStoreIndexingStrategy(
+                new ContentStoreIndexingConfiguration(contentStore.resolve("missing").toString(), "store", 0),
+                attributeStore);
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(10), is(empty()));
+    }
+
+    @Test
+    void onBatchProcessed_withBatchAcknowledgement() {
+        ContentStoreIndexingStrategy strategy = strategy(0);
+        strategy.enableBatchAcknowledgement();
+        strategy.onStart();
+
+        NodeBatch first = strategy.getNextNodeBatch(1);
+        NodeBatch second = strategy.getNextNodeBatch(2);
+        strategy.getNextNodeIds(2);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_DIRECTORY), is("2023/12/31/23/59"));
+
+        // The second batch completes first, the first batch is still in progress
+        strategy.onBatchProcessed(second);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_DIRECTORY), is("2023/12/31/23/59"));
+        strategy.onBatchProcessed(first);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_DIRECTORY), is("2024/2/1/0/0"));
+    }
+
+    @Test
+    void configuration_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new ContentStoreIndexingConfiguration("", "store", 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ContentStoreIndexingConfiguration("/contentstore", "store", -1));
+    }
+
+    private ContentStoreIndexingStrategy strategy(long minFileAgeMs) {
+        return new ContentStoreIndexingStrategy(
+                new ContentStoreIndexingConfiguration(contentStore.toString(), "store", minFileAgeMs), attributeStore);
+    }
+
+    private void file(String path) throws IOException {
+        Path file = contentStore.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[]{1, 2, 3});
+    }
+
+    private static List<String> contentUrls(Set<NodeRef> nodeRefs) {
+        return new ArrayList<>(nodeRefs.stream()
+                .map(ContentStoreNodeRefs::toContentUrl)
+                .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,26 @@
+package eu.xenit.alfresco.healthprocessor.indexing.contentstore;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.junit.jupiter.api.Test;
+
+class ContentStoreNodeRefsTest {
+
+    @Test
+    void toNodeRef_and_back() {
+        NodeRef nodeRef = ContentStoreNodeRefs.toNodeRef("store://2024/1/2/3/4/abc.bin");
+
+        assertThat(nodeRef.toString(), is("contentstore://store/2024%2F1%2F2%2F3%2F4%2Fabc.bin"));
+        // The string form can be parsed back
+        assertThat(ContentStoreNodeRefs.toContentUrl(new NodeRef(nodeRef.toString())),
+                is("store://2024/1/2/3/4/abc.bin"));
+    }
+
+    @Test
+    void toContentUrl_notAContentStoreFile() {
+        assertThat(ContentStoreNodeRefs.toContentUrl(new NodeRef("workspace://SpacesStore/abc")), is(nullValue()));
+    }
+}
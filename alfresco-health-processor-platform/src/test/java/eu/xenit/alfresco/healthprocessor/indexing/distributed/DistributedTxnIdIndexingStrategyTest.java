@@ -0,0 +1,168 @@
+package eu.xenit.alfresco.healthprocessor.indexing.distributed;
+
+import static eu.xenit.alfresco.healthprocessor.indexing.distributed.DistributedTxnIdIndexingStrategy.ATTR_KEY_DONE_PARTITIONS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import eu.xenit.alfresco.healthprocessor.indexing.FakeTrackingComponent;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.util.AssertTransactionHelper;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.InMemoryAttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.JobLockService.JobLockRefreshCallback;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DistributedTxnIdIndexingStrategyTest {
+
+    private FakeTrackingComponent trackingComponent;
+    private AttributeStore attributeStore;
+    // Partition leases of all (simulated) Alfresco nodes
+    private Map<QName, JobLockRefreshCallback> leases;
+
+    @BeforeEach
+    void setup() {
+        trackingComponent = new FakeTrackingComponent();
+        attributeStore = new InMemoryAttributeStore();
+        leases = new HashMap<>();
+        bulkInitTrackingComponent(10);
+    }
+
+    @Test
+    void getNextNodeIds_singleNode() {
+        DistributedTxnIdIndexingStrategy strategy = strategy();
+        strategy.onStart();
+        assertThat(strategy.getState(), hasEntry("partitions", "3"));
+
+        assertThat(drain(strategy, 3), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 10)));
+        assertThat(strategy.isCycleDone(), is(true));
+        assertThat(attributeStore.getAllAttributes(), is(anEmptyMap()));
+    }
+
+    @Test
+    void getNextNodeIds_partitionsAreSharedBetweenNodes() {
+        DistributedTxnIdIndexingStrategy first = strategy();
+        DistributedTxnIdIndexingStrategy second = strategy();
+        first.onStart();
+        second.onStart();
+
+        assertThat(first.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 4)));
+        assertThat(second.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 8)));
+        assertThat(first.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 8, 10)));
+
+        // The last partition is still being processed by the first node
+        assertThat(second.getNextNodeIds(4), is(empty()));
+        assertThat(second.isCycleDone(), is(false));
+
+        assertThat(first.getNextNodeIds(4), is(empty()));
+        assertThat(first.isCycleDone(), is(true));
+        assertThat(attributeStore.getAllAttributes(), is(anEmptyMap()));
+    }
+
+    @Test
+    void getNextNodeIds_partitionOfCrashedNodeIsResumed() {
+        DistributedTxnIdIndexingStrategy crashingNode = strategy();
+        crashingNode.onStart();
+        assertThat(crashingNode.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]));
+        assertThat(crashingNode.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[2], TestNodeRefs.REFS[3]));
+
+        // *** CRASH *** The lease of the crashed node is not refreshed anymore and expires
+        leases.clear();
+
+        DistributedTxnIdIndexingStrategy survivingNode = strategy();
+        survivingNode.onStart();
+        assertThat(survivingNode.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[2], TestNodeRefs.REFS[3]));
+        assertThat(drain(survivingNode, 2), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 10)));
+        assertThat(survivingNode.isCycleDone(), is(true));
+    }
+
+    @Test
+    void onBatchProcessed_partitionIsDoneOnceAllBatchesAreProcessed() {
+        DistributedTxnIdIndexingStrategy strategy = strategy();
+        strategy.enableBatchAcknowledgement();
+        strategy.onStart();
+
+        NodeBatch first = strategy.getNextNodeBatch(4);
+        NodeBatch second = strategy.getNextNodeBatch(4);
+        assertThat(second.getNodeRefs(), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 8)));
+        assertThat(strategy.getState(), hasEntry("claimed-partitions", "2"));
+        assertThat(attributeStore.getAttributes(ATTR_KEY_DONE_PARTITIONS), is(anEmptyMap()));
+
+        strategy.onBatchProcessed(first);
+        assertThat(attributeStore.getAttributes(ATTR_KEY_DONE_PARTITIONS), is(aMapWithSize(1)));
+        assertThat(strategy.getState(), hasEntry("claimed-partitions", "1"));
+    }
+
+    @Test
+    void onBatchProcessed_partitionWithLostLeaseIsNotCompleted() {
+        DistributedTxnIdIndexingStrategy strategy = strategy();
+        strategy.enableBatchAcknowledgement();
+        strategy.onStart();
+
+        NodeBatch first = strategy.getNextNodeBatch(4);
+        strategy.getNextNodeBatch(4);
+        assertThat(strategy.getState(), hasEntry("claimed-partitions", "2"));
+
+        // The lease on the first partition expires, e.g. after a long GC pause, and another node can claim it
+        leases.get(DistributedTxnIdIndexingStrategy.partitionLockQName(0)).lockReleased();
+
+        strategy.onBatchProcessed(first);
+        assertThat(attributeStore.getAttributes(ATTR_KEY_DONE_PARTITIONS), is(anEmptyMap()));
+        assertThat(strategy.getState(), hasEntry("claimed-partitions", "1"));
+    }
+
+    private DistributedTxnIdIndexingStrategy strategy() {
+        return new DistributedTxnIdIndexingStrategy(
+                new DistributedTxnIdIndexingConfiguration(-1L, Long.MAX_VALUE, 1000, 4, 1000),
+                trackingComponent, attributeStore, jobLockService(), new AssertTransactionHelper());
+    }
+
+    private JobLockService jobLockService() {
+        JobLockService jobLockService = mock(JobLockService.class);
+        when(jobLockService.getLock(any(QName.class), anyLong(), any(JobLockRefreshCallback.class)))
+                .thenAnswer(invocation -> {
+                    QName lockQName = invocation.getArgument(0);
+                    JobLockRefreshCallback holder = leases.get(lockQName);
+                    if (holder != null && holder.isActive()) {
+                        throw new LockAcquisitionException(lockQName, "lock-123-token");
+                    }
+                    leases.put(lockQName, invocation.getArgument(2));
+                    return lockQName.getLocalName();
+                });
+        return jobLockService;
+    }
+
+    private static Set<NodeRef> drain(DistributedTxnIdIndexingStrategy strategy, int amount) {
+        Set<NodeRef> ret = new HashSet<>();
+        Set<NodeRef> batch;
+        while (!(batch = strategy.getNextNodeIds(amount)).isEmpty()) {
+            ret.addAll(batch);
+        }
+        return ret;
+    }
+
+    private void bulkInitTrackingComponent(int numberOfTransactions) {
+        for (long txnId = 1L; txnId <= numberOfTransactions; txnId++) {
+            trackingComponent.addTransaction(txnId, TestNodeRefs.REFS[(int) txnId - 1]);
+        }
+    }
+}
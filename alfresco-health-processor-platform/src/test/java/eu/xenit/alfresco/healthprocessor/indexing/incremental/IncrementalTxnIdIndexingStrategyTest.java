@@ -0,0 +1,135 @@
+package eu.xenit.alfresco.healthprocessor.indexing.incremental;
+
+import static eu.xenit.alfresco.healthprocessor.indexing.incremental.IncrementalTxnIdIndexingStrategy.ATTR_KEY_WATERMARK_TXN_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import eu.xenit.alfresco.healthprocessor.indexing.FakeTrackingComponent;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.InMemoryAttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IncrementalTxnIdIndexingStrategyTest {
+
+    private FakeTrackingComponent trackingComponent;
+    private AttributeStore attributeStore;
+
+    @BeforeEach
+    void setup() {
+        trackingComponent = new FakeTrackingComponent();
+        attributeStore = new InMemoryAttributeStore();
+        addTransactions(1, 5);
+    }
+
+    @Test
+    void firstCycle_processesAllTransactions() {
+        IncrementalTxnIdIndexingStrategy strategy = strategy();
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(nullValue()));
+
+        strategy.onStart();
+        assertThat(strategy.getNextNodeIds(100), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 5)));
+        assertThat(strategy.getNextNodeIds(100), is(empty()));
+        strategy.onStop();
+
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(5L));
+    }
+
+    @Test
+    void nextCycle_onlyProcessesTransactionsSincePreviousCycle() {
+        IncrementalTxnIdIndexingStrategy strategy = strategy();
+        runCycle(strategy);
+        addTransactions(6, 8);
+
+        strategy.onStart();
+        assertThat(strategy.getState(), hasEntry("cycle-start-txn-id", "6"));
+        assertThat(strategy.getNextNodeIds(100), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 5, 8)));
+        assertThat(strategy.getNextNodeIds(100), is(empty()));
+        strategy.onStop();
+
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(8L));
+    }
+
+    @Test
+    void nextCycle_withoutNewTransactions() {
+        IncrementalTxnIdIndexingStrategy strategy = strategy();
+        runCycle(strategy);
+        int invocations = trackingComponent.numberOfGetNodeForTxnIdsInvocations();
+
+        strategy.onStart();
+        assertThat(strategy.getNextNodeIds(100), is(empty()));
+        assertThat(strategy.getCycleProgress().isUnknown(), is(true));
+        strategy.onStop();
+
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(invocations));
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(5L));
+    }
+
+    @Test
+    void failedCycle_isResumedByNextCycle() {
+        IncrementalTxnIdIndexingStrategy strategy = new IncrementalTxnIdIndexingStrategy(
+                new IncrementalTxnIdIndexingConfiguration(-1L, 1, 0), trackingComponent, attributeStore);
+        strategy.onStart();
+        assertThat(strategy.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]));
+        assertThat(strategy.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[2], TestNodeRefs.REFS[3]));
+        strategy.onException(new IllegalStateException("Test"));
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(nullValue()));
+
+        addTransactions(6, 7);
+        strategy.onStart();
+        // The last batch of the failed cycle is processed again
+        assertThat(strategy.getNextNodeIds(100), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 2, 7)));
+        assertThat(strategy.getNextNodeIds(100), is(empty()));
+        strategy.onStop();
+
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(7L));
+    }
+
+    @Test
+    void nextCycle_picksUpTransactionCommittedBelowWatermark() {
+        IncrementalTxnIdIndexingStrategy strategy = strategy(3);
+        // Transaction 6 is still running when the first cycle ends, transaction 7 already committed
+        trackingComponent.addTransaction(7L, TestNodeRefs.REFS[6]);
+        runCycle(strategy);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(7L));
+
+        trackingComponent.addTransaction(6L, TestNodeRefs.REFS[5]);
+        strategy.onStart();
+        assertThat(strategy.getState(), hasEntry("cycle-start-txn-id", "5"));
+        assertThat(strategy.getNextNodeIds(100), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 7)));
+        assertThat(strategy.getNextNodeIds(100), is(empty()));
+        strategy.onStop();
+
+        assertThat(attributeStore.getAttribute(ATTR_KEY_WATERMARK_TXN_ID), is(7L));
+    }
+
+    private IncrementalTxnIdIndexingStrategy strategy() {
+        return strategy(0);
+    }
+
+    private IncrementalTxnIdIndexingStrategy strategy(long lookbackTransactions) {
+        return new IncrementalTxnIdIndexingStrategy(
+                new IncrementalTxnIdIndexingConfiguration(-1L, 1000, lookbackTransactions), trackingComponent,
+                attributeStore);
+    }
+
+    private static void runCycle(IncrementalTxnIdIndexingStrategy strategy) {
+        strategy.onStart();
+        while (!strategy.getNextNodeIds(100).isEmpty()) {
+            // Drain all nodes of the cycle
+        }
+        strategy.onStop();
+    }
+
+    private void addTransactions(long fromTxnIdInclusive, long toTxnIdInclusive) {
+        for (long txnId = fromTxnIdInclusive; txnId <= toTxnIdInclusive; txnId++) {
+            trackingComponent.addTransaction(txnId, TestNodeRefs.REFS[(int) txnId - 1]);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package eu.xenit.alfresco.healthprocessor.indexing.nodeid;
+
+import static eu.xenit.alfresco.healthprocessor.indexing.nodeid.NodeIdBasedIndexingStrategy.ATTR_KEY_LAST_PROCESSED_NODE_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import eu.xenit.alfresco.healthprocessor.indexing.FakeTrackingComponent;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.InMemoryAttributeStore;
+import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NodeIdBasedIndexingStrategyTest {
+
+    private FakeTrackingComponent trackingComponent;
+    private AttributeStore attributeStore;
+
+    @BeforeEach
+    void setup() {
+        trackingComponent = new FakeTrackingComponent();
+        attributeStore = new InMemoryAttributeStore();
+        // Node IDs 1 to 10, spread over 4 transactions
+        trackingComponent.addTransaction(1L, Arrays.asList(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 4)));
+        trackingComponent.addTransaction(2L, TestNodeRefs.REFS[4]);
+        trackingComponent.addTransaction(5L, Arrays.asList(Arrays.copyOfRange(TestNodeRefs.REFS, 5, 9)));
+        trackingComponent.addTransaction(9L, TestNodeRefs.REFS[9]);
+    }
+
+    @Test
+    void getNextNodeIds_defaultConfiguration() {
+        NodeIdBasedIndexingStrategy strategy = strategy(new NodeIdIndexingConfiguration(-1L, Long.MAX_VALUE, 1000));
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(6), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 6)));
+        assertThat(strategy.getNextNodeIds(6), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 6, 10)));
+        assertThat(strategy.getNextNodeIds(6), is(empty()));
+        assertThat(trackingComponent.numberOfGetNodesForNodeIdRangeInvocations(), is(1));
+    }
+
+    @Test
+    void getNextNodeIds_limitedByConfiguration() {
+        NodeIdBasedIndexingStrategy strategy = strategy(new NodeIdIndexingConfiguration(2L, 6L, 1000));
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(10), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 1, 6)));
+        assertThat(strategy.getNextNodeIds(10), is(empty()));
+    }
+
+    @Test
+    void getNextNodeIds_limitedByConfiguration_nodeIdBatchSize() {
+        NodeIdBasedIndexingStrategy strategy = strategy(new NodeIdIndexingConfiguration(-1L, Long.MAX_VALUE, 3));
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 4)));
+        assertThat(trackingComponent.numberOfGetNodesForNodeIdRangeInvocations(), is(2));
+        assertThat(strategy.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 8)));
+        assertThat(trackingComponent.numberOfGetNodesForNodeIdRangeInvocations(), is(3));
+        assertThat(strategy.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 8, 10)));
+        assertThat(trackingComponent.numberOfGetNodesForNodeIdRangeInvocations(), is(4));
+    }
+
+    @Test
+    void getNextNodeIds_startIdLargerThenStopId() {
+        assertThrows(IllegalArgumentException.class, () -> new NodeIdIndexingConfiguration(6L, 2L, 1000));
+    }
+
+    @Test
+    void getNextNodeIds_persistentState_pickupFromPreviousCycle() {
+        NodeIdBasedIndexingStrategy originalStrategy = strategy(new NodeIdIndexingConfiguration(-1L, Long.MAX_VALUE, 3));
+        originalStrategy.onStart();
+        assertThat(originalStrategy.getNextNodeIds(4), hasSize(4));
+        assertThat(originalStrategy.getNextNodeIds(4), hasSize(4));
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_NODE_ID), is(5L));
+
+        // *** CRASH *** The second batch has not been processed completely
+
+        NodeIdBasedIndexingStrategy secondStrategy = strategy(new NodeIdIndexingConfiguration(-1L, Long.MAX_VALUE, 3));
+        secondStrategy.onStart();
+        assertThat(secondStrategy.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 8)));
+        assertThat(secondStrategy.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 8, 10)));
+        assertThat(secondStrategy.getNextNodeIds(4), is(empty()));
+
+        secondStrategy.onStop();
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_NODE_ID), is(nullValue()));
+    }
+
+    @Test
+    void onBatchProcessed_persistentStateFollowsOldestBatchInProgress() {
+        NodeIdBasedIndexingStrategy strategy = strategy(new NodeIdIndexingConfiguration(-1L, Long.MAX_VALUE, 1000));
+        strategy.enableBatchAcknowledgement();
+        strategy.onStart();
+
+        NodeBatch first = strategy.getNextNodeBatch(3);
+        NodeBatch second = strategy.getNextNodeBatch(3);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_NODE_ID), is(1L));
+
+        strategy.onBatchProcessed(second);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_NODE_ID), is(1L));
+
+        NodeBatch third = strategy.getNextNodeBatch(3);
+        strategy.onBatchProcessed(first);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_NODE_ID), is(7L));
+
+        strategy.onBatchProcessed(third);
+        assertThat(attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_NODE_ID), is(7L));
+    }
+
+    @Test
+    void getProgress() {
+        NodeIdBasedIndexingStrategy strategy = strategy(new NodeIdIndexingConfiguration(-1L, Long.MAX_VALUE, 2));
+        assertThat(strategy.getCycleProgress().isUnknown(), is(true));
+
+        strategy.onStart();
+        assertThat(strategy.getCycleProgress().getProgress(), is(0.0f));
+
+        strategy.getNextNodeIds(1); // Fetched node IDs 1 and 2
+        assertThat((double) strategy.getCycleProgress().getProgress(), is(closeTo(0.2, 0.0001)));
+
+        strategy.getNextNodeIds(5); // Fetched node IDs 3 to 6
+        assertThat((double) strategy.getCycleProgress().getProgress(), is(closeTo(0.6, 0.0001)));
+
+        strategy.getNextNodeIds(100); // Fetched all node IDs
+        assertThat((double) strategy.getCycleProgress().getProgress(), is(1.0));
+
+        strategy.onStop();
+        assertThat(strategy.getCycleProgress().isUnknown(), is(true));
+    }
+
+    private NodeIdBasedIndexingStrategy strategy(NodeIdIndexingConfiguration configuration) {
+        return new NodeIdBasedIndexingStrategy(configuration, trackingComponent, attributeStore);
+    }
+}
@@ -0,0 +1,125 @@
+package eu.xenit.alfresco.healthprocessor.indexing.txnid;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+import eu.xenit.alfresco.healthprocessor.indexing.TrackingComponent.NodeInfo;
+import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.junit.jupiter.api.Test;
+
+class CompactNodeQueueTest {
+
+    @Test
+    void poll_orderedByTxnId() {
+        CompactNodeQueue queue = new CompactNodeQueue();
+        queue.addAll(Arrays.asList(
+                new NodeInfo(3L, 3L, TestNodeRefs.REFS[2]),
+                new NodeInfo(1L, 1L, TestNodeRefs.REFS[0]),
+                new NodeInfo(2L, 2L, TestNodeRefs.REFS[1])));
+        queue.addAll(Arrays.asList(
+                new NodeInfo(5L, 5L, TestNodeRefs.REFS[4]),
+                new NodeInfo(4L, 4L, TestNodeRefs.REFS[3])));
+
+        assertThat(queue.size(), is(5));
+        for (int i = 0; i < 5; i++) {
+            assertThat(queue.peekTxnId(), is(i + 1L));
+            assertThat(queue.poll(), is(equalTo(TestNodeRefs.REFS[i])));
+        }
+        assertThat(queue.isEmpty(), is(true));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    void sortLast_ordersNodesAddedOneByOne() {
+        CompactNodeQueue queue = new CompactNodeQueue();
+        queue.add(new NodeInfo(1L, 1L, TestNodeRefs.REFS[0]));
+        queue.add(new NodeInfo(3L, 3L, TestNodeRefs.REFS[2]));
+        queue.add(new NodeInfo(2L, 2L, TestNodeRefs.REFS[1]));
+        queue.sortLast(3);
+        queue.addAll(nodeInfos(3, 5));
+
+        assertThat(queue.size(), is(5));
+        for (int i = 0; i < 5; i++) {
+            assertThat(queue.poll(), is(equalTo(TestNodeRefs.REFS[i])));
+        }
+    }
+
+    @Test
+    void poll_restoresIrregularUuidsAndStores() {
+        NodeRef irregular = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "abc-123");
+        NodeRef uppercase = new NodeRef(StoreRef.STORE_REF_ARCHIVE_SPACESSTORE,
+                TestNodeRefs.REFS[0].getId().toUpperCase());
+        NodeRef archived = new NodeRef(StoreRef.STORE_REF_ARCHIVE_SPACESSTORE, TestNodeRefs.REFS[1].getId());
+        CompactNodeQueue queue = new CompactNodeQueue();
+        queue.addAll(Arrays.asList(
+                new NodeInfo(1L, 1L, irregular),
+                new NodeInfo(2L, 2L, uppercase),
+                new NodeInfo(3L, 3L, archived)));
+
+        assertThat(queue.poll(), is(equalTo(irregular)));
+        assertThat(queue.poll(), is(equalTo(uppercase)));
+        assertThat(queue.poll(), is(equalTo(archived)));
+    }
+
+    @Test
+    void addAll_reusesSpaceOfPolledNodes() {
+        CompactNodeQueue queue = new CompactNodeQueue();
+        queue.addAll(nodeInfos(0, 1000));
+        long retainedMemory = queue.estimatedRetainedMemory();
+        for (int i = 0; i < 600; i++) {
+            queue.poll();
+        }
+
+        queue.addAll(nodeInfos(1000, 1600));
+
+        assertThat(queue.size(), is(1000));
+        assertThat(queue.estimatedRetainedMemory(), is(retainedMemory));
+        for (int i = 600; i < 1600; i++) {
+            assertThat(queue.poll(), is(equalTo(TestNodeRefs.REFS[i % 1000])));
+        }
+    }
+
+    @Test
+    void poll_shrinksArraysOfLargeQueue() {
+        CompactNodeQueue queue = new CompactNodeQueue();
+        queue.addAll(nodeInfos(0, 10_000));
+        long retainedMemory = queue.estimatedRetainedMemory();
+        assertThat(queue.estimatedMemoryUsage(), is(10_000L * CompactNodeQueue.BYTES_PER_SLOT));
+
+        for (int i = 0; i < 6000; i++) {
+            assertThat(queue.poll(), is(equalTo(TestNodeRefs.REFS[i % 1000])));
+        }
+        assertThat(queue.estimatedMemoryUsage(), is(4000L * CompactNodeQueue.BYTES_PER_SLOT));
+        assertThat(queue.estimatedRetainedMemory(), is(lessThan(retainedMemory)));
+
+        for (int i = 6000; i < 10_000; i++) {
+            assertThat(queue.poll(), is(equalTo(TestNodeRefs.REFS[i % 1000])));
+        }
+        assertThat(queue.estimatedRetainedMemory(), is(1024L * CompactNodeQueue.BYTES_PER_SLOT));
+    }
+
+    @Test
+    void isCanonicalUuid() {
+        assertThat(CompactNodeQueue.isCanonicalUuid("3f2504e0-4f89-11d3-9a0c-0305e82c3301"), is(true));
+        assertThat(CompactNodeQueue.isCanonicalUuid("3F2504E0-4F89-11D3-9A0C-0305E82C3301"), is(false));
+        assertThat(CompactNodeQueue.isCanonicalUuid("3f2504e04f8911d39a0c0305e82c3301"), is(false));
+        assertThat(CompactNodeQueue.isCanonicalUuid("abc-123"), is(false));
+        assertThat(CompactNodeQueue.isCanonicalUuid(null), is(false));
+    }
+
+    private static List<NodeInfo> nodeInfos(int fromInclusive, int toExclusive) {
+        List<NodeInfo> ret = new ArrayList<>();
+        for (int i = fromInclusive; i < toExclusive; i++) {
+            ret.add(new NodeInfo(i, i, TestNodeRefs.REFS[i % 1000]));
+        }
+        return ret;
+    }
+}
@@ -6,16 +6,23 @@ import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import eu.xenit.alfresco.healthprocessor.indexing.FakeTrackingComponent;
 import eu.xenit.alfresco.healthprocessor.indexing.IndexingConfigUtil;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
 import eu.xenit.alfresco.healthprocessor.util.AttributeStore;
 import eu.xenit.alfresco.healthprocessor.util.InMemoryAttributeStore;
 import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import org.alfresco.service.cmr.repository.NodeRef;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -53,6 +60,21 @@ class TxnIdBasedIndexingStrategyTest {
         assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(1));
     }
 
+    @Test
+    void getNextNodeBatch_containsNodeStatuses() {
+        trackingComponent.addTransaction(3L, TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]);
+        TxnIdBasedIndexingStrategy strategy = strategy();
+        strategy.onStart();
+
+        NodeBatch batch = strategy.getNextNodeBatch(2);
+        assertThat(batch.getNodeRefs(), containsInAnyOrder(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]));
+        NodeRef.Status status = batch.getNodeStatuses().get(TestNodeRefs.REFS[1]);
+        assertThat(status.getNodeRef(), is(TestNodeRefs.REFS[1]));
+        assertThat(status.getDbId(), is(2L));
+        assertThat(status.getDbTxnId(), is(3L));
+        assertThat(status.isDeleted(), is(false));
+    }
+
     @Test
     void getNextNodeIds_startIdLargerThenStopId() {
         bulkInitTrackingComponent(10, 1);
@@ -73,6 +95,35 @@ class TxnIdBasedIndexingStrategyTest {
         assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(5));
     }
 
+    @Test
+    void getNextNodeIds_adaptiveTxnBatchSize_shrinksForLargeTransactions() {
+        bulkInitTrackingComponent(4, 5); // = 20 nodes in total
+        TxnIdBasedIndexingStrategy strategy = strategy(new TxnIdIndexingConfiguration(-1L, 1000L, 4, 1, 64));
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(5), hasSize(5));
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(1));
+        assertThat(strategy.getState(), hasEntry("txn-window-size", "1"));
+    }
+
+    @Test
+    void getNextNodeIds_adaptiveTxnBatchSize_growsForSparseTransactions() {
+        trackingComponent.addTransaction(1L, TestNodeRefs.REFS[0]);
+        trackingComponent.addTransaction(100L, TestNodeRefs.REFS[1]);
+        TxnIdBasedIndexingStrategy strategy = strategy(new TxnIdIndexingConfiguration(-1L, 1000L, 2, 1, 64));
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]));
+        // Windows of 2, 4, 8, 16, 32 and 64 transactions instead of 50 windows of 2 transactions
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(6));
+    }
+
+    @Test
+    void adaptiveTxnBatchSize_invalidBounds() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TxnIdIndexingConfiguration(-1L, 1000L, 2, 64, 1));
+    }
+
     @Test
     void getNextNodeIds_persistentState_pickupFromPreviousCycle() {
         bulkInitTrackingComponent(10, 1);
@@ -133,6 +184,78 @@ class TxnIdBasedIndexingStrategyTest {
         assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(2));
     }
 
+    @Test
+    void prefetch_doesNotAdvancePersistentState() {
+        bulkInitTrackingComponent(10, 1);
+        TxnIdBasedIndexingStrategy strategy = strategy(IndexingConfigUtil.config(-1L, 1000L, 2));
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(3), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 3)));
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(2));
+        assertLastProcessedAttributeValueEquals(1L);
+
+        strategy.prefetch(3);
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(3));
+        assertThat(strategy.getState(), hasEntry("nodes-in-queue", "3"));
+        assertThat(strategy.getState(), hasEntry("node-queue-bytes-per-node",
+                Long.toString(CompactNodeQueue.BYTES_PER_SLOT)));
+        assertThat(strategy.getState(), hasEntry("node-queue-retained-bytes",
+                Long.toString(1024L * CompactNodeQueue.BYTES_PER_SLOT)));
+        assertLastProcessedAttributeValueEquals(1L);
+
+        assertThat(strategy.getNextNodeIds(3), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 3, 6)));
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(3));
+        assertLastProcessedAttributeValueEquals(4L);
+    }
+
+    @Test
+    void onBatchProcessed_persistentStateFollowsOldestBatchInProgress() {
+        bulkInitTrackingComponent(10, 1);
+        TxnIdBasedIndexingStrategy strategy = strategy();
+        strategy.enableBatchAcknowledgement();
+        strategy.onStart();
+
+        NodeBatch first = strategy.getNextNodeBatch(3);
+        assertLastProcessedAttributeValueEquals(1L);
+        NodeBatch second = strategy.getNextNodeBatch(3);
+        NodeBatch third = strategy.getNextNodeBatch(3);
+        assertLastProcessedAttributeValueEquals(1L);
+        assertThat(strategy.getState(), hasEntry("batches-in-progress", "3"));
+
+        // Completing a batch out of order does not advance the persisted state
+        strategy.onBatchProcessed(second);
+        assertLastProcessedAttributeValueEquals(1L);
+
+        strategy.onBatchProcessed(first);
+        assertLastProcessedAttributeValueEquals(7L);
+
+        strategy.onBatchProcessed(third);
+        assertLastProcessedAttributeValueEquals(7L);
+        assertThat(strategy.getState(), hasEntry("batches-in-progress", "0"));
+
+        assertThat(strategy.getNextNodeIds(3), hasSize(1));
+        assertLastProcessedAttributeValueEquals(10L);
+    }
+
+    @Test
+    void onBatchProcessed_crashResumesAtOldestBatchInProgress() {
+        bulkInitTrackingComponent(10, 1);
+        TxnIdBasedIndexingStrategy originalStrategy = strategy();
+        originalStrategy.enableBatchAcknowledgement();
+        originalStrategy.onStart();
+
+        NodeBatch first = originalStrategy.getNextNodeBatch(4);
+        originalStrategy.getNextNodeIds(4);
+        originalStrategy.onBatchProcessed(first);
+
+        // *** CRASH *** while the second batch is still being processed
+
+        TxnIdBasedIndexingStrategy secondStrategy = strategy();
+        secondStrategy.onStart();
+
+        assertThat(secondStrategy.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 8)));
+    }
+
     private void assertLastProcessedAttributeValueEquals(Long expected) {
         Long actual = attributeStore.getAttribute(ATTR_KEY_LAST_PROCESSED_TXN_ID);
         assertThat(actual, is(equalTo(expected)));
@@ -155,6 +278,47 @@ class TxnIdBasedIndexingStrategyTest {
         assertThat(strategy.getNextNodeIds(6), is(empty()));
     }
 
+    @Test
+    void getNextNodeIds_fullNodeQueueStopsFetchingAtTransactionBoundary() {
+        bulkInitTrackingComponent(10, 2); // = 20 nodes in total
+        TxnIdBasedIndexingStrategy strategy = strategy();
+        strategy.setNodeQueueCapacity(3);
+        strategy.onStart();
+
+        // Both nodes of the second transaction are queued, although the queue is full after its first node
+        assertThat(strategy.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]));
+        assertThat(strategy.getState(), hasEntry("nodes-in-queue", "2"));
+        assertThat(strategy.getState(), hasEntry("next-txn-id", "3"));
+        assertThat(strategy.getNextNodeIds(2), containsInAnyOrder(TestNodeRefs.REFS[2], TestNodeRefs.REFS[3]));
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(1));
+
+        assertThat(strategy.getNextNodeIds(4), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 4, 8)));
+        assertThat(trackingComponent.numberOfGetNodeForTxnIdsInvocations(), is(2));
+        assertThat(strategy.getNextNodeIds(100), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 8, 20)));
+        assertThat(strategy.getNextNodeIds(100), is(empty()));
+    }
+
+    @Test
+    void getNextNodeIds_fullNodeQueueDoesNotLoseNodesThatArriveOutOfOrder() {
+        bulkInitTrackingComponent(10, 1);
+        // The node of the fourth transaction arrives after the node of the fifth
+        trackingComponent.streamTxnRangeInOrder(Comparator.comparingDouble(
+                nodeInfo -> nodeInfo.getTxnId() == 4L ? 5.5 : nodeInfo.getTxnId()));
+        TxnIdBasedIndexingStrategy strategy = strategy();
+        strategy.setNodeQueueCapacity(3);
+        strategy.onStart();
+
+        assertThat(strategy.getNextNodeIds(3), containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 3)));
+        assertThat(strategy.getState(), hasEntry("next-txn-id", "4"));
+
+        List<NodeRef> remaining = new ArrayList<>();
+        Set<NodeRef> batch;
+        while (!(batch = strategy.getNextNodeIds(3)).isEmpty()) {
+            remaining.addAll(batch);
+        }
+        assertThat(remaining, containsInAnyOrder(Arrays.copyOfRange(TestNodeRefs.REFS, 3, 10)));
+    }
+
     @Test
     void getProgress_limitedByConfiguration() {
         bulkInitTrackingComponent(10, 3); // 30 nodes in total
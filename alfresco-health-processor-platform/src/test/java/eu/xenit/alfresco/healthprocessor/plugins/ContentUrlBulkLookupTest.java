@@ -0,0 +1,82 @@
+package eu.xenit.alfresco.healthprocessor.plugins;
+
+import static eu.xenit.alfresco.healthprocessor.plugins.ContentUrlBulkLookup.SELECT_CONTENT_URLS_BY_KEYS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mybatis.spring.SqlSessionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ContentUrlBulkLookupTest {
+
+    private static final String REFERENCED = "store://2024/1/2/3/4/referenced.bin";
+    private static final String UNREFERENCED = "store://2024/1/2/3/4/unreferenced.bin";
+
+    @Mock
+    private SqlSessionTemplate sqlSessionTemplate;
+    private Configuration configuration;
+
+    @BeforeEach
+    void setup() {
+        configuration = new Configuration();
+        when(sqlSessionTemplate.getConfiguration()).thenReturn(configuration);
+    }
+
+    @Test
+    void getContentUrls() {
+        ContentUrlEntity referenced = contentUrlEntity(REFERENCED);
+        // Matches the short form of one content URL and the CRC of another
+        ContentUrlEntity other = contentUrlEntity("store://2024/1/2/3/5/other.bin");
+        when(sqlSessionTemplate.selectList(eq(SELECT_CONTENT_URLS_BY_KEYS), anyMap()))
+                .thenReturn(Arrays.asList(referenced, other));
+
+        Map<String, ContentUrlEntity> contentUrls = new ContentUrlBulkLookup(sqlSessionTemplate)
+                .getContentUrls(Arrays.asList(REFERENCED, UNREFERENCED));
+
+        assertThat(contentUrls, is(aMapWithSize(1)));
+        assertThat(contentUrls, hasEntry(REFERENCED, referenced));
+        assertThat(configuration.hasStatement(SELECT_CONTENT_URLS_BY_KEYS), is(true));
+    }
+
+    @Test
+    void getContentUrls_oneQueryPerChunk() {
+        when(sqlSessionTemplate.selectList(eq(SELECT_CONTENT_URLS_BY_KEYS), anyMap()))
+                .thenReturn(Collections.emptyList());
+        List<String> contentUrls = new ArrayList<>();
+        for (int i = 0; i <= ContentUrlBulkLookup.MAX_CONTENT_URLS_PER_QUERY; i++) {
+            contentUrls.add("store://2024/1/2/3/4/" + i + ".bin");
+        }
+
+        ContentUrlBulkLookup lookup = new ContentUrlBulkLookup(sqlSessionTemplate);
+        lookup.getContentUrls(contentUrls);
+        // The mapper is only added once
+        lookup.getContentUrls(Collections.singletonList(REFERENCED));
+
+        verify(sqlSessionTemplate, times(3)).selectList(eq(SELECT_CONTENT_URLS_BY_KEYS), anyMap());
+    }
+
+    private static ContentUrlEntity contentUrlEntity(String contentUrl) {
+        ContentUrlEntity ret = new ContentUrlEntity();
+        ret.setContentUrl(contentUrl);
+        return ret;
+    }
+}
@@ -7,23 +7,38 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeStatusCache;
 import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthReport;
 import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthStatus;
+import java.io.ByteArrayInputStream;
 import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.service.ServiceRegistry;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.ContentIOException;
 import org.alfresco.service.cmr.repository.ContentReader;
 import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -35,6 +50,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -55,6 +71,8 @@ class ContentValidationHealthProcessorPluginTest {
     private DictionaryService dictionaryService;
     @Mock
     private ContentReader contentReader;
+    @Mock
+    private NodeDAO nodeDAO;
 
     @BeforeEach
     void setup() {
@@ -202,6 +220,225 @@ class ContentValidationHealthProcessorPluginTest {
         assertThat(report.getMessages(), contains(containsString(Q_NAME.toString())));
     }
 
+    @Test
+    void doProcess_loadsBatchInBulk() {
+        NodeRef deletedNodeRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+        NodeRef missingNodeRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+        NodeStatusCache nodeStatusCache = new NodeStatusCache();
+        nodeStatusCache.putAll(new NodeBatch(Collections.singleton(deletedNodeRef), Collections.singletonMap(
+                deletedNodeRef, new Status(101L, deletedNodeRef, null, 10L, true))));
+        ContentValidationHealthProcessorPlugin plugin = new ContentValidationHealthProcessorPlugin(nodeService,
+                contentService, dictionaryService, nodeDAO, nodeStatusCache, Collections.singletonList(Q_NAME));
+
+        when(nodeService.getProperty(NODE_REF, Q_NAME))
+                .thenReturn(new ContentData(CONTENT_URL, "plain/text", 10, "UTF-8"));
+        when(contentReader.exists()).thenReturn(true);
+
+        Set<NodeHealthReport> reports = plugin.process(new HashSet<>(Arrays.asList(NODE_REF, deletedNodeRef,
+                missingNodeRef)));
+
+        assertThat(reports.stream().collect(Collectors.toMap(NodeHealthReport::getNodeRef,
+                NodeHealthReport::getStatus)), is(equalTo(new HashMap<NodeRef, NodeHealthStatus>() {{
+            put(NODE_REF, NodeHealthStatus.HEALTHY);
+            put(deletedNodeRef, NodeHealthStatus.NONE);
+            put(missingNodeRef, NodeHealthStatus.NONE);
+        }})));
+        // The node that is known to be deleted is not loaded, the others are loaded at once
+        verify(nodeDAO).cacheNodes(argThat(nodeRefs -> new HashSet<>(nodeRefs)
+                .equals(new HashSet<>(Arrays.asList(NODE_REF, missingNodeRef)))));
+        verify(nodeService, never()).getProperties(Mockito.any());
+    }
+
+    @Test
+    void doProcess_checksContentConcurrently() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentCheckParallelism(2);
+        NodeRef otherNodeRef = stubOtherNodeWithContent("s3://def.bin");
+
+        // Each check only completes once both content URLs are being checked at the same time
+        CountDownLatch checksInProgress = new CountDownLatch(2);
+        when(contentReader.exists()).thenAnswer(invocation -> {
+            checksInProgress.countDown();
+            assertThat("Expect content to be checked concurrently", checksInProgress.await(10, TimeUnit.SECONDS));
+            return true;
+        });
+
+        Set<NodeHealthReport> reports = plugin.process(new HashSet<>(Arrays.asList(NODE_REF, otherNodeRef)));
+
+        assertThat(reports.stream().map(NodeHealthReport::getStatus).collect(Collectors.toList()),
+                contains(NodeHealthStatus.HEALTHY, NodeHealthStatus.HEALTHY));
+    }
+
+    @Test
+    void doProcess_contentCheckTimesOut() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentCheckParallelism(2);
+        plugin.setContentCheckTimeoutMs(100);
+        NodeRef otherNodeRef = stubOtherNodeWithContent("s3://def.bin");
+
+        // The content of the other node hangs until the check is cancelled
+        ContentReader hangingContentReader = Mockito.mock(ContentReader.class);
+        when(contentService.getRawReader("s3://def.bin")).thenReturn(hangingContentReader);
+        when(hangingContentReader.exists()).thenAnswer(invocation -> {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return true;
+        });
+        when(contentReader.exists()).thenReturn(true);
+
+        Set<NodeHealthReport> reports = plugin.process(new HashSet<>(Arrays.asList(NODE_REF, otherNodeRef)));
+
+        NodeHealthReport otherReport = reports.stream()
+                .filter(report -> report.getNodeRef().equals(otherNodeRef))
+                .findAny()
+                .orElseThrow(AssertionError::new);
+        assertThat(otherReport.getStatus(), is(equalTo(NodeHealthStatus.NONE)));
+        assertThat(otherReport.getMessages(), contains(containsString("timed out")));
+        assertThat(reports.stream()
+                .filter(report -> report.getNodeRef().equals(NODE_REF))
+                .map(NodeHealthReport::getStatus)
+                .collect(Collectors.toList()), contains(NodeHealthStatus.HEALTHY));
+    }
+
+    @Test
+    void doProcess_contentCheckTimeoutStartsWhenCheckRuns() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentCheckTimeoutMs(500);
+        NodeRef otherNodeRef = stubOtherNodeWithContent("s3://def.bin");
+
+        // One check at a time: the second check only starts after the timeout would have passed since it was queued
+        when(contentReader.exists()).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return true;
+        });
+
+        Set<NodeHealthReport> reports = plugin.process(new HashSet<>(Arrays.asList(NODE_REF, otherNodeRef)));
+
+        assertThat(reports.stream().map(NodeHealthReport::getStatus).collect(Collectors.toList()),
+                contains(NodeHealthStatus.HEALTHY, NodeHealthStatus.HEALTHY));
+    }
+
+    @Test
+    void process_contentCheckTimesOut_withoutParallelism() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentCheckTimeoutMs(100);
+        when(contentReader.exists()).thenAnswer(invocation -> {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return true;
+        });
+
+        NodeHealthReport report = plugin.process(NODE_REF);
+
+        assertThat(report.getStatus(), is(equalTo(NodeHealthStatus.NONE)));
+        assertThat(report.getMessages(), contains(containsString("timed out")));
+    }
+
+    @Test
+    void setContentCheckTimeoutMs_negative() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        assertThrows(IllegalArgumentException.class, () -> plugin.setContentCheckTimeoutMs(-1));
+    }
+
+    @Test
+    void doProcess_sharedContentIsCheckedOncePerCycle() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentUrlCacheSize(10);
+        plugin.onCycleStart();
+        // A version of the node, with the same content
+        NodeRef versionNodeRef = stubOtherNodeWithContent(CONTENT_URL);
+        when(contentReader.exists()).thenReturn(true);
+
+        assertThat(plugin.process(NODE_REF).getStatus(), is(equalTo(NodeHealthStatus.HEALTHY)));
+        assertThat(plugin.process(versionNodeRef).getStatus(), is(equalTo(NodeHealthStatus.HEALTHY)));
+
+        verify(contentService, times(1)).getRawReader(CONTENT_URL);
+        assertThat(plugin.getState().get("content-url-cache.hits"), is(equalTo("1")));
+        assertThat(plugin.getState().get("content-url-cache.misses"), is(equalTo("1")));
+
+        // The next cycle checks the content again
+        plugin.onCycleEnd();
+        plugin.onCycleStart();
+        assertThat(plugin.process(versionNodeRef).getStatus(), is(equalTo(NodeHealthStatus.HEALTHY)));
+
+        verify(contentService, times(2)).getRawReader(CONTENT_URL);
+        assertThat(plugin.getState().get("content-url-cache.hits"), is(equalTo("0")));
+        assertThat(plugin.getState().get("content-url-cache.misses"), is(equalTo("1")));
+    }
+
+    @Test
+    void process_sizeVerification_contentIsTruncated() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentVerification("size");
+
+        when(contentReader.exists()).thenReturn(true);
+        when(contentReader.getSize()).thenReturn(0L);
+
+        NodeHealthReport report = plugin.process(NODE_REF);
+        assertThat(report.getStatus(), is(equalTo(NodeHealthStatus.UNHEALTHY)));
+        assertThat(report.getMessages(), contains(containsString("size does not match")));
+    }
+
+    @Test
+    void process_readVerification() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentVerification("read");
+        plugin.setContentReadBytesPerSecond(1000);
+
+        when(contentReader.exists()).thenReturn(true);
+        when(contentReader.getSize()).thenReturn(10L);
+        when(contentReader.getReadableChannel())
+                .thenReturn(Channels.newChannel(new ByteArrayInputStream(new byte[10])));
+
+        assertThat(plugin.process(NODE_REF).getStatus(), is(equalTo(NodeHealthStatus.HEALTHY)));
+    }
+
+    @Test
+    void process_readVerification_contentIsTruncated() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentVerification("read");
+
+        // The store reports the expected size, but less content can be read
+        when(contentReader.exists()).thenReturn(true);
+        when(contentReader.getSize()).thenReturn(10L);
+        when(contentReader.getReadableChannel())
+                .thenReturn(Channels.newChannel(new ByteArrayInputStream(new byte[8])));
+
+        NodeHealthReport report = plugin.process(NODE_REF);
+        assertThat(report.getStatus(), is(equalTo(NodeHealthStatus.UNHEALTHY)));
+        assertThat(report.getMessages(), contains(containsString("size does not match")));
+    }
+
+    @Test
+    void process_readVerification_contentCanNotBeRead() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+        plugin.setContentVerification("read");
+
+        when(contentReader.exists()).thenReturn(true);
+        when(contentReader.getSize()).thenReturn(10L);
+        when(contentReader.getReadableChannel()).thenThrow(new ContentIOException("Disk on fire"));
+
+        NodeHealthReport report = plugin.process(NODE_REF);
+        assertThat(report.getStatus(), is(equalTo(NodeHealthStatus.UNHEALTHY)));
+        assertThat(report.getMessages(), contains(containsString("could not be read")));
+    }
+
+    @Test
+    void setContentVerification_unknownKey() {
+        ContentValidationHealthProcessorPlugin plugin = initialize(Collections.singletonList(Q_NAME));
+
+        assertThrows(IllegalArgumentException.class, () -> plugin.setContentVerification("checksum"));
+    }
+
+    private NodeRef stubOtherNodeWithContent(String contentUrl) {
+        NodeRef otherNodeRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+        when(nodeService.exists(otherNodeRef)).thenReturn(true);
+        when(nodeService.getNodeStatus(otherNodeRef)).thenReturn(new Status(101L, otherNodeRef, null, 10L, false));
+        when(nodeService.getProperties(otherNodeRef)).thenReturn(new HashMap<QName, Serializable>() {{
+            put(Q_NAME, new ContentData(contentUrl, "plain/text", 10, "UTF-8"));
+        }});
+        lenient().when(contentService.getRawReader(contentUrl)).thenReturn(contentReader);
+        return otherNodeRef;
+    }
+
     private ContentValidationHealthProcessorPlugin initialize(Collection<QName> propertyQNamesToValidate) {
         return new ContentValidationHealthProcessorPlugin(nodeService, contentService, dictionaryService,
                 propertyQNamesToValidate);
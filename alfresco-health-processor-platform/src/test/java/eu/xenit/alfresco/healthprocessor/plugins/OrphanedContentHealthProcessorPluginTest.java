@@ -0,0 +1,106 @@
+package eu.xenit.alfresco.healthprocessor.plugins;
+
+import static eu.xenit.alfresco.healthprocessor.util.SetUtil.set;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreNodeRefs;
+import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthReport;
+import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthStatus;
+import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class OrphanedContentHealthProcessorPluginTest {
+
+    private static final NodeRef REFERENCED = ContentStoreNodeRefs.toNodeRef("store://2024/1/2/3/4/referenced.bin");
+    private static final NodeRef UNREFERENCED = ContentStoreNodeRefs.toNodeRef("store://2024/1/2/3/4/unreferenced.bin");
+    private static final NodeRef ORPHANED = ContentStoreNodeRefs.toNodeRef("store://2024/1/2/3/4/orphaned.bin");
+
+    @Mock
+    private ContentDataDAO contentDataDAO;
+    @Mock
+    private ContentUrlBulkLookup contentUrlBulkLookup;
+
+    @Test
+    void process() {
+        OrphanedContentHealthProcessorPlugin plugin = new OrphanedContentHealthProcessorPlugin(contentDataDAO);
+        plugin.onCycleStart();
+        when(contentDataDAO.getContentUrl("store://2024/1/2/3/4/referenced.bin")).thenReturn(new ContentUrlEntity());
+        ContentUrlEntity orphanedEntity = new ContentUrlEntity();
+        orphanedEntity.setOrphanTime(System.currentTimeMillis());
+        when(contentDataDAO.getContentUrl("store://2024/1/2/3/4/orphaned.bin")).thenReturn(orphanedEntity);
+
+        Set<NodeHealthReport> reports = plugin.process(set(REFERENCED, UNREFERENCED, ORPHANED, TestNodeRefs.REFS[0]));
+
+        Map<NodeRef, NodeHealthStatus> expected = new HashMap<>();
+        expected.put(REFERENCED, NodeHealthStatus.HEALTHY);
+        expected.put(UNREFERENCED, NodeHealthStatus.UNHEALTHY);
+        expected.put(ORPHANED, NodeHealthStatus.NONE);
+        expected.put(TestNodeRefs.REFS[0], NodeHealthStatus.NONE);
+        assertThat(reports.stream().collect(Collectors.toMap(NodeHealthReport::getNodeRef,
+                NodeHealthReport::getStatus)), is(equalTo(expected)));
+        assertThat(plugin.getState().get("unreferenced-files"), is("1"));
+    }
+
+    @Test
+    void process_bulkLookup() {
+        OrphanedContentHealthProcessorPlugin plugin = new OrphanedContentHealthProcessorPlugin(contentDataDAO,
+                contentUrlBulkLookup);
+        plugin.onCycleStart();
+        ContentUrlEntity orphanedEntity = new ContentUrlEntity();
+        orphanedEntity.setOrphanTime(System.currentTimeMillis());
+        Map<String, ContentUrlEntity> contentUrlEntities = new HashMap<>();
+        contentUrlEntities.put("store://2024/1/2/3/4/referenced.bin", new ContentUrlEntity());
+        contentUrlEntities.put("store://2024/1/2/3/4/orphaned.bin", orphanedEntity);
+        when(contentUrlBulkLookup.getContentUrls(anyCollection())).thenReturn(contentUrlEntities);
+
+        Set<NodeHealthReport> reports = plugin.process(set(REFERENCED, UNREFERENCED, ORPHANED, TestNodeRefs.REFS[0]));
+
+        verifyNoInteractions(contentDataDAO);
+        assertThat(toStatuses(reports), is(equalTo(expectedStatuses())));
+        assertThat(plugin.getState().get("unreferenced-files"), is("1"));
+    }
+
+    @Test
+    void process_failingBulkLookupFallsBackToSingleLookups() {
+        OrphanedContentHealthProcessorPlugin plugin = new OrphanedContentHealthProcessorPlugin(contentDataDAO,
+                contentUrlBulkLookup);
+        when(contentUrlBulkLookup.getContentUrls(anyCollection())).thenThrow(new IllegalStateException("Test"));
+        when(contentDataDAO.getContentUrl("store://2024/1/2/3/4/referenced.bin")).thenReturn(new ContentUrlEntity());
+        ContentUrlEntity orphanedEntity = new ContentUrlEntity();
+        orphanedEntity.setOrphanTime(System.currentTimeMillis());
+        when(contentDataDAO.getContentUrl("store://2024/1/2/3/4/orphaned.bin")).thenReturn(orphanedEntity);
+
+        Set<NodeHealthReport> reports = plugin.process(set(REFERENCED, UNREFERENCED, ORPHANED, TestNodeRefs.REFS[0]));
+
+        assertThat(toStatuses(reports), is(equalTo(expectedStatuses())));
+    }
+
+    private static Map<NodeRef, NodeHealthStatus> expectedStatuses() {
+        Map<NodeRef, NodeHealthStatus> expected = new HashMap<>();
+        expected.put(REFERENCED, NodeHealthStatus.HEALTHY);
+        expected.put(UNREFERENCED, NodeHealthStatus.UNHEALTHY);
+        expected.put(ORPHANED, NodeHealthStatus.NONE);
+        expected.put(TestNodeRefs.REFS[0], NodeHealthStatus.NONE);
+        return expected;
+    }
+
+    private static Map<NodeRef, NodeHealthStatus> toStatuses(Set<NodeHealthReport> reports) {
+        return reports.stream().collect(Collectors.toMap(NodeHealthReport::getNodeRef, NodeHealthReport::getStatus));
+    }
+}
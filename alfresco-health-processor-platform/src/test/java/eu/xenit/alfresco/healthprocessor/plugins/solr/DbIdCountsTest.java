@@ -0,0 +1,36 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class DbIdCountsTest {
+
+    @Test
+    void countsDuplicates() {
+        DbIdCounts counts = new DbIdCounts(2);
+        counts.increment(10L);
+        counts.increment(11L);
+        counts.increment(10L);
+
+        assertEquals(2, counts.get(10L));
+        assertEquals(1, counts.get(11L));
+        assertEquals(0, counts.get(12L));
+        assertEquals(2, counts.size());
+    }
+
+    @Test
+    void growsBeyondExpectedSize() {
+        DbIdCounts counts = new DbIdCounts(1);
+        for (long dbId = 0; dbId < 1000; dbId++) {
+            counts.increment(dbId * 16);
+            counts.increment(dbId * 16);
+        }
+
+        assertEquals(1000, counts.size());
+        for (long dbId = 0; dbId < 1000; dbId++) {
+            assertEquals(2, counts.get(dbId * 16));
+            assertEquals(0, counts.get(dbId * 16 + 1));
+        }
+    }
+}
@@ -7,6 +7,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import eu.xenit.alfresco.healthprocessor.indexing.NodeBatch;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeStatusCache;
 import eu.xenit.alfresco.healthprocessor.plugins.solr.NodeIndexHealthReport.IndexHealthStatus;
 import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpoint;
 import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpointSelector;
@@ -16,7 +18,11 @@ import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -26,6 +32,8 @@ import org.apache.http.client.HttpResponseException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -36,7 +44,8 @@ class SolrIndexValidationHealthProcessorPluginTest {
     @Mock
     private NodeService nodeService;
 
-    @Mock
+    // Grouping the nodes of a batch per endpoint falls back to the stubbed selection per node
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private SearchEndpointSelector searchEndpointSelector;
 
     @Mock
@@ -374,4 +383,177 @@ class SolrIndexValidationHealthProcessorPluginTest {
                 IndexHealthStatus.EXCEPTION.formatReason(searchEndpoint)
         ))), "Expect all nodes to have a message");
     }
+
+    @Test
+    void process_nodeWithoutStatus() {
+        NodeRef nodeRef = TestNodeRefs.REFS[0];
+        when(nodeService.getNodeStatus(nodeRef)).thenReturn(null);
+
+        Set<NodeHealthReport> healthReports = healthProcessorPlugin.process(set(nodeRef));
+
+        assertEquals(1, healthReports.size());
+        NodeHealthReport healthReport = healthReports.iterator().next();
+        assertEquals(NodeHealthStatus.NONE, healthReport.getStatus());
+        assertEquals(set(SolrIndexValidationHealthProcessorPlugin.MSG_NO_NODE_STATUS), healthReport.getMessages());
+    }
+
+    @Test
+    void process_usesCachedNodeStatuses() throws IOException {
+        NodeStatusCache nodeStatusCache = new NodeStatusCache();
+        healthProcessorPlugin = new SolrIndexValidationHealthProcessorPlugin(nodeService, searchEndpointSelector,
+                solrRequestExecutor, nodeStatusCache);
+        SearchEndpoint searchEndpoint = new SearchEndpoint(URI.create("http://empty/"));
+        when(searchEndpointSelector.getSearchEndpointsForNode(Mockito.any())).thenReturn(set(searchEndpoint));
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(searchEndpoint), Mockito.any())).thenAnswer(
+                invocation -> new SolrSearchResult(invocation.getArgument(1, Set.class), Collections.emptySet(),
+                        Collections.emptySet(), Collections.emptySet()));
+
+        Set<NodeRef> nodeRefs = set(TestNodeRefs.REFS);
+        Map<NodeRef, Status> nodeStatuses = new HashMap<>();
+        for (NodeRef nodeRef : nodeRefs) {
+            nodeStatuses.put(nodeRef, new Status(1L, nodeRef, null, 1L, false));
+        }
+        nodeStatusCache.putAll(new NodeBatch(nodeRefs, nodeStatuses));
+
+        Set<NodeHealthReport> healthReports = healthProcessorPlugin.process(nodeRefs);
+
+        verifyNoInteractions(nodeService);
+        assertEquals(
+                Collections.singleton(NodeHealthStatus.HEALTHY),
+                healthReports.stream().map(NodeHealthReport::getStatus).collect(Collectors.toSet()),
+                "Expect all nodes to be healthy");
+    }
+
+    @Test
+    void process_checkTransaction_revalidatesCachedNodeStatuses() throws IOException {
+        NodeStatusCache nodeStatusCache = new NodeStatusCache();
+        healthProcessorPlugin = new SolrIndexValidationHealthProcessorPlugin(nodeService, searchEndpointSelector,
+                solrRequestExecutor, nodeStatusCache);
+        SearchEndpoint searchEndpoint = new SearchEndpoint(URI.create("http://empty/"));
+        when(solrRequestExecutor.isCheckTransaction()).thenReturn(true);
+        when(searchEndpointSelector.getSearchEndpointsForNode(Mockito.any())).thenReturn(set(searchEndpoint));
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(searchEndpoint), Mockito.any())).thenAnswer(
+                invocation -> new SolrSearchResult(invocation.getArgument(1, Set.class), Collections.emptySet(),
+                        Collections.emptySet(), Collections.emptySet()));
+
+        Set<NodeRef> nodeRefs = set(TestNodeRefs.REFS);
+        Map<NodeRef, Status> nodeStatuses = new HashMap<>();
+        for (NodeRef nodeRef : nodeRefs) {
+            nodeStatuses.put(nodeRef, new Status(1L, nodeRef, null, 1L, false));
+        }
+        nodeStatusCache.putAll(new NodeBatch(nodeRefs, nodeStatuses));
+        // The nodes have been modified since the indexing strategy fetched their status
+        when(nodeService.getNodeStatus(Mockito.any())).then(invocation -> {
+            NodeRef nodeRef = invocation.getArgument(0);
+            return new Status(1L, nodeRef, null, 2L, false);
+        });
+
+        healthProcessorPlugin.process(nodeRefs);
+
+        ArgumentCaptor<Set<Status>> searchedStatuses = ArgumentCaptor.forClass(Set.class);
+        verify(solrRequestExecutor).checkNodeIndexed(Mockito.eq(searchEndpoint), searchedStatuses.capture());
+        assertEquals(Collections.singleton(2L),
+                searchedStatuses.getValue().stream().map(Status::getDbTxnId).collect(Collectors.toSet()),
+                "Expect the current transaction of the nodes to be validated");
+    }
+
+    @Test
+    void process_multiple_endpoints_concurrently() throws IOException {
+        healthProcessorPlugin.setEndpointParallelism(2);
+        SearchEndpoint searchEndpoint1 = new SearchEndpoint(URI.create("http://empty/solr/index1/"));
+        SearchEndpoint searchEndpoint2 = new SearchEndpoint(URI.create("http://empty/solr/index2/"));
+        when(searchEndpointSelector.getSearchEndpointsForNode(Mockito.any())).thenReturn(
+                set(searchEndpoint1, searchEndpoint2));
+
+        when(nodeService.getNodeStatus(Mockito.any())).then(invocation -> {
+            NodeRef nodeRef = invocation.getArgument(0);
+            return new Status(1L, nodeRef, "1", 1L, false);
+        });
+
+        // Each search only completes once both endpoints are being searched at the same time
+        CountDownLatch searchesInProgress = new CountDownLatch(2);
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            searchesInProgress.countDown();
+            assertTrue(searchesInProgress.await(10, TimeUnit.SECONDS), "Expect endpoints to be searched concurrently");
+            return new SolrSearchResult(invocation.getArgument(1, Set.class), Collections.emptySet(),
+                    Collections.emptySet(), Collections.emptySet());
+        });
+
+        Set<NodeRef> nodeRefs = set(TestNodeRefs.REFS);
+        Set<NodeHealthReport> healthReports = healthProcessorPlugin.process(nodeRefs);
+
+        assertEquals(nodeRefs.size(), healthReports.size(),
+                "Expected an equal number of health reports as the number of passed noderefs");
+        assertTrue(healthReports.stream().map(NodeHealthReport::getMessages).allMatch(Predicate.isEqual(set(
+                IndexHealthStatus.FOUND.formatReason(searchEndpoint1),
+                IndexHealthStatus.FOUND.formatReason(searchEndpoint2)
+        ))), "Expect all nodes to be found in both endpoints");
+    }
+
+    @Test
+    void process_multiple_endpoints_concurrently_one_endpoint_times_out() throws IOException {
+        healthProcessorPlugin.setEndpointParallelism(2);
+        healthProcessorPlugin.setEndpointTimeoutMs(100);
+        SearchEndpoint searchEndpoint1 = new SearchEndpoint(URI.create("http://empty/solr/index1/"));
+        SearchEndpoint searchEndpoint2 = new SearchEndpoint(URI.create("http://empty/solr/index2/"));
+        when(searchEndpointSelector.getSearchEndpointsForNode(Mockito.any())).thenReturn(
+                set(searchEndpoint1, searchEndpoint2));
+
+        when(nodeService.getNodeStatus(Mockito.any())).then(invocation -> {
+            NodeRef nodeRef = invocation.getArgument(0);
+            return new Status(1L, nodeRef, "1", 1L, false);
+        });
+
+        // Endpoint 1 hangs until the search is cancelled, endpoint 2 says they are present
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(searchEndpoint1), Mockito.any())).thenAnswer(
+                invocation -> {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    return null;
+                });
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(searchEndpoint2), Mockito.any())).thenAnswer(
+                invocation -> new SolrSearchResult(invocation.getArgument(1, Set.class), Collections.emptySet(),
+                        Collections.emptySet(), Collections.emptySet()));
+
+        Set<NodeRef> nodeRefs = set(TestNodeRefs.REFS);
+        Set<NodeHealthReport> healthReports = healthProcessorPlugin.process(nodeRefs);
+
+        assertEquals(nodeRefs.size(), healthReports.size(),
+                "Expected an equal number of health reports as the number of passed noderefs");
+        assertEquals(
+                Collections.singleton(NodeHealthStatus.NONE),
+                healthReports.stream().map(NodeHealthReport::getStatus).collect(Collectors.toSet()),
+                "Expect all nodes to be none");
+        assertTrue(healthReports.stream().map(NodeHealthReport::getMessages).allMatch(Predicate.isEqual(set(
+                IndexHealthStatus.EXCEPTION.formatReason(searchEndpoint1),
+                IndexHealthStatus.FOUND.formatReason(searchEndpoint2)
+        ))), "Expect all nodes to have a message");
+    }
+
+    @Test
+    void process_single_endpoint_times_out() throws IOException {
+        healthProcessorPlugin.setEndpointTimeoutMs(100);
+        SearchEndpoint searchEndpoint = new SearchEndpoint(URI.create("http://empty/solr/index1/"));
+        when(searchEndpointSelector.getSearchEndpointsForNode(Mockito.any())).thenReturn(set(searchEndpoint));
+
+        when(nodeService.getNodeStatus(Mockito.any())).then(invocation -> {
+            NodeRef nodeRef = invocation.getArgument(0);
+            return new Status(1L, nodeRef, "1", 1L, false);
+        });
+
+        // The endpoint hangs until the search is cancelled
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(searchEndpoint), Mockito.any())).thenAnswer(
+                invocation -> {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    return null;
+                });
+
+        Set<NodeRef> nodeRefs = set(TestNodeRefs.REFS);
+        Set<NodeHealthReport> healthReports = healthProcessorPlugin.process(nodeRefs);
+
+        assertEquals(nodeRefs.size(), healthReports.size(),
+                "Expected an equal number of health reports as the number of passed noderefs");
+        assertTrue(healthReports.stream().map(NodeHealthReport::getMessages).allMatch(Predicate.isEqual(set(
+                IndexHealthStatus.EXCEPTION.formatReason(searchEndpoint)
+        ))), "Expect all nodes to report an exception for the endpoint");
+    }
 }
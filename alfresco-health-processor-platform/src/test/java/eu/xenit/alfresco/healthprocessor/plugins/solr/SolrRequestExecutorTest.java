@@ -15,6 +15,7 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -64,10 +65,10 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(999L, LAST_INDEXED_TX));
         nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX + 1));
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
-                .withParameter("q", "DBID:10 OR DBID:11 OR DBID:100 OR DBID:999 OR DBID:1000")
-                .withParameter("fl", "DBID")
-                .withParameter("wt", "json")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}10,11,100,999,1000")
+                .withFormParameter("fl", "DBID")
+                .withFormParameter("wt", "json")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 3, \"docs\": ["
@@ -101,10 +102,10 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(100L, 5L));
         nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX + 1));
         String q = "(DBID:10 AND INTXID:1) OR (DBID:11 AND INTXID:2) OR (DBID:20 AND INTXID:2) OR (DBID:100 AND INTXID:5) OR (DBID:1000 AND INTXID:" + (LAST_INDEXED_TX + 1) + ")";
-        httpClientMock.onGet("http://nowhere/solr/index/select")
-                .withParameter("q", q)
-                .withParameter("fl", "DBID")
-                .withParameter("wt", "json")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", q)
+                .withFormParameter("fl", "DBID")
+                .withFormParameter("wt", "json")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 2, \"docs\": ["
@@ -140,10 +141,10 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(10L, 3L));
         nodeRefs.add(randomNodeRefStatus(11L, 2L));
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
-                .withParameter("q", "DBID:10 OR DBID:11")
-                .withParameter("fl", "DBID")
-                .withParameter("wt", "json")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}10,11")
+                .withFormParameter("fl", "DBID")
+                .withFormParameter("wt", "json")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 2, \"docs\": ["
@@ -160,10 +161,10 @@ class SolrRequestExecutorTest {
         assertEquals(SetUtil.set(), toDbIds(solrSearchResult.getDuplicate()));
 
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
-                .withParameter("q", "(DBID:10 AND INTXID:3) OR (DBID:11 AND INTXID:2)")
-                .withParameter("fl", "DBID")
-                .withParameter("wt", "json")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "(DBID:10 AND INTXID:3) OR (DBID:11 AND INTXID:2)")
+                .withFormParameter("fl", "DBID")
+                .withFormParameter("wt", "json")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 1, \"docs\": ["
@@ -192,7 +193,7 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(999L, LAST_INDEXED_TX));
         nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX));
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 5, \"docs\": ["
@@ -223,7 +224,7 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(999L, LAST_INDEXED_TX));
         nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX + 1));
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
                 .doReturnWithStatus(400);
 
         assertThrows(HttpResponseException.class, () -> {
@@ -243,7 +244,7 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(999L, LAST_INDEXED_TX));
         nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX + 1));
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 0, \"docs\": ["
@@ -270,7 +271,7 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(999L, LAST_INDEXED_TX));
         nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX));
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 5, \"docs\": ["
@@ -299,8 +300,8 @@ class SolrRequestExecutorTest {
         nodeRefs.add(randomNodeRefStatus(10L, LAST_INDEXED_TX - 10));
         nodeRefs.add(randomNodeRefStatus(11L, LAST_INDEXED_TX - 9));
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
-                .withParameter("rows", "4")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("rows", "4")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 6, \"docs\": ["
@@ -311,8 +312,8 @@ class SolrRequestExecutorTest {
                         + "]}"
                         + "}");
 
-        httpClientMock.onGet("http://nowhere/solr/index/select")
-                .withParameter("rows", "6")
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("rows", "6")
                 .doReturnJSON("{"
                         + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
                         + "\"response\": { \"numFound\": 6, \"docs\": ["
@@ -333,6 +334,127 @@ class SolrRequestExecutorTest {
         assertEquals(SetUtil.set(10L), toDbIds(solrSearchResult.getDuplicate()));
     }
 
+    @Test
+    void checkDuplicateNodesWithFacetCounts() throws IOException {
+        solrRequestExecutor.setFacetCounts(true);
+        SearchEndpoint endpoint = new SearchEndpoint(URI.create("http://nowhere/solr/index/"));
+
+        List<Status> nodeRefs = new ArrayList<>();
+
+        nodeRefs.add(randomNodeRefStatus(10L, LAST_INDEXED_TX - 10));
+        nodeRefs.add(randomNodeRefStatus(11L, LAST_INDEXED_TX - 9));
+        nodeRefs.add(randomNodeRefStatus(100L, 5L));
+        nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX + 1));
+
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("rows", "0")
+                .withFormParameter("facet", "true")
+                .withFormParameter("facet.field", "DBID")
+                .doReturnJSON("{"
+                        + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
+                        + "\"response\": { \"numFound\": 7, \"docs\": []},"
+                        + "\"facet_counts\": { \"facet_queries\": {}, \"facet_fields\": {"
+                        + "\"DBID\": [\"10\", 6, \"11\", 1]"
+                        + "}}"
+                        + "}");
+
+        SolrSearchResult solrSearchResult = solrRequestExecutor.checkNodeIndexed(endpoint, nodeRefs);
+
+        assertEquals(SetUtil.set(11L), toDbIds(solrSearchResult.getFound()));
+        assertEquals(SetUtil.set(100L), toDbIds(solrSearchResult.getMissing()));
+        assertEquals(SetUtil.set(1000L), toDbIds(solrSearchResult.getNotIndexed()));
+        assertEquals(SetUtil.set(10L), toDbIds(solrSearchResult.getDuplicate()));
+    }
+
+    @Test
+    void checkNodesAfterCachedLastIndexedTxAreNotSearched() throws IOException {
+        solrRequestExecutor.setLastIndexedTxTtlMs(60000);
+        SearchEndpoint endpoint = new SearchEndpoint(URI.create("http://nowhere/solr/index/"));
+
+        List<Status> nodeRefs = new ArrayList<>();
+        nodeRefs.add(randomNodeRefStatus(10L, LAST_INDEXED_TX - 10));
+        nodeRefs.add(randomNodeRefStatus(1000L, LAST_INDEXED_TX + 1));
+
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}10,1000")
+                .doReturnJSON("{"
+                        + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
+                        + "\"response\": { \"numFound\": 1, \"docs\": [{\"DBID\": 10 }]}"
+                        + "}");
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}11")
+                .doReturnJSON("{"
+                        + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
+                        + "\"response\": { \"numFound\": 1, \"docs\": [{\"DBID\": 11 }]}"
+                        + "}");
+
+        // The first search finds out the last indexed transaction
+        SolrSearchResult solrSearchResult = solrRequestExecutor.checkNodeIndexed(endpoint, nodeRefs);
+        assertEquals(SetUtil.set(10L), toDbIds(solrSearchResult.getFound()));
+        assertEquals(SetUtil.set(1000L), toDbIds(solrSearchResult.getNotIndexed()));
+
+        // Later searches leave out the nodes that can not have been indexed yet
+        List<Status> nextNodeRefs = new ArrayList<>();
+        nextNodeRefs.add(randomNodeRefStatus(11L, LAST_INDEXED_TX - 9));
+        nextNodeRefs.add(randomNodeRefStatus(1001L, LAST_INDEXED_TX + 2));
+        solrSearchResult = solrRequestExecutor.checkNodeIndexed(endpoint, nextNodeRefs);
+        assertEquals(SetUtil.set(11L), toDbIds(solrSearchResult.getFound()));
+        assertEquals(SetUtil.set(1001L), toDbIds(solrSearchResult.getNotIndexed()));
+
+        // No search at all when none of the nodes can have been indexed yet
+        List<Status> notIndexedNodeRefs = new ArrayList<>();
+        notIndexedNodeRefs.add(randomNodeRefStatus(1002L, LAST_INDEXED_TX + 3));
+        solrSearchResult = solrRequestExecutor.checkNodeIndexed(endpoint, notIndexedNodeRefs);
+        assertEquals(SetUtil.set(1002L), toDbIds(solrSearchResult.getNotIndexed()));
+
+        httpClientMock.verify().post("http://nowhere/solr/index/select").called(2);
+    }
+
+    @Test
+    void checkCachedLastIndexedTxOnlyMovesForward() throws IOException {
+        solrRequestExecutor.setLastIndexedTxTtlMs(60000);
+        SearchEndpoint endpoint = new SearchEndpoint(URI.create("http://nowhere/solr/index/"));
+
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}10")
+                .doReturnJSON("{"
+                        + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
+                        + "\"response\": { \"numFound\": 1, \"docs\": [{\"DBID\": 10 }]}"
+                        + "}");
+        // Responses of an older search, and without a last indexed transaction
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}11")
+                .doReturnJSON("{"
+                        + "\"lastIndexedTx\":" + (LAST_INDEXED_TX - 5) + ","
+                        + "\"response\": { \"numFound\": 1, \"docs\": [{\"DBID\": 11 }]}"
+                        + "}");
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}12")
+                .doReturnJSON("{"
+                        + "\"response\": { \"numFound\": 1, \"docs\": [{\"DBID\": 12 }]}"
+                        + "}");
+
+        solrRequestExecutor.checkNodeIndexed(endpoint,
+                Collections.singletonList(randomNodeRefStatus(10L, LAST_INDEXED_TX - 10)));
+        solrRequestExecutor.checkNodeIndexed(endpoint,
+                Collections.singletonList(randomNodeRefStatus(11L, LAST_INDEXED_TX - 10)));
+        solrRequestExecutor.checkNodeIndexed(endpoint,
+                Collections.singletonList(randomNodeRefStatus(12L, LAST_INDEXED_TX - 10)));
+
+        // Nodes up to the highest last indexed transaction are still searched
+        httpClientMock.onPost("http://nowhere/solr/index/select")
+                .withFormParameter("q", "{!terms f=DBID}13")
+                .doReturnJSON("{"
+                        + "\"lastIndexedTx\":" + LAST_INDEXED_TX + ","
+                        + "\"response\": { \"numFound\": 1, \"docs\": [{\"DBID\": 13 }]}"
+                        + "}");
+        SolrSearchResult solrSearchResult = solrRequestExecutor.checkNodeIndexed(endpoint,
+                Collections.singletonList(randomNodeRefStatus(13L, LAST_INDEXED_TX)));
+        assertEquals(SetUtil.set(13L), toDbIds(solrSearchResult.getFound()));
+
+        httpClientMock.verify().post("http://nowhere/solr/index/select").called(4);
+    }
+
     @Test
     void performNodeCommandReindex() throws IOException {
         SearchEndpoint endpoint = new SearchEndpoint(URI.create("http://nowhere/solr/index/"));
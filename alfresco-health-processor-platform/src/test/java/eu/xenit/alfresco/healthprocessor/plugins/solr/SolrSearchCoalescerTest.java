@@ -0,0 +1,129 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import static eu.xenit.alfresco.healthprocessor.util.SetUtil.set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint.SearchEndpoint;
+import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.alfresco.service.cmr.repository.NodeRef.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+class SolrSearchCoalescerTest {
+
+    private static final SearchEndpoint ENDPOINT = new SearchEndpoint(URI.create("http://empty/solr/index/"));
+
+    private SolrRequestExecutor solrRequestExecutor;
+
+    @BeforeEach
+    void setup() {
+        solrRequestExecutor = mock(SolrRequestExecutor.class);
+    }
+
+    @Test
+    void checkNodeIndexed_combinesConcurrentBatches() throws Exception {
+        // The first batch waits long enough for the second one to fill up the search
+        SolrSearchCoalescer coalescer = new SolrSearchCoalescer(solrRequestExecutor, 4, TimeUnit.MINUTES.toMillis(1));
+        Set<Status> firstBatch = set(status(1), status(2));
+        Set<Status> secondBatch = set(status(3), status(4));
+        // Node 2 is missing, node 3 is duplicated
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(ENDPOINT), Mockito.any())).thenAnswer(invocation -> {
+            Collection<Status> statuses = invocation.getArgument(1);
+            SolrSearchResult result = new SolrSearchResult();
+            for (Status status : statuses) {
+                if (status.getDbId() == 2L) {
+                    result.getMissing().add(status);
+                } else if (status.getDbId() == 3L) {
+                    result.getDuplicate().add(status);
+                } else {
+                    result.getFound().add(status);
+                }
+            }
+            return result;
+        });
+
+        CompletableFuture<SolrSearchResult> firstResult = CompletableFuture.supplyAsync(() -> check(coalescer,
+                firstBatch));
+        SolrSearchResult secondResult = awaitPendingSearch(coalescer, secondBatch, firstResult);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Status>> searched = ArgumentCaptor.forClass(Collection.class);
+        verify(solrRequestExecutor, times(1)).checkNodeIndexed(Mockito.eq(ENDPOINT), searched.capture());
+        Set<Status> allNodes = new HashSet<>(firstBatch);
+        allNodes.addAll(secondBatch);
+        assertEquals(allNodes, new HashSet<>(searched.getValue()));
+
+        assertEquals(dbIds(firstResult.get().getFound()), set(1L));
+        assertEquals(dbIds(firstResult.get().getMissing()), set(2L));
+        assertEquals(dbIds(secondResult.getDuplicate()), set(3L));
+        assertEquals(dbIds(secondResult.getFound()), set(4L));
+    }
+
+    @Test
+    void checkNodeIndexed_singleBatchIsSentAfterDelay() throws IOException {
+        SolrSearchCoalescer coalescer = new SolrSearchCoalescer(solrRequestExecutor, 1000, 10);
+        Set<Status> batch = set(status(1));
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(ENDPOINT), Mockito.any())).thenAnswer(invocation -> {
+            Collection<Status> statuses = invocation.getArgument(1);
+            return new SolrSearchResult(new HashSet<>(statuses), Collections.emptySet(), Collections.emptySet(),
+                    Collections.emptySet());
+        });
+
+        assertEquals(batch, coalescer.checkNodeIndexed(ENDPOINT, batch).getFound());
+    }
+
+    @Test
+    void checkNodeIndexed_exceptionIsThrownForEveryBatch() throws IOException {
+        SolrSearchCoalescer coalescer = new SolrSearchCoalescer(solrRequestExecutor, 1, 10);
+        when(solrRequestExecutor.checkNodeIndexed(Mockito.eq(ENDPOINT), Mockito.any()))
+                .thenThrow(new IOException("My server is broken"));
+
+        assertThrows(IOException.class, () -> coalescer.checkNodeIndexed(ENDPOINT, set(status(1))));
+    }
+
+    /**
+     * Sends the second batch once the first one is waiting for others to join
+     */
+    private static SolrSearchResult awaitPendingSearch(SolrSearchCoalescer coalescer, Set<Status> batch,
+            CompletableFuture<SolrSearchResult> pending) throws InterruptedException, ExecutionException {
+        // Give the first batch the time to start its search
+        Thread.sleep(100);
+        assertFalse(pending.isDone());
+        return CompletableFuture.supplyAsync(() -> check(coalescer, batch)).get();
+    }
+
+    private static SolrSearchResult check(SolrSearchCoalescer coalescer, Set<Status> batch) {
+        try {
+            return coalescer.checkNodeIndexed(ENDPOINT, batch);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Status status(long dbId) {
+        return new Status(dbId, TestNodeRefs.REFS[(int) dbId], "1", 1L, false);
+    }
+
+    private static Set<Long> dbIds(Set<Status> statuses) {
+        Set<Long> ret = new HashSet<>();
+        statuses.forEach(status -> ret.add(status.getDbId()));
+        return ret;
+    }
+}
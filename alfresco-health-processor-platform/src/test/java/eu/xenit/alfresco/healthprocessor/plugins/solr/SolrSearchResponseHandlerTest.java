@@ -0,0 +1,34 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class SolrSearchResponseHandlerTest {
+
+    @Test
+    void parse() throws IOException {
+        String json = "{"
+                + "\"responseHeader\": { \"status\": 0, \"params\": { \"q\": \"{!terms f=DBID}10,11\" } },"
+                + "\"response\": { \"numFound\": 3, \"start\": 0, \"docs\": ["
+                + "{\"DBID\": 10, \"INTXID\": 5 },"
+                + "{\"_version_\": 1, \"DBID\": 11 },"
+                + "{\"DBID\": 10 }"
+                + "]},"
+                + "\"lastIndexedTx\": 1000,"
+                + "\"processedDenies\": true"
+                + "}";
+
+        SolrSearchResponse response = new SolrSearchResponseHandler(2)
+                .parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3L, response.getNumFound());
+        assertEquals(1000L, response.getLastIndexedTx());
+        assertEquals(2, response.getDbIdCounts().get(10L));
+        assertEquals(1, response.getDbIdCounts().get(11L));
+        assertEquals(2, response.getDbIdCounts().size());
+    }
+}
@@ -0,0 +1,89 @@
+package eu.xenit.alfresco.healthprocessor.plugins.solr.endpoint;
+
+import static eu.xenit.alfresco.healthprocessor.util.SetUtil.set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import eu.xenit.alfresco.healthprocessor.plugins.solr.filter.FilteringSearchEndpointSelector;
+import eu.xenit.alfresco.healthprocessor.plugins.solr.filter.NodeStoreFilter;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeRef.Status;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.junit.jupiter.api.Test;
+
+class AggregateSearchEndpointSelectorTest {
+
+    private static final SearchEndpoint shard1 = new SearchEndpoint(URI.create("http://empty/solr/shard1/"));
+    private static final SearchEndpoint shard2 = new SearchEndpoint(URI.create("http://empty/solr/shard2/"));
+    private static final SearchEndpoint shard2Replica = new SearchEndpoint(URI.create("http://empty/solr/shard2b/"));
+    private static final SearchEndpoint archive = new SearchEndpoint(URI.create("http://empty/solr/archive/"));
+
+    private static SearchEndpointSelector workspaceRange(long start, long end, SearchEndpoint endpoint) {
+        return new FilteringSearchEndpointSelector(new DbIdRangeSearchEndpointSelector(start, end, endpoint),
+                new NodeStoreFilter(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE));
+    }
+
+    private static Status status(long dbId, StoreRef storeRef) {
+        return new Status(dbId, new NodeRef(storeRef, UUID.randomUUID().toString()), "1", 1L, false);
+    }
+
+    @Test
+    void getSearchEndpointsForNodes() {
+        SearchEndpointSelector selector = new AggregateSearchEndpointSelector(set(
+                workspaceRange(0, 100, shard1),
+                workspaceRange(100, 200, shard2),
+                workspaceRange(150, 300, shard2Replica),
+                new FilteringSearchEndpointSelector(new AlwaysSearchEndpointSelector("", archive),
+                        new NodeStoreFilter(new StoreRef("archive://SpacesStore")))
+        ));
+
+        Status node0 = status(0, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node99 = status(99, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node100 = status(100, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node150 = status(150, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node299 = status(299, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node300 = status(300, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status archived = status(50, new StoreRef("archive://SpacesStore"));
+        List<Status> nodes = Arrays.asList(node0, node99, node100, node150, node299, node300, archived);
+
+        Map<SearchEndpoint, Set<Status>> expected = new HashMap<>();
+        expected.put(shard1, set(node0, node99));
+        expected.put(shard2, set(node100, node150));
+        expected.put(shard2Replica, set(node150, node299));
+        expected.put(archive, set(archived));
+
+        assertEquals(expected, selector.getSearchEndpointsForNodes(nodes));
+
+        // Same routing as the selection per node
+        for (Status node : nodes) {
+            Set<SearchEndpoint> endpoints = selector.getSearchEndpointsForNode(node);
+            expected.forEach((endpoint, expectedNodes) ->
+                    assertEquals(expectedNodes.contains(node), endpoints.contains(endpoint)));
+        }
+    }
+
+    @Test
+    void getSearchEndpointsForNodes_unfilteredRanges() {
+        SearchEndpointSelector selector = new AggregateSearchEndpointSelector(set(
+                new DbIdRangeSearchEndpointSelector(10L, 20L, shard1),
+                new DbIdRangeSearchEndpointSelector(30L, 40L, shard2)
+        ));
+
+        Status node5 = status(5, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node10 = status(10, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node25 = status(25, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        Status node39 = status(39, StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+
+        Map<SearchEndpoint, Set<Status>> expected = new HashMap<>();
+        expected.put(shard1, set(node10));
+        expected.put(shard2, set(node39));
+
+        assertEquals(expected, selector.getSearchEndpointsForNodes(Arrays.asList(node5, node10, node25, node39)));
+    }
+}
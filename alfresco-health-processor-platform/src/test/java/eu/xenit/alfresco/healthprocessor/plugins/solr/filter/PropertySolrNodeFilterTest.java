@@ -1,16 +1,23 @@
 package eu.xenit.alfresco.healthprocessor.plugins.solr.filter;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import org.alfresco.model.ContentModel;
+import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 import org.alfresco.service.cmr.repository.NodeService;
@@ -27,6 +34,9 @@ class PropertySolrNodeFilterTest {
     @Mock
     private NodeService nodeService;
 
+    @Mock
+    private NodeDAO nodeDAO;
+
     private SolrNodeFilter filter;
 
     @BeforeEach
@@ -37,13 +47,18 @@ class PropertySolrNodeFilterTest {
         filter = new PropertySolrNodeFilter(nodeService, propertyMap);
     }
 
+    private void stubProperties(Map<QName, Serializable> properties) {
+        when(nodeService.getProperty(eq(TestNodeRefs.REF), any()))
+                .thenAnswer(invocation -> properties.get(invocation.getArgument(1, QName.class)));
+    }
+
     @Test
     void testPropertyFilterNotMatching() {
         Map<QName, Serializable> properties = new HashMap<>();
         properties.put(ContentModel.PROP_CREATOR, "admin");
         properties.put(ContentModel.PROP_AUTHOR, "Lars");
 
-        when(nodeService.getProperties(TestNodeRefs.REF)).thenReturn(properties);
+        stubProperties(properties);
 
         assertFalse(filter.isIgnored(new Status(1L, TestNodeRefs.REF, "1", 1L, false)));
     }
@@ -54,7 +69,7 @@ class PropertySolrNodeFilterTest {
         properties.put(ContentModel.PROP_CREATOR, "System");
         properties.put(ContentModel.PROP_AUTHOR, "Lars");
 
-        when(nodeService.getProperties(TestNodeRefs.REF)).thenReturn(properties);
+        stubProperties(properties);
 
         assertTrue(filter.isIgnored(new Status(1L, TestNodeRefs.REF, "1", 1L, false)));
     }
@@ -66,7 +81,7 @@ class PropertySolrNodeFilterTest {
         properties.put(ContentModel.PROP_CREATOR, "admin");
         properties.put(ContentModel.PROP_AUTHOR, "Lars");
 
-        when(nodeService.getProperties(TestNodeRefs.REF)).thenReturn(properties);
+        stubProperties(properties);
 
         assertTrue(filter.isIgnored(new Status(1L, TestNodeRefs.REF, "1", 1L, false)));
     }
@@ -77,7 +92,7 @@ class PropertySolrNodeFilterTest {
         properties.put(ContentModel.PROP_CREATOR, new ArrayList<>(Arrays.asList("admin", "System")));
         properties.put(ContentModel.PROP_AUTHOR, "Lars");
 
-        when(nodeService.getProperties(TestNodeRefs.REF)).thenReturn(properties);
+        stubProperties(properties);
 
         assertTrue(filter.isIgnored(new Status(1L, TestNodeRefs.REF, "1", 1L, false)));
     }
@@ -88,7 +103,7 @@ class PropertySolrNodeFilterTest {
         properties.put(ContentModel.PROP_CREATOR, new ArrayList<>(Arrays.asList("admin", "Lars")));
         properties.put(ContentModel.PROP_AUTHOR, "Lars");
 
-        when(nodeService.getProperties(TestNodeRefs.REF)).thenReturn(properties);
+        stubProperties(properties);
 
         assertFalse(filter.isIgnored(new Status(1L, TestNodeRefs.REF, "1", 1L, false)));
     }
@@ -100,7 +115,36 @@ class PropertySolrNodeFilterTest {
 
     @Test
     void testPropertyFilterSkipsNodesThatThrowException() {
-        when(nodeService.getProperties(TestNodeRefs.REF)).thenThrow(new InvalidNodeRefException(TestNodeRefs.REF));
+        when(nodeService.getProperty(eq(TestNodeRefs.REF), any())).thenThrow(new InvalidNodeRefException(TestNodeRefs.REF));
         assertFalse(filter.isIgnored(new Status(1L, TestNodeRefs.REF, "1", 1L, false)));
     }
+
+    @Test
+    void testFilterIgnoredLoadsNodesInBulk() {
+        Map<QName, Serializable> propertyMap = new HashMap<>();
+        propertyMap.put(ContentModel.PROP_IS_INDEXED, false);
+        filter = new PropertySolrNodeFilter(nodeService, nodeDAO, propertyMap);
+
+        Status ignored = new Status(1L, TestNodeRefs.REFS[1], "1", 1L, false);
+        Status notIgnored = new Status(2L, TestNodeRefs.REFS[2], "1", 1L, false);
+        Status deleted = new Status(3L, TestNodeRefs.REFS[3], "1", 1L, true);
+        when(nodeService.getProperty(TestNodeRefs.REFS[1], ContentModel.PROP_IS_INDEXED)).thenReturn(false);
+        when(nodeService.getProperty(TestNodeRefs.REFS[2], ContentModel.PROP_IS_INDEXED)).thenReturn(null);
+
+        assertEquals(Arrays.asList(notIgnored, deleted), filter.filterIgnored(Arrays.asList(ignored, notIgnored,
+                deleted)));
+        // Deleted nodes are not loaded
+        verify(nodeDAO).cacheNodesById(Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    void testAggregateFilterAppliesPropertyFilterLast() {
+        filter = new PropertySolrNodeFilter(nodeService, nodeDAO, new HashMap<>());
+        SolrNodeFilter aggregateFilter = new AggregateFilter(Arrays.asList(filter, new DeletedNodeFilter()));
+
+        assertEquals(Collections.emptyList(), aggregateFilter.filterIgnored(
+                Collections.singletonList(new Status(1L, TestNodeRefs.REF, "1", 1L, true))));
+        // The deleted node was already ignored, so nothing is left to load
+        verifyNoInteractions(nodeDAO);
+    }
 }
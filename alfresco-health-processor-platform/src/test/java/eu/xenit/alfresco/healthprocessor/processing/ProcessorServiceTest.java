@@ -5,31 +5,50 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import eu.xenit.alfresco.healthprocessor.fixer.NodeFixService;
 import eu.xenit.alfresco.healthprocessor.indexing.AssertIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.indexing.IndexingStrategy;
+import eu.xenit.alfresco.healthprocessor.indexing.NodeStatusCache;
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingConfiguration;
+import eu.xenit.alfresco.healthprocessor.indexing.contentstore.ContentStoreIndexingStrategy;
 import eu.xenit.alfresco.healthprocessor.plugins.AssertHealthProcessorPlugin;
+import eu.xenit.alfresco.healthprocessor.plugins.OrphanedContentHealthProcessorPlugin;
 import eu.xenit.alfresco.healthprocessor.plugins.api.HealthProcessorPlugin;
 import eu.xenit.alfresco.healthprocessor.reporter.ReportsService;
+import eu.xenit.alfresco.healthprocessor.reporter.api.NodeHealthReport;
 import eu.xenit.alfresco.healthprocessor.util.AssertTransactionHelper;
+import eu.xenit.alfresco.healthprocessor.util.InMemoryAttributeStore;
 import eu.xenit.alfresco.healthprocessor.util.TestNodeRefs;
 import eu.xenit.alfresco.healthprocessor.util.TransactionHelper;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import org.alfresco.repo.cache.MemoryCache;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.service.cmr.repository.NodeRef;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 
 class ProcessorServiceTest {
 
     private AssertHealthProcessorPlugin processorPlugin;
     private AssertIndexingStrategy indexingStrategy;
+    private ReportsService reportsService;
 
     private ProcessorServiceBuilder builder;
 
@@ -38,7 +57,7 @@ class ProcessorServiceTest {
         AssertTransactionHelper transactionHelper = new AssertTransactionHelper();
         processorPlugin = new AssertHealthProcessorPlugin();
         indexingStrategy = new AssertIndexingStrategy();
-        ReportsService reportsService = mock(ReportsService.class);
+        reportsService = mock(ReportsService.class);
         NodeFixService nodeFixService = new NodeFixService(Collections.emptyList(), transactionHelper);
         builder = ProcessorServiceBuilder.create()
                 .config(ProcConfigUtil.defaultConfig())
@@ -79,6 +98,148 @@ class ProcessorServiceTest {
         processorPlugin.expectInvocation(TestNodeRefs.REFS[1], TestNodeRefs.REFS[0]);
     }
 
+    @Test
+    void execute_cycleDone() {
+        indexingStrategy.nextAnswer(TestNodeRefs.REFS[0]);
+
+        builder.build().execute();
+
+        verify(reportsService).onCycleDone();
+    }
+
+    @Test
+    void execute_cycleCompletedByOtherNode() {
+        indexingStrategy.nextAnswer(TestNodeRefs.REFS[0]);
+        indexingStrategy.cycleCompletedByOtherNode();
+        ProcessorService processorService = builder.build();
+
+        processorService.execute();
+
+        assertThat(processorService.getState(), is(ProcessorState.IDLE));
+        processorPlugin.expectInvocation(TestNodeRefs.REFS[0]);
+        verify(reportsService, never()).onCycleDone();
+    }
+
+    @Test
+    void execute_withPrefetching() {
+        indexingStrategy.nextAnswer(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1], TestNodeRefs.REFS[2]);
+        ProcessorService processorService = builder
+                .config(new ProcessorConfiguration(true, 2, -1, true, "System").withPrefetchBatches(1))
+                .build();
+
+        processorService.execute();
+
+        indexingStrategy.expectGetNextNodeIdsInvocations(3);
+        indexingStrategy.expectPrefetchInvocations(2);
+        processorPlugin.expectInvocation(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]);
+        processorPlugin.expectInvocation(TestNodeRefs.REFS[2]);
+        assertThat(processorService.getState(), is(ProcessorState.IDLE));
+    }
+
+    @Test
+    void execute_withoutPrefetching() {
+        indexingStrategy.nextAnswer(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]);
+        ProcessorService processorService = builder.build();
+
+        processorService.execute();
+
+        indexingStrategy.expectPrefetchInvocations(0);
+    }
+
+    @Test
+    void execute_withPrefetching_pluginThrowsException() {
+        indexingStrategy.nextAnswer(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1], TestNodeRefs.REFS[2]);
+        ProcessorService processorService = builder
+                .config(new ProcessorConfiguration(true, 2, -1, true, "System").withPrefetchBatches(1))
+                .plugins(Collections.singletonList(new ThrowingHealthProcessorPlugin()))
+                .build();
+
+        assertThrows(IllegalStateException.class, processorService::execute);
+        assertThat(processorService.getState(), is(ProcessorState.FAILED));
+        indexingStrategy.expectGetNextNodeIdsInvocations(1);
+    }
+
+    @Test
+    void execute_withWorkerThreads_withoutPrefetching() {
+        indexingStrategy.nextAnswer(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 4));
+        ProcessorService processorService = builder
+                .config(new ProcessorConfiguration(true, 2, -1, true, "System")
+                        .withWorkerThreads(2)
+                        .withPrefetchBatches(1))
+                .build();
+
+        processorService.execute();
+
+        indexingStrategy.expectPrefetchInvocations(0);
+        indexingStrategy.expectAcknowledgedBatches(2);
+    }
+
+    @Test
+    void execute_withWorkerThreads() {
+        int numberOfNodes = 10;
+        indexingStrategy.nextAnswer(Arrays.copyOfRange(TestNodeRefs.REFS, 0, numberOfNodes));
+        ProcessorService processorService = builder
+                .config(new ProcessorConfiguration(true, 2, -1, true, "System").withWorkerThreads(3))
+                .build();
+
+        processorService.execute();
+
+        assertThat(processorService.getState(), is(ProcessorState.IDLE));
+        assertThat(processorPlugin.getNumberOfInvocations(), is(5));
+        indexingStrategy.expectGetNextNodeIdsInvocations(6);
+        indexingStrategy.expectAcknowledgedBatches(5);
+    }
+
+    @Test
+    void execute_withConcurrentPlugins() {
+        AssertHealthProcessorPlugin otherPlugin = new AssertHealthProcessorPlugin();
+        AssertHealthProcessorPlugin disabledPlugin = new AssertHealthProcessorPlugin(false);
+        indexingStrategy.nextAnswer(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1], TestNodeRefs.REFS[2]);
+        ProcessorService processorService = builder
+                .config(new ProcessorConfiguration(true, 2, -1, true, "System").withConcurrentPlugins(true))
+                .plugin(otherPlugin)
+                .plugin(disabledPlugin)
+                .build();
+
+        processorService.execute();
+
+        assertThat(processorService.getState(), is(ProcessorState.IDLE));
+        for (AssertHealthProcessorPlugin plugin : Arrays.asList(processorPlugin, otherPlugin)) {
+            plugin.expectInvocation(TestNodeRefs.REFS[0], TestNodeRefs.REFS[1]);
+            plugin.expectInvocation(TestNodeRefs.REFS[2]);
+        }
+        disabledPlugin.expectNoInvocation();
+    }
+
+    @Test
+    void execute_withWorkerThreads_pluginThrowsException() {
+        indexingStrategy.nextAnswer(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 10));
+        ProcessorService processorService = builder
+                .config(new ProcessorConfiguration(true, 2, -1, true, "System").withWorkerThreads(3))
+                .plugins(Collections.singletonList(new ThrowingHealthProcessorPlugin()))
+                .build();
+
+        assertThrows(IllegalStateException.class, processorService::execute);
+        assertThat(processorService.getState(), is(ProcessorState.FAILED));
+    }
+
+    @Test
+    void execute_withWorkerThreads_pluginThrowsException_workersStopBeforeErrorIsReported() {
+        indexingStrategy.nextAnswer(Arrays.copyOfRange(TestNodeRefs.REFS, 0, 4));
+        ProcessorService processorService = builder
+                .config(new ProcessorConfiguration(true, 2, -1, true, "System").withWorkerThreads(2))
+                .plugins(Collections.singletonList(new BlockingHealthProcessorPlugin()))
+                .build();
+
+        assertThrows(IllegalStateException.class, processorService::execute);
+
+        // The batch that was still being processed is stopped, and has reported, before the error is reported
+        InOrder inOrder = inOrder(reportsService);
+        inOrder.verify(reportsService).processReports(eq(BlockingHealthProcessorPlugin.class), any());
+        inOrder.verify(reportsService).onException(any());
+        assertThat(processorService.getState(), is(ProcessorState.FAILED));
+    }
+
     @Test
     void execute_indexingStrategyThrowsException() {
         indexingStrategy.nextThrow(new RuntimeException("Hammertime"));
@@ -118,6 +279,103 @@ class ProcessorServiceTest {
         assertThat(durationMs, is(lessThan(6000L)));
     }
 
+    @Test
+    void execute_notifiesCycleScopedPlugins() {
+        indexingStrategy.nextAnswer(TestNodeRefs.REFS[0]);
+        CycleScopedHealthProcessorPlugin cycleScopedPlugin = new CycleScopedHealthProcessorPlugin();
+        ProcessorService processorService = builder
+                .plugins(Collections.singletonList(cycleScopedPlugin))
+                .build();
+
+        processorService.execute();
+
+        assertThat(cycleScopedPlugin.cycleStarts, is(1));
+        assertThat(cycleScopedPlugin.cycleEnds, is(1));
+        cycleScopedPlugin.expectInvocation(TestNodeRefs.REFS[0]);
+    }
+
+    private static class CycleScopedHealthProcessorPlugin extends AssertHealthProcessorPlugin implements CycleScoped {
+
+        private int cycleStarts;
+        private int cycleEnds;
+
+        @Override
+        public void onCycleStart() {
+            cycleStarts++;
+        }
+
+        @Override
+        public void onCycleEnd() {
+            cycleEnds++;
+        }
+    }
+
+    @Test
+    void afterPropertiesSet_contentStoreStrategyWithNodePlugin() {
+        ProcessorService processorService = builder
+                .indexingStrategy(contentStoreIndexingStrategy())
+                .plugin(orphanedContentPlugin())
+                .build();
+
+        assertThrows(IllegalStateException.class, processorService::afterPropertiesSet);
+    }
+
+    @Test
+    void afterPropertiesSet_contentStoreStrategyWithOrphanedContentPlugin() {
+        builder
+                .indexingStrategy(contentStoreIndexingStrategy())
+                .plugins(null)
+                .plugin(orphanedContentPlugin())
+                .plugin(new AssertHealthProcessorPlugin(false))
+                .build()
+                .afterPropertiesSet();
+    }
+
+    private static ContentStoreIndexingStrategy contentStoreIndexingStrategy() {
+        return new ContentStoreIndexingStrategy(new ContentStoreIndexingConfiguration("/contentstore", "store", 0),
+                new InMemoryAttributeStore());
+    }
+
+    private static OrphanedContentHealthProcessorPlugin orphanedContentPlugin() {
+        OrphanedContentHealthProcessorPlugin plugin = new OrphanedContentHealthProcessorPlugin(
+                mock(ContentDataDAO.class));
+        plugin.setEnabled(true);
+        return plugin;
+    }
+
+    private static class ThrowingHealthProcessorPlugin extends AssertHealthProcessorPlugin {
+
+        @Nonnull
+        @Override
+        public Set<NodeHealthReport> process(Set<NodeRef> nodeRefs) {
+            throw new IllegalStateException("Hammertime");
+        }
+    }
+
+    /**
+     * Blocks on the batch with the first node until it is interrupted, and fails the other batch once it blocks.
+     */
+    private static class BlockingHealthProcessorPlugin extends AssertHealthProcessorPlugin {
+
+        private final CountDownLatch blocking = new CountDownLatch(1);
+
+        @Nonnull
+        @Override
+        public Set<NodeHealthReport> process(Set<NodeRef> nodeRefs) {
+            try {
+                if (nodeRefs.contains(TestNodeRefs.REFS[0])) {
+                    blocking.countDown();
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    return Collections.emptySet();
+                }
+                blocking.await();
+            } catch (InterruptedException e) {
+                return Collections.emptySet();
+            }
+            throw new IllegalStateException("Hammertime");
+        }
+    }
+
     @Setter
     @Accessors(fluent = true, chain = true)
     private static class ProcessorServiceBuilder {
@@ -143,7 +401,7 @@ class ProcessorServiceTest {
 
         ProcessorService build() {
             return new ProcessorService(config, indexingStrategy, transactionHelper, plugins, reportsService,
-                    new StateCache(new MemoryCache<>()), nodeFixService);
+                    new StateCache(new MemoryCache<>()), nodeFixService, new NodeStatusCache());
         }
     }
 
@@ -16,6 +16,8 @@ import eu.xenit.alfresco.healthprocessor.util.TestReports;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.search.RequiredSearch;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.http.pool.PoolStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.util.StringUtils;
@@ -88,6 +90,25 @@ class AlfredTelemetryHealthReporterTest {
         assertThat(meterRegistry.get(Key.PROGRESS).gauge().value(), is(Double.NaN));
     }
 
+    @Test
+    void connectionPool() {
+        AtomicReference<PoolStats> poolStats = new AtomicReference<>(new PoolStats(3, 1, 2, 10));
+        reporter.registerConnectionPool("solr", poolStats::get);
+
+        assertThat(getConnectionPoolGaugeValue("leased"), is(equalTo(3d)));
+        assertThat(getConnectionPoolGaugeValue("pending"), is(equalTo(1d)));
+        assertThat(getConnectionPoolGaugeValue("available"), is(equalTo(2d)));
+        assertThat(getConnectionPoolGaugeValue("max"), is(equalTo(10d)));
+
+        poolStats.set(new PoolStats(0, 0, 5, 10));
+        assertThat(getConnectionPoolGaugeValue("leased"), is(equalTo(0d)));
+        assertThat(getConnectionPoolGaugeValue("available"), is(equalTo(5d)));
+    }
+
+    private double getConnectionPoolGaugeValue(String state) {
+        return meterRegistry.get(Key.HTTP_CONNECTIONS).tag(Tag.POOL, "solr").tag(Tag.STATE, state).gauge().value();
+    }
+
     private void assertActiveGaugeEquals(double expected) {
         assertThat(meterRegistry.get(Key.ACTIVE).gauge().value(), is(equalTo(expected)));
     }
@@ -1,6 +1,7 @@
 package eu.xenit.alfresco.healthprocessor.indexing;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 
@@ -21,6 +22,11 @@ public class AssertIndexingStrategy implements IndexingStrategy {
     private int numberOfOnStartInvocations;
     private int numberOfGetNextNodeIdsInvocations;
     private int numberOfRequestedNodes;
+    private int numberOfPrefetchInvocations;
+    private boolean batchAcknowledgementEnabled;
+    private final Set<Long> batchesInProgress = new HashSet<>();
+    private int numberOfAcknowledgedBatches;
+    private boolean cycleDone = true;
 
     @Override
     public void onStart() {
@@ -47,6 +53,37 @@ public class AssertIndexingStrategy implements IndexingStrategy {
         return ret;
     }
 
+    @Nonnull
+    @Override
+    public NodeBatch getNextNodeBatch(int amount) {
+        NodeBatch ret = new NodeBatch(getNextNodeIds(amount));
+        if (batchAcknowledgementEnabled && !ret.isEmpty()) {
+            batchesInProgress.add(ret.getSequenceId());
+        }
+        return ret;
+    }
+
+    @Override
+    public void prefetch(int amount) {
+        numberOfPrefetchInvocations++;
+    }
+
+    @Override
+    public void enableBatchAcknowledgement() {
+        batchAcknowledgementEnabled = true;
+    }
+
+    @Override
+    public void onBatchProcessed(@Nonnull NodeBatch batch) {
+        assertThat(batchesInProgress.remove(batch.getSequenceId()), is(true));
+        numberOfAcknowledgedBatches++;
+    }
+
+    @Override
+    public boolean isCycleDone() {
+        return cycleDone;
+    }
+
     @Nonnull
     @Override
     public CycleProgress getCycleProgress() {
@@ -57,6 +94,10 @@ public class AssertIndexingStrategy implements IndexingStrategy {
         toThrow = e;
     }
 
+    public void cycleCompletedByOtherNode() {
+        cycleDone = false;
+    }
+
     public void nextAnswer(NodeRef... nodes) {
         this.nextAnswer(Arrays.asList(nodes));
     }
@@ -73,4 +114,13 @@ public class AssertIndexingStrategy implements IndexingStrategy {
         assertThat(numberOfGetNextNodeIdsInvocations, is(equalTo(amount)));
 
     }
+
+    public void expectPrefetchInvocations(int amount) {
+        assertThat(numberOfPrefetchInvocations, is(equalTo(amount)));
+    }
+
+    public void expectAcknowledgedBatches(int amount) {
+        assertThat(numberOfAcknowledgedBatches, is(equalTo(amount)));
+        assertThat(batchesInProgress, is(empty()));
+    }
 }
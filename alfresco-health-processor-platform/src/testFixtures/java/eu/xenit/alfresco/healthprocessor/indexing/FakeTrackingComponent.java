@@ -1,9 +1,9 @@
 package eu.xenit.alfresco.healthprocessor.indexing;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
@@ -11,9 +11,12 @@ import org.alfresco.service.cmr.repository.NodeRef;
 
 public class FakeTrackingComponent implements TrackingComponent {
 
-    private final Map<Long, Set<NodeInfo>> transactions = new TreeMap<>();
+    private final TreeMap<Long, Set<NodeInfo>> transactions = new TreeMap<>();
     private int getNodeForTxnIdsInvocations = 0;
+    private int getNodesForNodeIdRangeInvocations = 0;
     private int nodeIdCounter = 1;
+    // Order in which the nodes of a range of transactions are streamed
+    private Comparator<NodeInfo> txnRangeOrder = Comparator.comparingLong(NodeInfo::getTxnId);
 
     public void addTransaction(Long txnId, NodeRef... nodes) {
         this.addTransaction(txnId, Arrays.asList(nodes));
@@ -44,6 +47,54 @@ public class FakeTrackingComponent implements TrackingComponent {
         return ret;
     }
 
+    @Override
+    public void getNodesForTxnRange(long fromTxnIdInclusive, long toTxnIdExclusive, NodeInfoSink sink) {
+        // Counted as well: both kinds of invocations query the nodes of a window of transactions
+        getNodeForTxnIdsInvocations++;
+
+        if (fromTxnIdInclusive >= toTxnIdExclusive) {
+            return;
+        }
+        List<NodeInfo> nodes = transactions.subMap(fromTxnIdInclusive, toTxnIdExclusive).values().stream()
+                .flatMap(Set::stream)
+                .sorted(txnRangeOrder)
+                .collect(Collectors.toList());
+        for (NodeInfo nodeInfo : nodes) {
+            if (!sink.accept(nodeInfo)) {
+                return;
+            }
+        }
+    }
+
+    public void streamTxnRangeInOrder(Comparator<NodeInfo> order) {
+        txnRangeOrder = order;
+    }
+
+    @Override
+    public long getMaxNodeId() {
+        return nodeIdCounter - 1;
+    }
+
+    @Override
+    public void getNodesForNodeIdRange(long fromNodeIdInclusive, long toNodeIdExclusive, NodeInfoSink sink) {
+        getNodesForNodeIdRangeInvocations++;
+
+        List<NodeInfo> nodes = transactions.values().stream()
+                .flatMap(Set::stream)
+                .filter(n -> n.getNodeId() >= fromNodeIdInclusive && n.getNodeId() < toNodeIdExclusive)
+                .sorted(Comparator.comparingLong(NodeInfo::getNodeId))
+                .collect(Collectors.toList());
+        for (NodeInfo nodeInfo : nodes) {
+            if (!sink.accept(nodeInfo)) {
+                return;
+            }
+        }
+    }
+
+    public int numberOfGetNodesForNodeIdRangeInvocations() {
+        return getNodesForNodeIdRangeInvocations;
+    }
+
     public int numberOfGetNodeForTxnIdsInvocations() {
         return getNodeForTxnIdsInvocations;
     }